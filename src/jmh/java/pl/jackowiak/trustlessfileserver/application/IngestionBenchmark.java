@@ -0,0 +1,80 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
+import pl.jackowiak.trustlessfileserver.infrastructure.MappedFileServerRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.codec.digest.MessageDigestAlgorithms.SHA_256;
+
+/**
+ * Ingest throughput of {@link PieceIngestion} depending on the number of workers, reported in MB/s as the
+ * <code>megabytes</code> counter. The mapped repository is used, so the result is not bound by heap growth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IngestionBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    int parallelism;
+
+    @Param({"64"})
+    int fileSizeMb;
+
+    @Param({"1048576"})
+    int blockSize;
+
+    private Path file;
+    private FileSource source;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        var content = new byte[fileSizeMb * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        file = Files.write(Files.createTempFile("ingestion-benchmark", ".bin"), content);
+        source = new FileSource(file, 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public MerkleTreeBuilder ingest(Throughput throughput) throws IOException {
+        var storeFile = new Facade(new MappedFileServerRepository());
+        var merkleTreeBuilder = new PieceIngestion(storeFile, parallelism, blockSize).ingest(source, SHA_256, "BASE_64");
+        throughput.megabytes += fileSizeMb;
+        return merkleTreeBuilder;
+    }
+}
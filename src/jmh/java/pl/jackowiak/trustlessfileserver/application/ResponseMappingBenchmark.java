@@ -0,0 +1,95 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.jackowiak.trustlessfileserver.domain.model.EncodingAlgo;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
+import pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleLeaf;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeElement;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response bodies of {@link HashesEndpoint} without the HTTP stack: the <code>/hashes</code> catalog and a piece of
+ * <code>pieceSize</code> bytes with a proof of 20 hashes, serialized to JSON with Jackson or written in the binary
+ * format. Run with the gc profiler to compare the bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResponseMappingBenchmark {
+
+    private static final int PROOF_LENGTH = 20;
+
+    @Param({"1000"})
+    int files;
+
+    @Param({"1024", "262144"})
+    int pieceSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Map<MerkleHash, FileMetadata> catalog;
+    private PieceProof pieceProof;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = new LinkedHashMap<>();
+        for (var index = 0; index < files; index++) {
+            catalog.put(hash(index), new FileMetadata(1024, pieceSize));
+        }
+        var content = new byte[pieceSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        var proofs = new ArrayList<MerkleTreeElement>(PROOF_LENGTH);
+        for (var index = 0; index < PROOF_LENGTH; index++) {
+            proofs.add(new MerkleLeaf(hash(index)));
+        }
+        pieceProof = new PieceProof(new MerkleEncoded(EncodingAlgo.BASE_64, content), proofs);
+    }
+
+    @Benchmark
+    public byte[] hashesJson() throws JsonProcessingException {
+        var hashes = catalog.entrySet().stream()
+                .map(ResponseMapper::mapToHashes)
+                .toList();
+        return objectMapper.writeValueAsBytes(hashes);
+    }
+
+    @Benchmark
+    public byte[] pieceJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(ResponseMapper.mapToPieceData(pieceProof));
+    }
+
+    @Benchmark
+    public byte[] pieceBinary() {
+        return PieceBinaryFormat.write(pieceProof, hash(0));
+    }
+
+    private static MerkleHash hash(int index) {
+        var hash = ByteBuffer.allocate(HashingAlgo.SHA_256.getDigestLength()).putInt(index).array();
+        return MerkleHash.rawHash(hash, HashingAlgo.SHA_256);
+    }
+}
@@ -0,0 +1,79 @@
+package pl.jackowiak.trustlessfileserver.domain;
+
+import io.vavr.control.Either;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof;
+import pl.jackowiak.trustlessfileserver.infrastructure.InMemoryFileServerRepository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proof creation as the endpoints ask for it: a single piece proof and a proof of 16 consecutive pieces straight
+ * from {@link ProofCreator}, and a single piece proof through the {@link Facade} with the proof cache in front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProofBenchmark {
+
+    private static final int RANGE_SIZE = 16;
+
+    @Param({"1024", "65536"})
+    int pieces;
+
+    private ProofCreator proofCreator;
+    private Facade cached;
+    private MerkleHash rootHash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var repository = new InMemoryFileServerRepository();
+        var storeFile = new Facade(repository);
+        var pieceHashes = new ArrayList<PieceHash>(pieces);
+        for (var index = 0; index < pieces; index++) {
+            var content = ByteBuffer.allocate(1024).putInt(index).array();
+            pieceHashes.add(storeFile.persistPiece(new PersistPiece(content, "SHA-256", "BASE_64")));
+        }
+        rootHash = storeFile.storeAsMerkleTree(pieceHashes).root().hash();
+        proofCreator = new ProofCreator(repository);
+        cached = new Facade(repository, new ProofCache(64L * 1024 * 1024));
+    }
+
+    @Benchmark
+    public Either<DomainFailure, PieceProof> proofForPiece() {
+        return proofCreator.createProofForPiece(rootHash, ThreadLocalRandom.current().nextInt(pieces));
+    }
+
+    @Benchmark
+    public Either<DomainFailure, PieceRangeProof> proofForPieceRange() {
+        var from = ThreadLocalRandom.current().nextInt(pieces - RANGE_SIZE + 1);
+        return proofCreator.createProofForPieceRange(rootHash, from, from + RANGE_SIZE - 1);
+    }
+
+    @Benchmark
+    public Either<DomainFailure, PieceProof> cachedProofForPiece() {
+        return cached.getProofForPiece(rootHash, ThreadLocalRandom.current().nextInt(pieces));
+    }
+}
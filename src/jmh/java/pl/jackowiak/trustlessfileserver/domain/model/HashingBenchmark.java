@@ -0,0 +1,68 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.primitives.Bytes.concat;
+import static org.apache.commons.codec.digest.DigestUtils.sha256;
+import static pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo.SHA_256;
+
+/**
+ * Compares the former commons-codec hashing path with the per-thread digests of {@link HashingAlgo}, for an internal
+ * node (pair of hashes) and for a 1KB piece. Run with <code>-PjmhProfilers=gc</code> to see bytes allocated per hash
+ * (<code>gc.alloc.rate.norm</code>).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashingBenchmark {
+
+    private final byte[] left = new byte[32];
+    private final byte[] right = new byte[32];
+    private final byte[] piece = new byte[1024];
+    private final byte[] destination = new byte[32];
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        random.nextBytes(left);
+        random.nextBytes(right);
+        random.nextBytes(piece);
+    }
+
+    @Benchmark
+    public byte[] pairCommonsCodec() {
+        return sha256(concat(left, right));
+    }
+
+    @Benchmark
+    public byte[] pairEngine() {
+        SHA_256.hashPairInto(left, 0, right, 0, destination, 0);
+        return destination;
+    }
+
+    @Benchmark
+    public byte[] pieceCommonsCodec() {
+        return sha256(piece);
+    }
+
+    @Benchmark
+    public byte[] pieceEngine() {
+        SHA_256.hashInto(piece, 0, piece.length, destination, 0);
+        return destination;
+    }
+}
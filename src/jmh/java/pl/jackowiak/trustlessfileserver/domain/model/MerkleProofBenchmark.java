@@ -0,0 +1,79 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merkle hot paths across leaf counts: building the tree, creating a single proof from the levels, verifying it and
+ * the recursive <code>checkIfLeafInTree</code> search. Reported both as throughput and as time per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MerkleProofBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    int leafs;
+
+    private List<PieceHash> pieceHashes;
+    private MerkleTree merkleTree;
+    private MerkleHash rootHash;
+    private List<List<MerkleTreeElement>> proofs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pieceHashes = new ArrayList<>(leafs);
+        for (var index = 0; index < leafs; index++) {
+            var hash = ByteBuffer.allocate(HashingAlgo.SHA_256.getDigestLength()).putInt(index).array();
+            pieceHashes.add(new PieceHash(MerkleHash.rawHash(hash, HashingAlgo.SHA_256)));
+        }
+        merkleTree = new MerkleTree(pieceHashes);
+        rootHash = merkleTree.root().hash();
+        // proofs of a sample of pieces, so verification does not measure their creation
+        proofs = new ArrayList<>(1024);
+        for (var index = 0; index < Math.min(leafs, 1024); index++) {
+            proofs.add(MerkleProof.getProofElements(merkleTree.levels(), index));
+        }
+    }
+
+    @Benchmark
+    public MerkleTree buildTree() {
+        return new MerkleTree(pieceHashes);
+    }
+
+    @Benchmark
+    public List<MerkleTreeElement> proofElements() {
+        return MerkleProof.getProofElements(merkleTree.levels(), ThreadLocalRandom.current().nextInt(leafs));
+    }
+
+    @Benchmark
+    public boolean verifyProof() {
+        var index = ThreadLocalRandom.current().nextInt(proofs.size());
+        return MerkleProof.verify(pieceHashes.get(index).merkleHash(), index, proofs.get(index), rootHash);
+    }
+
+    @Benchmark
+    public boolean checkIfLeafInTree() {
+        var index = ThreadLocalRandom.current().nextInt(leafs);
+        return MerkleProof.checkIfLeafInTree(new MerkleLeaf(pieceHashes.get(index).merkleHash()), merkleTree.root());
+    }
+}
@@ -0,0 +1,79 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merkle tree build time depending on the number of cores. Parallel streams used by the build run in the pool they
+ * are started from, so the build is submitted to a pool of given parallelism.
+ * The largest tree has 2^25 leafs, the cap of a single SHA-256 level buffer of at most 2^31 - 1 bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class MerkleTreeBenchmark {
+
+    @Param({"1000000", "10000000", "33554432"})
+    int leafs;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    int parallelism;
+
+    private List<PieceHash> pieceHashes;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pieceHashes = syntheticPieceHashes(leafs);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public MerkleTree build() throws ExecutionException, InterruptedException {
+        return pool.submit(() -> new MerkleTree(pieceHashes)).get();
+    }
+
+    /**
+     * Piece hashes created on access, so the benchmark heap holds the tree levels only.
+     */
+    private static List<PieceHash> syntheticPieceHashes(int size) {
+        return new AbstractList<>() {
+            @Override
+            public PieceHash get(int index) {
+                var hash = ByteBuffer.allocate(HashingAlgo.SHA_256.getDigestLength()).putInt(index).array();
+                return new PieceHash(MerkleHash.rawHash(hash, HashingAlgo.SHA_256));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
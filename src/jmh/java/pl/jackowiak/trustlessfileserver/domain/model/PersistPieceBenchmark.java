@@ -0,0 +1,58 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per piece cost of ingestion and serving: a {@link PersistPiece} hashes its content, the encoded content is what
+ * the JSON piece response carries. Run with the gc profiler to see the bytes allocated per piece.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersistPieceBenchmark {
+
+    @Param({"1024", "16384", "1048576"})
+    int pieceSize;
+
+    private byte[] content;
+    private MerkleEncoded merkleEncoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        content = new byte[pieceSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        merkleEncoded = new MerkleEncoded(EncodingAlgo.BASE_64, content);
+    }
+
+    @Benchmark
+    public PersistPiece persistPiece() {
+        return new PersistPiece(content, "SHA-256", "BASE_64");
+    }
+
+    @Benchmark
+    public byte[] encodedContent() {
+        return merkleEncoded.getEncodedContent();
+    }
+
+    @Benchmark
+    public String hexString() {
+        return merkleEncoded.getHexString();
+    }
+}
@@ -0,0 +1,71 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Effect of the piece size on a 10 GB file: tree build time and time of creating a single piece proof, which grows
+ * with the tree depth. Memory of the tree and proof bytes per piece are listed in the README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PieceSizeBenchmark {
+
+    private static final long FILE_SIZE = 10L * 1024 * 1024 * 1024;
+
+    @Param({"1024", "16384", "262144", "1048576"})
+    int pieceSize;
+
+    private List<PieceHash> pieceHashes;
+    private MerkleTree merkleTree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var pieces = (int) ((FILE_SIZE + pieceSize - 1) / pieceSize);
+        pieceHashes = new AbstractList<>() {
+            @Override
+            public PieceHash get(int index) {
+                var hash = ByteBuffer.allocate(HashingAlgo.SHA_256.getDigestLength()).putInt(index).array();
+                return new PieceHash(MerkleHash.rawHash(hash, HashingAlgo.SHA_256));
+            }
+
+            @Override
+            public int size() {
+                return pieces;
+            }
+        };
+        merkleTree = new MerkleTree(pieceHashes, pieceSize);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public MerkleTree buildTree() {
+        return new MerkleTree(pieceHashes, pieceSize);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public List<MerkleTreeElement> proofForPiece() {
+        var pieceIndex = ThreadLocalRandom.current().nextInt(merkleTree.pieceCount());
+        return MerkleProof.getProofElements(merkleTree.levels(), pieceIndex);
+    }
+}
@@ -0,0 +1,94 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vavr.control.Either;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.ProofCache;
+import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+import pl.jackowiak.trustlessfileserver.domain.ports.in.ServerFiles;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the metric decorators on the hottest path, a single piece proof. <code>plain</code> calls the domain
+ * directly, <code>metered</code> goes through {@link MeteredServerFiles} and {@link MeteredFileServerRepository} with
+ * histogram buckets published like in <code>application.properties</code>. The difference of both is the instrumentation
+ * overhead per served proof, with and without the proof cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+public class MetricsOverheadBenchmark {
+
+    @Param({"0", "67108864"})
+    long proofCacheBytes;
+
+    @Param({"65536"})
+    int pieces;
+
+    private ServerFiles plain;
+    private ServerFiles metered;
+    private MerkleHash rootHash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var repository = new InMemoryFileServerRepository();
+        var storeFile = new Facade(repository);
+        var pieceHashes = new ArrayList<PieceHash>(pieces);
+        for (var index = 0; index < pieces; index++) {
+            var content = ByteBuffer.allocate(1024).putInt(index).array();
+            pieceHashes.add(storeFile.persistPiece(new PersistPiece(content, "SHA-256", "BASE_64")));
+        }
+        rootHash = storeFile.storeAsMerkleTree(pieceHashes).root().hash();
+
+        var registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+            }
+        });
+        plain = new Facade(repository, new ProofCache(proofCacheBytes));
+        metered = new MeteredServerFiles(new Facade(new MeteredFileServerRepository(repository, registry), new ProofCache(proofCacheBytes)), registry);
+    }
+
+    @Benchmark
+    public Either<DomainFailure, PieceProof> plain() {
+        return plain.getProofForPiece(rootHash, ThreadLocalRandom.current().nextInt(pieces));
+    }
+
+    @Benchmark
+    public Either<DomainFailure, PieceProof> metered() {
+        return metered.getProofForPiece(rootHash, ThreadLocalRandom.current().nextInt(pieces));
+    }
+}
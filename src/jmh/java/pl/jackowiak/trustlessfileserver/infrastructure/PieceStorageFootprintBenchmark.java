@@ -0,0 +1,76 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap used by {@link InMemoryFileServerRepository} holding random pieces, reported as the <code>heapBytes</code>
+ * counter next to <code>contentBytes</code>. Used heap is read after full GC, before and after storing the pieces,
+ * with the returned piece hashes kept alive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class PieceStorageFootprintBenchmark {
+
+    private static final int GC_RUNS = 3;
+
+    @Param({"200000"})
+    int pieces;
+
+    @Param({"1024"})
+    int pieceSize;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long heapBytes;
+        public long contentBytes;
+    }
+
+    @Benchmark
+    public void storePieces(Footprint footprint) {
+        var baseline = usedHeapAfterGc();
+        var repository = new InMemoryFileServerRepository();
+        var facade = new Facade(repository);
+        var random = new Random(42);
+        var pieceHashes = new ArrayList<PieceHash>(pieces);
+        for (var i = 0; i < pieces; i++) {
+            var content = new byte[pieceSize];
+            random.nextBytes(content);
+            pieceHashes.add(facade.persistPiece(new PersistPiece(content, "SHA-256", "BASE_64")));
+        }
+        footprint.heapBytes = usedHeapAfterGc() - baseline;
+        footprint.contentBytes = (long) pieces * pieceSize;
+        Reference.reachabilityFence(repository);
+        Reference.reachabilityFence(pieceHashes);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (var i = 0; i < GC_RUNS; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,51 @@
+package pl.jackowiak.trustlessfileserver.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Order in which pieces are requested, given as the <code>distribution</code> argument. Pieces of all files are
+ * numbered one after another, so a scan reads the files in turn and the Zipfian hot set spans file boundaries.
+ */
+interface AccessPattern {
+
+    int nextPiece();
+
+    static AccessPattern create(String distribution, int pieces, double zipfExponent) {
+        return switch (distribution) {
+            case "uniform" -> () -> ThreadLocalRandom.current().nextInt(pieces);
+            case "zipfian" -> new Zipfian(pieces, zipfExponent);
+            case "sequential" -> {
+                var next = new AtomicLong();
+                yield () -> (int) (next.getAndIncrement() % pieces);
+            }
+            default -> throw new IllegalArgumentException("Unknown distribution <%s>, expected uniform, zipfian or sequential".formatted(distribution));
+        };
+    }
+
+    /**
+     * Piece of rank <code>k</code> is requested with probability proportional to <code>1 / k^exponent</code>, the
+     * first piece being the most popular. Ranks are drawn from the precomputed cumulative distribution.
+     */
+    final class Zipfian implements AccessPattern {
+
+        private final double[] cumulative;
+
+        Zipfian(int pieces, double exponent) {
+            cumulative = new double[pieces];
+            var sum = 0.0;
+            for (var rank = 0; rank < pieces; rank++) {
+                sum += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+        }
+
+        @Override
+        public int nextPiece() {
+            var drawn = ThreadLocalRandom.current().nextDouble(cumulative[cumulative.length - 1]);
+            var found = Arrays.binarySearch(cumulative, drawn);
+            return found >= 0 ? found : Math.min(-found - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package pl.jackowiak.trustlessfileserver.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Keeps a fixed number of requests in flight against a running server and reports throughput and latency
+ * percentiles. Every in flight request holds its own connection, so <code>concurrency</code> is also the number of open
+ * connections. Each piece response is checked against the root hash of its file, during warmup too, and the run fails
+ * when any proof does not hold or more measured requests failed than allowed. Arguments are <code>key=value</code> pairs:
+ * <pre>
+ * url           server address, default http://localhost:8080
+ * endpoint      piece or hashes, default piece
+ * accept        Accept header of piece requests, default application/json
+ * hash          comma separated hashes of served files to request, synthetic files are uploaded when missing
+ * files         number of synthetic files, default 1
+ * fileSize      bytes of each synthetic file, default 67108864
+ * pieceSize     piece size of synthetic files, default chosen by the server
+ * distribution  uniform, zipfian or sequential, default uniform
+ * zipfExponent  skew of the zipfian distribution, default 1.0
+ * concurrency   requests in flight, default 1000
+ * duration      measured seconds, default 30
+ * warmup        seconds before measuring, default 5
+ * maxFailedRatio share of measured requests allowed to fail, default 0
+ * results       JSON results file, default build/reports/loadtest/loadtest-&lt;time&gt;.json
+ * </pre>
+ */
+public final class ConnectionLoadTest {
+
+    private static final int BUCKET_MICROS = 10;
+    private static final int BUCKETS = 1_000_000;
+
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final HttpClient client;
+    private final Map<String, String> arguments;
+    private final String url;
+    private final boolean pieceEndpoint;
+    private final String accept;
+    private final boolean binary;
+    private List<ServedFile> files;
+    private byte[][] rootHashes;
+    private long[] firstPieces;
+    private AccessPattern accessPattern;
+    private volatile boolean measuring;
+    private volatile boolean running = true;
+
+    private ConnectionLoadTest(Map<String, String> arguments) {
+        this.arguments = arguments;
+        this.url = arguments.getOrDefault("url", "http://localhost:8080");
+        this.pieceEndpoint = switch (arguments.getOrDefault("endpoint", "piece")) {
+            case "piece" -> true;
+            case "hashes" -> false;
+            default -> throw new IllegalArgumentException("Unknown endpoint <%s>, expected piece or hashes".formatted(arguments.get("endpoint")));
+        };
+        this.accept = arguments.getOrDefault("accept", "application/json");
+        this.binary = accept.startsWith("application/octet-stream");
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var arguments = new HashMap<String, String>();
+        for (var arg : args) {
+            var separator = arg.indexOf('=');
+            if (separator < 0)
+                throw new IllegalArgumentException("Expected key=value argument, got <%s>".formatted(arg));
+            arguments.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        var concurrency = Integer.parseInt(arguments.getOrDefault("concurrency", "1000"));
+        var duration = Integer.parseInt(arguments.getOrDefault("duration", "30"));
+        var warmup = Integer.parseInt(arguments.getOrDefault("warmup", "5"));
+        var loadTest = new ConnectionLoadTest(arguments);
+        if (loadTest.pieceEndpoint) {
+            loadTest.prepareFiles();
+        }
+        var maxFailedRatio = Double.parseDouble(arguments.getOrDefault("maxFailedRatio", "0"));
+        var valid = loadTest.run(concurrency, warmup, duration, maxFailedRatio);
+        if (!valid) {
+            System.exit(1);
+        }
+    }
+
+    private void prepareFiles() throws IOException, InterruptedException {
+        if (arguments.containsKey("hash")) {
+            files = SyntheticFiles.existing(client, url, Arrays.asList(arguments.get("hash").split(",")));
+        } else {
+            var count = Integer.parseInt(arguments.getOrDefault("files", "1"));
+            var fileSize = Long.parseLong(arguments.getOrDefault("fileSize", Long.toString(64L * 1024 * 1024)));
+            var pieceSize = arguments.containsKey("pieceSize") ? Integer.valueOf(arguments.get("pieceSize")) : null;
+            System.out.printf("Uploading %d synthetic files of %d bytes%n", count, fileSize);
+            files = SyntheticFiles.upload(client, url, count, fileSize, pieceSize);
+        }
+        rootHashes = files.stream().map(ServedFile::rootHash).toArray(byte[][]::new);
+        firstPieces = new long[files.size() + 1];
+        for (var file = 0; file < files.size(); file++) {
+            firstPieces[file + 1] = firstPieces[file] + files.get(file).pieces();
+        }
+        if (firstPieces[files.size()] > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Files have more than <%d> pieces together".formatted(Integer.MAX_VALUE));
+        var zipfExponent = Double.parseDouble(arguments.getOrDefault("zipfExponent", "1.0"));
+        accessPattern = AccessPattern.create(arguments.getOrDefault("distribution", "uniform"), (int) firstPieces[files.size()], zipfExponent);
+    }
+
+    private boolean run(int concurrency, int warmup, int duration, double maxFailedRatio) throws IOException, InterruptedException {
+        System.out.printf("Running %d concurrent requests against %s%s for %d s after %d s of warmup%n",
+                concurrency, url, pieceEndpoint ? "/piece" : "/hashes", duration, warmup);
+        for (var i = 0; i < concurrency; i++) {
+            send();
+        }
+        TimeUnit.SECONDS.sleep(warmup);
+        measuring = true;
+        var start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(duration);
+        measuring = false;
+        var elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        report(elapsedSeconds, concurrency, duration);
+        var requests = completed.sum() + failed.sum();
+        var failedRatio = requests == 0 ? 0 : (double) failed.sum() / requests;
+        if (failedRatio > maxFailedRatio) {
+            System.out.printf(Locale.ROOT, "failed ratio %.4f exceeds allowed %.4f%n", failedRatio, maxFailedRatio);
+        }
+        return invalid.sum() == 0 && failedRatio <= maxFailedRatio;
+    }
+
+    private void send() {
+        if (!running) {
+            return;
+        }
+        if (!pieceEndpoint) {
+            send("/hashes", null);
+            return;
+        }
+        var piece = accessPattern.nextPiece();
+        var found = Arrays.binarySearch(firstPieces, piece);
+        var file = found >= 0 ? found : -found - 2;
+        var pieceIndex = (int) (piece - firstPieces[file]);
+        send("/piece/%s/%d".formatted(files.get(file).hash(), pieceIndex), body -> ProofVerifier.verify(body, binary, pieceIndex, rootHashes[file]));
+    }
+
+    private void send(String path, Predicate<byte[]> verification) {
+        var request = HttpRequest.newBuilder(URI.create(url + path))
+                .header("Accept", accept)
+                .GET()
+                .build();
+        var start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenCompleteAsync((response, throwable) -> {
+                    var latencyNanos = System.nanoTime() - start;
+                    var success = throwable == null && response.statusCode() == 200;
+                    if (measuring) {
+                        record(latencyNanos, success);
+                    }
+                    if (success && verification != null) {
+                        verify(verification, response.body());
+                    }
+                    send();
+                });
+    }
+
+    private void verify(Predicate<byte[]> verification, byte[] body) {
+        verified.increment();
+        if (!verification.test(body)) {
+            invalid.increment();
+        }
+    }
+
+    private void record(long latencyNanos, boolean success) {
+        if (!success) {
+            failed.increment();
+            return;
+        }
+        completed.increment();
+        var bucket = (int) Math.min(BUCKETS - 1, TimeUnit.NANOSECONDS.toMicros(latencyNanos) / BUCKET_MICROS);
+        latencyBuckets.incrementAndGet(bucket);
+    }
+
+    private void report(double elapsedSeconds, int concurrency, int duration) throws IOException {
+        var total = completed.sum();
+        var throughput = total / elapsedSeconds;
+        var p50 = percentileMillis(total, 0.5);
+        var p99 = percentileMillis(total, 0.99);
+        var p999 = percentileMillis(total, 0.999);
+        var verifiedProofs = verified.sum();
+        var invalidProofs = invalid.sum();
+        System.out.printf("requests: %d, failed: %d, throughput: %.1f req/s%n", total, failed.sum(), throughput);
+        System.out.printf("latency p50: %.2f ms, p99: %.2f ms, p999: %.2f ms%n", p50, p99, p999);
+        if (pieceEndpoint) {
+            System.out.printf("proofs verified: %d, invalid: %d%n", verifiedProofs, invalidProofs);
+        }
+
+        var results = Path.of(arguments.getOrDefault("results",
+                "build/reports/loadtest/loadtest-%s.json".formatted(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")))));
+        if (results.getParent() != null) {
+            Files.createDirectories(results.getParent());
+        }
+        Files.writeString(results, String.format(Locale.ROOT, """
+                        {
+                          "url": "%s",
+                          "endpoint": "%s",
+                          "accept": "%s",
+                          "distribution": "%s",
+                          "files": %d,
+                          "pieces": %d,
+                          "concurrency": %d,
+                          "durationSeconds": %d,
+                          "requests": %d,
+                          "failed": %d,
+                          "throughput": %.1f,
+                          "latencyMillis": {"p50": %.2f, "p99": %.2f, "p999": %.2f},
+                          "proofsVerified": %d,
+                          "proofsInvalid": %d
+                        }
+                        """,
+                url, pieceEndpoint ? "piece" : "hashes", accept, pieceEndpoint ? arguments.getOrDefault("distribution", "uniform") : "none",
+                pieceEndpoint ? files.size() : 0, pieceEndpoint ? firstPieces[files.size()] : 0, concurrency, duration,
+                total, failed.sum(), throughput, p50, p99, p999, verifiedProofs, invalidProofs));
+        System.out.printf("results written to %s%n", results.toAbsolutePath());
+    }
+
+    private double percentileMillis(long total, double percentile) {
+        var rank = (long) Math.ceil(total * percentile);
+        var seen = 0L;
+        for (var bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += latencyBuckets.get(bucket);
+            if (seen >= rank && seen > 0) {
+                return (bucket + 1) * BUCKET_MICROS / 1000.0;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,108 @@
+package pl.jackowiak.trustlessfileserver.loadtest;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * Checks piece responses the way a client would, without any server code: the SHA-256 of the piece content is
+ * combined with the proof hashes, sibling first, and has to give the root hash of the file. Both the JSON and the
+ * binary piece format are understood.
+ */
+final class ProofVerifier {
+
+    private static final Pattern JSON_CONTENT = Pattern.compile("\"content\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern JSON_PROOFS = Pattern.compile("\"proofs\"\\s*:\\s*\\[([^]]*)]");
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(ProofVerifier::sha256);
+
+    private ProofVerifier() {
+        throw new AssertionError(format("The class \"%s\" is not instantiable", this.getClass()));
+    }
+
+    static boolean verify(byte[] body, boolean binary, int pieceIndex, byte[] rootHash) {
+        try {
+            return binary ? verifyBinary(body, pieceIndex, rootHash) : verifyJson(body, pieceIndex, rootHash);
+        } catch (IllegalArgumentException | BufferUnderflowException exception) {
+            return false;
+        }
+    }
+
+    private static boolean verifyJson(byte[] body, int pieceIndex, byte[] rootHash) {
+        var json = new String(body, StandardCharsets.UTF_8);
+        var content = JSON_CONTENT.matcher(json);
+        var proofs = JSON_PROOFS.matcher(json);
+        if (!content.find() || !proofs.find()) {
+            return false;
+        }
+        var proofHashes = new ArrayList<byte[]>();
+        for (var proof : proofs.group(1).split(",")) {
+            var quoted = proof.strip();
+            if (quoted.isEmpty()) {
+                continue;
+            }
+            if (quoted.length() < 2 || quoted.charAt(0) != '"' || quoted.charAt(quoted.length() - 1) != '"') {
+                return false;
+            }
+            proofHashes.add(HexFormat.of().parseHex(quoted, 1, quoted.length() - 1));
+        }
+        return verify(Base64.getDecoder().decode(content.group(1)), pieceIndex, proofHashes, rootHash);
+    }
+
+    private static boolean verifyBinary(byte[] body, int pieceIndex, byte[] rootHash) {
+        var buffer = ByteBuffer.wrap(body);
+        if (buffer.get() != 1) {
+            return false;
+        }
+        var hashLength = Byte.toUnsignedInt(buffer.get());
+        var proofCount = Short.toUnsignedInt(buffer.getShort());
+        var contentLength = buffer.getInt();
+        var proofHashes = new ArrayList<byte[]>(proofCount);
+        for (var proof = 0; proof < proofCount; proof++) {
+            var hash = new byte[hashLength];
+            buffer.get(hash);
+            proofHashes.add(hash);
+        }
+        if (buffer.remaining() != contentLength) {
+            return false;
+        }
+        var content = new byte[contentLength];
+        buffer.get(content);
+        return verify(content, pieceIndex, proofHashes, rootHash);
+    }
+
+    static boolean verify(byte[] content, int pieceIndex, List<byte[]> proofHashes, byte[] rootHash) {
+        var digest = DIGESTS.get();
+        var current = digest.digest(content);
+        var index = pieceIndex;
+        for (var sibling : proofHashes) {
+            if ((index & 1) == 1) {
+                digest.update(sibling);
+                digest.update(current);
+            } else {
+                digest.update(current);
+                digest.update(sibling);
+            }
+            current = digest.digest();
+            index >>= 1;
+        }
+        return index == 0 && Arrays.equals(current, rootHash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
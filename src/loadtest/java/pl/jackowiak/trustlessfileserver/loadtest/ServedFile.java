@@ -0,0 +1,13 @@
+package pl.jackowiak.trustlessfileserver.loadtest;
+
+import java.util.HexFormat;
+
+/**
+ * File under load, the root hash is what every returned proof is checked against.
+ */
+record ServedFile(String hash, int pieces, int pieceSize) {
+
+    byte[] rootHash() {
+        return HexFormat.of().parseHex(hash);
+    }
+}
@@ -0,0 +1,122 @@
+package pl.jackowiak.trustlessfileserver.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * Prepares the files under load: either uploads synthetic files with <code>POST /files</code> or looks up already
+ * served ones in <code>/hashes</code>. Synthetic content is pseudo random and seeded by the file number, so the same
+ * arguments give the same files and the same root hashes on every run.
+ */
+final class SyntheticFiles {
+
+    private static final Pattern HASH = Pattern.compile("\"hash\"\\s*:\\s*\"([0-9a-fA-F]+)\"");
+    private static final Pattern PIECES = Pattern.compile("\"pieces\"\\s*:\\s*(\\d+)");
+    private static final Pattern PIECE_SIZE = Pattern.compile("\"pieceSize\"\\s*:\\s*(\\d+)");
+
+    private SyntheticFiles() {
+        throw new AssertionError(format("The class \"%s\" is not instantiable", this.getClass()));
+    }
+
+    static List<ServedFile> upload(HttpClient client, String url, int files, long fileSize, Integer pieceSize) throws IOException, InterruptedException {
+        var uploaded = new ArrayList<ServedFile>(files);
+        for (var file = 0; file < files; file++) {
+            var seed = file;
+            var query = pieceSize != null ? "?pieceSize=" + pieceSize : "";
+            var body = HttpRequest.BodyPublishers.fromPublisher(
+                    HttpRequest.BodyPublishers.ofInputStream(() -> new RandomContent(seed, fileSize)), fileSize);
+            var request = HttpRequest.newBuilder(URI.create(url + "/files" + query))
+                    .header("Content-Type", "application/octet-stream")
+                    .POST(body)
+                    .build();
+            var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Upload of synthetic file <%d> failed with <%d>: %s".formatted(file, response.statusCode(), response.body()));
+            }
+            uploaded.add(parse(response.body()).get(0));
+        }
+        return uploaded;
+    }
+
+    static List<ServedFile> existing(HttpClient client, String url, List<String> hashes) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create(url + "/hashes")).GET().build();
+        var served = parse(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+        var found = new ArrayList<ServedFile>(hashes.size());
+        for (var hash : hashes) {
+            found.add(served.stream()
+                    .filter(file -> file.hash().equalsIgnoreCase(hash))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("File <%s> is not served by <%s>".formatted(hash, url))));
+        }
+        return found;
+    }
+
+    /**
+     * Reads files from a single <code>/hashes</code> entry or from the whole list, objects are taken in order.
+     */
+    private static List<ServedFile> parse(String json) {
+        var files = new ArrayList<ServedFile>();
+        for (var object : json.split("}")) {
+            var hash = HASH.matcher(object);
+            var pieces = PIECES.matcher(object);
+            var pieceSize = PIECE_SIZE.matcher(object);
+            if (hash.find() && pieces.find() && pieceSize.find()) {
+                files.add(new ServedFile(hash.group(1), Integer.parseInt(pieces.group(1)), Integer.parseInt(pieceSize.group(1))));
+            }
+        }
+        if (files.isEmpty() && !json.strip().equals("[]")) {
+            throw new IllegalStateException("Unexpected files response: %s".formatted(json));
+        }
+        return files;
+    }
+
+    /**
+     * Content is a function of the position alone, so it does not depend on how the client reads the stream.
+     */
+    private static final class RandomContent extends InputStream {
+
+        private final long seed;
+        private final long length;
+        private long position;
+
+        private RandomContent(long seed, long length) {
+            this.seed = seed;
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            return position < length ? byteAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position == this.length) {
+                return -1;
+            }
+            var count = (int) Math.min(length, this.length - position);
+            for (var index = 0; index < count; index++) {
+                buffer[offset + index] = byteAt(position++);
+            }
+            return count;
+        }
+
+        private byte byteAt(long position) {
+            // SplitMix64 finalizer of the file seed and the 8 byte word index
+            var word = (seed + 1) << 48 ^ position >>> 3;
+            word = (word ^ word >>> 30) * 0xBF58476D1CE4E5B9L;
+            word = (word ^ word >>> 27) * 0x94D049BB133111EBL;
+            word ^= word >>> 31;
+            return (byte) (word >>> ((position & 7) << 3));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.ports.in.ServerFiles;
+
+import java.util.List;
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * Cache validators of the served responses. Pieces are addressed by the root hash of their file, so a response for a
+ * given root never changes and its strong ETag is derived from the request alone. <code>If-None-Match</code> is
+ * answered only once the file and pieces are known to exist, but before any piece is read or proof created.
+ */
+final class CacheValidators {
+
+    /**
+     * Content addressed responses are fresh for a year and never revalidated while fresh.
+     */
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    /**
+     * The catalog may change at any time, caches keep it but revalidate each use.
+     */
+    static final String REVALIDATE = "no-cache";
+
+    /**
+     * Catalog versions start over with each run, the start time tells them apart.
+     */
+    private static final String INSTANCE = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private CacheValidators() {
+        throw new AssertionError(format("The class \"%s\" is not instantiable", this.getClass()));
+    }
+
+    /**
+     * ETag of a piece, the variant tells apart representations served under the same path.
+     */
+    static String pieceETag(String hashId, int pieceIndex, String variant) {
+        return "\"%s-%d-%s\"".formatted(hashId.toLowerCase(Locale.ROOT), pieceIndex, variant);
+    }
+
+    static String pieceRangeETag(String hashId, int fromIndex, int toIndex) {
+        return "\"%s-%d-%d\"".formatted(hashId.toLowerCase(Locale.ROOT), fromIndex, toIndex);
+    }
+
+    /**
+     * ETag of a whole file, the variant tells apart the paths serving it.
+     */
+    static String fileETag(String hashId, String variant) {
+        return "\"%s-%s\"".formatted(hashId.toLowerCase(Locale.ROOT), variant);
+    }
+
+    static String catalogETag(long catalogVersion) {
+        return "\"catalog-%s-%d\"".formatted(INSTANCE, catalogVersion);
+    }
+
+    /**
+     * Whether the file is served, otherwise a wildcard or guessed tag would get 304 for a missing resource.
+     */
+    static boolean served(ServerFiles serverFiles, MerkleHash merkleHash) {
+        return serverFiles.fileMetadata(merkleHash).isPresent();
+    }
+
+    /**
+     * Whether the file is served with all the pieces between the indexes, both inclusive.
+     */
+    static boolean served(ServerFiles serverFiles, MerkleHash merkleHash, int fromIndex, int toIndex) {
+        return serverFiles.fileMetadata(merkleHash)
+                .filter(fileMetadata -> 0 <= fromIndex && fromIndex <= toIndex && toIndex < fileMetadata.pieces())
+                .isPresent();
+    }
+
+    /**
+     * Checks <code>If-None-Match</code> values, each of them possibly a comma separated list, against the ETag. Weak
+     * and strong tags are compared alike, as the header requires.
+     */
+    static boolean notModified(List<String> ifNoneMatch, String etag) {
+        for (var value : ifNoneMatch) {
+            for (var tag : value.split(",")) {
+                var trimmed = tag.trim();
+                if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.startsWith("W/") && trimmed.substring(2).equals(etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,207 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Ingests all files of a directory matching a glob, a bounded number of files at a time. In watch mode new and changed
+ * files are ingested as well, once the directory was quiet for a moment, so files still being written are not picked
+ * up after every single write.
+ */
+final class DirectoryIngestion implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryIngestion.class);
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final Function<Path, MerkleTree> fileLoader;
+    private final ExecutorService executor;
+    private WatchService watchService;
+    private Thread watchThread;
+
+    /**
+     * @param glob        glob matched against paths relative to the directory, e.g. <code>**.log</code>
+     * @param parallelism number of files ingested at once, <code>0</code> uses all available processors
+     * @param fileLoader  stores a single file and returns its merkle tree
+     */
+    DirectoryIngestion(Path directory, String glob, int parallelism, Function<Path, MerkleTree> fileLoader) {
+        if (parallelism < 0)
+            throw new IllegalArgumentException("Ingestion parallelism cannot be negative!");
+        this.directory = directory;
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.fileLoader = fileLoader;
+        this.executor = Executors.newFixedThreadPool(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism,
+                new NamedThreadFactory("file-ingestion-"));
+    }
+
+    /**
+     * Ingests all matching files and waits for them to be stored.
+     *
+     * @return number of files stored
+     */
+    int ingestAll() throws IOException {
+        var start = System.nanoTime();
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(this::matches).toList();
+        }
+        // a file failing to be stored is reported by ingest, it never fails the others
+        var tasks = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> ingest(file), executor))
+                .toList();
+        var stored = (int) tasks.stream().filter(CompletableFuture::join).count();
+        LOG.info("Directory <%s> ready, <%d> of <%d> file(s) stored in <%d> ms"
+                .formatted(directory, stored, files.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        return stored;
+    }
+
+    /**
+     * Starts watching the directory and its subdirectories for new and changed files.
+     */
+    void watch() throws IOException {
+        watchService = directory.getFileSystem().newWatchService();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (var path : paths.filter(Files::isDirectory).toList()) {
+                register(path);
+            }
+        }
+        watchThread = new NamedThreadFactory("directory-watch-").newThread(this::processEvents);
+        watchThread.start();
+        LOG.info("Watching directory <%s> for new files".formatted(directory));
+    }
+
+    private void processEvents() {
+        var pending = new LinkedHashSet<Path>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                var key = pending.isEmpty() ? watchService.take() : watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    pending.forEach(file -> executor.submit(() -> ingest(file)));
+                    pending.clear();
+                    continue;
+                }
+                collectChanges(key, pending);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collectChanges(WatchKey key, Set<Path> pending) {
+        var watchedDirectory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                LOG.warn("Watch events of <%s> were lost, changes may be missed".formatted(watchedDirectory));
+                continue;
+            }
+            var path = watchedDirectory.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                registerNewDirectory(path, pending);
+            } else if (matches(path)) {
+                pending.add(path);
+            }
+        }
+        key.reset();
+    }
+
+    private boolean ingest(Path file) {
+        var start = System.nanoTime();
+        try {
+            var merkleTree = fileLoader.apply(file);
+            LOG.info("File <%s> stored with root hash <%s>, <%d> piece(s) in <%d> ms".formatted(directory.relativize(file),
+                    merkleTree.root().hash().getHexString(), merkleTree.pieceCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            return true;
+        } catch (RuntimeException exception) {
+            LOG.warn("File <%s> could not be stored. Reason: %s".formatted(file, exception.getMessage()));
+            return false;
+        }
+    }
+
+    private boolean matches(Path path) {
+        return Files.isRegularFile(path) && matcher.matches(directory.relativize(path));
+    }
+
+    private void register(Path path) throws IOException {
+        path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+    }
+
+    private void registerNewDirectory(Path newDirectory, Set<Path> pending) {
+        try {
+            registerTree(newDirectory, pending);
+        } catch (IOException exception) {
+            LOG.warn("Directory <%s> could not be watched. Reason: %s".formatted(newDirectory, exception.getMessage()));
+        }
+    }
+
+    /**
+     * Files may be created in a new directory before it is registered, so each directory is listed right after its
+     * registration. Anything created later raises an event, a file both listed and reported is pending only once.
+     */
+    private void registerTree(Path newDirectory, Set<Path> pending) throws IOException {
+        register(newDirectory);
+        try (Stream<Path> paths = Files.list(newDirectory)) {
+            for (var path : paths.toList()) {
+                if (Files.isDirectory(path)) {
+                    registerTree(path, pending);
+                } else if (matches(path)) {
+                    pending.add(path);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+        executor.shutdownNow();
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
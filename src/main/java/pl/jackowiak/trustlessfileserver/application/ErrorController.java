@@ -1,5 +1,6 @@
 package pl.jackowiak.trustlessfileserver.application;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -7,6 +8,7 @@ import org.springframework.web.bind.annotation.RestController;
  * Simple error controller.
  */
 @RestController
+@Profile("!reactive")
 class ErrorController implements org.springframework.boot.web.servlet.error.ErrorController {
 
     @RequestMapping(value = "/error")
@@ -5,25 +5,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
 import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
-import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceSizePolicy;
 import pl.jackowiak.trustlessfileserver.domain.ports.in.StoreFile;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
 
 import static java.util.Optional.ofNullable;
 import static org.apache.commons.codec.digest.MessageDigestAlgorithms.SHA_256;
+import static pl.jackowiak.trustlessfileserver.domain.model.MerkleTree.DEFAULT_PIECE_SIZE;
 
 /**
- * Handles loading file on application startup.
+ * Handles loading file, or all files of a directory, on application startup. Piece hashes are collected into the merkle
+ * tree while the file is read, no list of them is kept.
  */
 @Component
 class FileLoader {
@@ -32,9 +36,11 @@ class FileLoader {
     private static final String DEFAULT_FILE = "/pug-in-space.jpg";
     private static final String DEFAULT_HASHING_ALGO = SHA_256;
     private static final String DEFAULT_ENCODING_ALGO = "BASE_64";
-    private static final int DEFAULT_PIECE_SIZE = 1024;
+    private static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    private static final String DEFAULT_GLOB = "**";
     private final Environment env;
     private final StoreFile storeFile;
+    private DirectoryIngestion directoryIngestion;
 
     FileLoader(StoreFile storeFile, Environment env) {
         this.storeFile = storeFile;
@@ -43,45 +49,136 @@ class FileLoader {
 
     @PostConstruct
     public void run() {
+        var directory = env.getProperty("directory");
+        if (directory != null) {
+            loadDirectory(Paths.get(directory));
+            return;
+        }
         var filePath = env.getProperty("filePath");
         LOG.info("Arguments: " + filePath);
-        Try.of(() -> storeFilePieces(filePath))
-                .mapTry(storeFile::storeAsMerkleTree)
+        var pieceSizePolicy = pieceSizePolicy();
+        var source = filePath == null ? null : createSource(Paths.get(filePath), pieceSizePolicy);
+        var storedMerkleTree = ofNullable(source).flatMap(storeFile::findStoredMerkleTree);
+        if (storedMerkleTree.isPresent()) {
+            LOG.info("File already stored, skipping ingestion");
+            reportSuccess(storedMerkleTree.get());
+            return;
+        }
+        var pieceSize = source == null ? pieceSizePolicy.pieceSize() : source.pieceSize();
+        var parallelism = env.getProperty("ingestion.parallelism", Integer.class, 0);
+        Try.of(() -> storeFilePieces(filePath, source, pieceSize, parallelism))
+                .mapTry(merkleTreeBuilder -> storeMerkleTree(merkleTreeBuilder, source))
                 .andThen(this::reportSuccess)
                 .orElseRun(this::reportFailure);
     }
 
-    private List<PieceHash> storeFilePieces(String path) {
-        try (var resourceAsStream = loadFile(path); var resourceStream = new BufferedInputStream(resourceAsStream)) {
-            return storePieces(resourceStream);
+    @PreDestroy
+    public void stop() throws IOException {
+        if (directoryIngestion != null) {
+            directoryIngestion.close();
+        }
+    }
+
+    private void loadDirectory(Path directory) {
+        var glob = env.getProperty("directory.glob", DEFAULT_GLOB);
+        var watch = env.getProperty("directory.watch", Boolean.class, false);
+        // a mapped file changed in place would keep serving its previous root from bytes no longer matching it
+        if (watch && "mapped".equals(env.getProperty("repository")))
+            throw new IllegalArgumentException("Watching directory <%s> is not supported by the mapped repository, served files must not change.".formatted(directory));
+        LOG.info("Run with directory: %s, files matching: %s".formatted(directory, glob));
+        var pieceSizePolicy = pieceSizePolicy();
+        // files are ingested concurrently, so the pieces of each file are read on its own worker
+        directoryIngestion = new DirectoryIngestion(directory, glob, env.getProperty("ingestion.files.parallelism", Integer.class, 0),
+                path -> loadFile(createSource(path, pieceSizePolicy)));
+        try {
+            directoryIngestion.ingestAll();
+            if (watch) {
+                directoryIngestion.watch();
+            }
+        } catch (IOException exception) {
+            reportFailure(exception);
+        }
+    }
+
+    private MerkleTree loadFile(FileSource source) {
+        return storeFile.findStoredMerkleTree(source)
+                .orElseGet(() -> storeMerkleTree(storeSourcePieces(source, 1), source));
+    }
+
+    /**
+     * Stores the merkle tree of ingested pieces, they are released when the tree cannot be stored.
+     */
+    private MerkleTree storeMerkleTree(MerkleTreeBuilder merkleTreeBuilder, FileSource source) {
+        try {
+            return source == null ? storeFile.storeAsMerkleTree(merkleTreeBuilder) : storeFile.storeAsMerkleTree(merkleTreeBuilder, source);
+        } catch (RuntimeException exception) {
+            storeFile.releasePieces(merkleTreeBuilder.pieceHashes());
+            throw exception;
+        }
+    }
+
+    private PieceSizePolicy pieceSizePolicy() {
+        return new PieceSizePolicy(
+                env.getProperty("pieceSize", Integer.class, DEFAULT_PIECE_SIZE),
+                env.getProperty("pieceSize.maxTreeDepth", Integer.class, 0));
+    }
+
+    private FileSource createSource(Path path, PieceSizePolicy pieceSizePolicy) {
+        try {
+            var pieceSize = pieceSizePolicy.pieceSizeFor(Files.size(path));
+            LOG.info("Using piece size of <%d> bytes".formatted(pieceSize));
+            return new FileSource(path, pieceSize);
+        } catch (IOException exception) {
+            // the missing file is reported by the ingestion itself
+            return new FileSource(path, pieceSizePolicy.pieceSize());
+        }
+    }
+
+    private MerkleTreeBuilder storeFilePieces(String path, FileSource source, int pieceSize, int parallelism) {
+        if (source != null) {
+            LOG.info("Run with file path: %s".formatted(source.path()));
+            return storeSourcePieces(source, parallelism);
+        }
+        try (var resourceAsStream = loadDefaultFile(); var resourceStream = new BufferedInputStream(resourceAsStream)) {
+            return storePieces(resourceStream, pieceSize);
         } catch (IOException exception) {
             throw new IllegalArgumentException(
                     "There was an error while trying to store file. File path: <%s>. Reason: <%s>".formatted(path, exception.getMessage()), exception);
         }
     }
 
-    private InputStream loadFile(String path) throws IOException {
-        if (path == null) {
-            LOG.info("Run with default file path: %s".formatted(DEFAULT_FILE));
-            return ofNullable(FileLoader.class.getResourceAsStream(DEFAULT_FILE))
-                    .orElseThrow(() -> new IllegalArgumentException(
-                            "There was an error reading file from path: <%s>. Reason: <File not found>".formatted(DEFAULT_FILE)));
+    private MerkleTreeBuilder storeSourcePieces(FileSource source, int parallelism) {
+        var blockSize = env.getProperty("ingestion.blockSize", Integer.class, DEFAULT_BLOCK_SIZE);
+        try {
+            return new PieceIngestion(storeFile, parallelism, blockSize).ingest(source, DEFAULT_HASHING_ALGO, DEFAULT_ENCODING_ALGO);
+        } catch (IOException exception) {
+            throw new IllegalArgumentException(
+                    "There was an error while trying to store file. File path: <%s>. Reason: <%s>".formatted(source.path(), exception.getMessage()), exception);
         }
-        LOG.info("Run with file path: %s".formatted(path));
-        return Files.newInputStream(Paths.get(path));
     }
 
-    private List<PieceHash> storePieces(BufferedInputStream stream) throws IOException {
-        var storedPiecesHashes = new ArrayList<PieceHash>();
+    private InputStream loadDefaultFile() {
+        LOG.info("Run with default file path: %s".formatted(DEFAULT_FILE));
+        return ofNullable(FileLoader.class.getResourceAsStream(DEFAULT_FILE))
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "There was an error reading file from path: <%s>. Reason: <File not found>".formatted(DEFAULT_FILE)));
+    }
+
+    private MerkleTreeBuilder storePieces(BufferedInputStream stream, int pieceSize) throws IOException {
+        var merkleTreeBuilder = new MerkleTreeBuilder(pieceSize);
         byte[] piece;
-        while (true) {
-            piece = stream.readNBytes(DEFAULT_PIECE_SIZE);
-            if (piece.length == 0) break;
-            var persistPiece = new PersistPiece(piece, DEFAULT_HASHING_ALGO, DEFAULT_ENCODING_ALGO);
-            var storedPieceHash = storeFile.persistPiece(persistPiece);
-            storedPiecesHashes.add(storedPieceHash);
+        try {
+            while (true) {
+                piece = stream.readNBytes(pieceSize);
+                if (piece.length == 0) break;
+                var persistPiece = new PersistPiece(piece, DEFAULT_HASHING_ALGO, DEFAULT_ENCODING_ALGO);
+                merkleTreeBuilder.add(storeFile.persistPiece(persistPiece));
+            }
+        } catch (IOException | RuntimeException exception) {
+            storeFile.releasePieces(merkleTreeBuilder.pieceHashes());
+            throw exception;
         }
-        return storedPiecesHashes;
+        return merkleTreeBuilder;
     }
 
     private void reportSuccess(MerkleTree merkleTree) {
@@ -0,0 +1,146 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import io.vavr.control.Try;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+import pl.jackowiak.trustlessfileserver.application.model.DedupData;
+import pl.jackowiak.trustlessfileserver.application.model.Hashes;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceSizePolicy;
+import pl.jackowiak.trustlessfileserver.domain.ports.in.ServerFiles;
+import pl.jackowiak.trustlessfileserver.domain.ports.in.StoreFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import static org.apache.commons.codec.digest.MessageDigestAlgorithms.SHA_256;
+import static org.springframework.http.HttpHeaders.CONTENT_LENGTH;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
+import static org.springframework.http.ResponseEntity.badRequest;
+import static org.springframework.http.ResponseEntity.noContent;
+import static org.springframework.http.ResponseEntity.ok;
+import static pl.jackowiak.trustlessfileserver.domain.model.MerkleTree.DEFAULT_PIECE_SIZE;
+
+/**
+ * Controller receiving uploaded files. The request body is read piece by piece, every piece is stored as soon as it
+ * arrives and the merkle tree is published once the whole body was read, so only a single piece is held at a time.
+ * Pieces can also be appended to an already served file, which is then published under a new root. Pieces of an
+ * upload that fails or is rejected are released. Deleting a file releases the pieces no other file lists.
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/")
+class FilesEndpoint {
+
+    private static final String HASHING_ALGO = SHA_256;
+    private static final String ENCODING_ALGO = "BASE_64";
+
+    private final StoreFile storeFile;
+    private final ServerFiles serverFiles;
+    private final PieceSizePolicy pieceSizePolicy;
+
+    FilesEndpoint(StoreFile storeFile, ServerFiles serverFiles, Environment env) {
+        this.storeFile = storeFile;
+        this.serverFiles = serverFiles;
+        this.pieceSizePolicy = new PieceSizePolicy(
+                env.getProperty("pieceSize", Integer.class, DEFAULT_PIECE_SIZE),
+                env.getProperty("pieceSize.maxTreeDepth", Integer.class, 0));
+    }
+
+    @PostMapping(value = "/files", consumes = APPLICATION_OCTET_STREAM_VALUE, produces = APPLICATION_JSON_VALUE)
+    @ResponseBody
+    ResponseEntity<?> upload(InputStream body,
+                             @RequestParam(required = false) Integer pieceSize,
+                             @RequestHeader(value = CONTENT_LENGTH, required = false) Long contentLength) throws IOException {
+        if (pieceSize != null && (pieceSize <= 0 || pieceSize > PieceSizePolicy.MAX_PIECE_SIZE)) {
+            return badRequest().body("Piece size has to be between <1> and <%d> bytes!".formatted(PieceSizePolicy.MAX_PIECE_SIZE));
+        }
+        var uploadPieceSize = pieceSize != null ? pieceSize.intValue()
+                : contentLength != null ? pieceSizePolicy.pieceSizeFor(contentLength) : pieceSizePolicy.pieceSize();
+        var merkleTreeBuilder = new MerkleTreeBuilder(uploadPieceSize);
+        try {
+            byte[] piece;
+            while ((piece = body.readNBytes(uploadPieceSize)).length > 0) {
+                merkleTreeBuilder.add(storeFile.persistPiece(new PersistPiece(piece, HASHING_ALGO, ENCODING_ALGO)));
+            }
+            if (merkleTreeBuilder.pieceCount() == 0) {
+                return badRequest().body("Uploaded file cannot be empty!");
+            }
+            return created(storeFile.storeAsMerkleTree(merkleTreeBuilder));
+        } catch (IOException | RuntimeException exception) {
+            storeFile.releasePieces(merkleTreeBuilder.pieceHashes());
+            throw exception;
+        }
+    }
+
+    @PostMapping(value = "/files/{hashId}", consumes = APPLICATION_OCTET_STREAM_VALUE, produces = APPLICATION_JSON_VALUE)
+    @ResponseBody
+    ResponseEntity<?> append(@PathVariable String hashId, InputStream body) throws IOException, DecoderException {
+        var merkleHash = MerkleHash.rawHash(Hex.decodeHex(hashId));
+        if (!serverFiles.availableFiles().containsKey(merkleHash)) {
+            return badRequest().body("File <%s> not found!".formatted(hashId));
+        }
+        // rejected before any piece of the body is persisted
+        var appendable = Try.of(() -> storeFile.findAppendableMerkleTree(merkleHash));
+        if (appendable.isFailure()) {
+            return badRequest().body(appendable.getCause().getMessage());
+        }
+        var pieceSize = appendable.get().pieceSize();
+        var appendedPiecesHashes = new ArrayList<PieceHash>();
+        try {
+            byte[] piece;
+            while ((piece = body.readNBytes(pieceSize)).length > 0) {
+                appendedPiecesHashes.add(storeFile.persistPiece(new PersistPiece(piece, HASHING_ALGO, ENCODING_ALGO)));
+            }
+        } catch (IOException | RuntimeException exception) {
+            storeFile.releasePieces(appendedPiecesHashes);
+            throw exception;
+        }
+        return Try.of(() -> storeFile.appendToMerkleTree(merkleHash, appendedPiecesHashes))
+                .map(this::created)
+                .getOrElseGet(throwable -> {
+                    storeFile.releasePieces(appendedPiecesHashes);
+                    return badRequest().body(throwable.getMessage());
+                });
+    }
+
+    @DeleteMapping("/files/{hashId}")
+    ResponseEntity<?> delete(@PathVariable String hashId) throws DecoderException {
+        var merkleHash = MerkleHash.rawHash(Hex.decodeHex(hashId));
+        if (!storeFile.deleteMerkleTree(merkleHash)) {
+            return ResponseEntity.status(NOT_FOUND).body("File <%s> not found!".formatted(hashId));
+        }
+        return noContent().build();
+    }
+
+    @GetMapping(value = "/files/dedup", produces = APPLICATION_JSON_VALUE)
+    @ResponseBody
+    ResponseEntity<DedupData> dedup() {
+        return ok(ResponseMapper.mapToDedupData(serverFiles.dedupStatistics()));
+    }
+
+    private ResponseEntity<?> created(MerkleTree merkleTree) {
+        return ResponseEntity.status(CREATED)
+                .body(new Hashes(merkleTree.root().hash().getHexString(), merkleTree.pieceCount(), merkleTree.pieceSize()));
+    }
+}
@@ -2,23 +2,27 @@ package pl.jackowiak.trustlessfileserver.application;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
-import pl.jackowiak.trustlessfileserver.application.model.Hashes;
-import pl.jackowiak.trustlessfileserver.application.model.PieceData;
-import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
-import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeElement;
 import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
 import pl.jackowiak.trustlessfileserver.domain.ports.in.ServerFiles;
 
-import java.util.Map;
-
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.CACHE_CONTROL;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
 import static org.springframework.http.ResponseEntity.badRequest;
 
 /**
@@ -26,6 +30,7 @@ import static org.springframework.http.ResponseEntity.badRequest;
  */
 @RestController
 @RequestMapping("/")
+@Profile("!reactive")
 class HashesEndpoint {
 
     private final ServerFiles serverFiles;
@@ -36,34 +41,66 @@ class HashesEndpoint {
 
     @GetMapping(value = "/hashes", produces = APPLICATION_JSON_VALUE)
     @ResponseBody
-    ResponseEntity<?> hashes() {
+    ResponseEntity<?> hashes(@RequestHeader HttpHeaders headers) {
+        // the version is read before the files, so it never claims a newer catalog than the one sent
+        var etag = CacheValidators.catalogETag(serverFiles.catalogVersion());
+        if (CacheValidators.notModified(headers.getOrEmpty(IF_NONE_MATCH), etag)) {
+            return notModified(etag, CacheValidators.REVALIDATE).build();
+        }
         var availableFiles = serverFiles.availableFiles();
         var response = availableFiles.entrySet().stream()
-                .map(this::createHashesResponse)
+                .map(ResponseMapper::mapToHashes)
                 .toList();
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header(CACHE_CONTROL, CacheValidators.REVALIDATE)
+                .body(response);
     }
 
-    private Hashes createHashesResponse(Map.Entry<MerkleHash, Integer> entry) {
-        var key = entry.getKey();
-        return new Hashes(key.getHexString(), entry.getValue());
+    @GetMapping(value = "/piece/{hashId}/{pieceIndex}", produces = {APPLICATION_JSON_VALUE, APPLICATION_OCTET_STREAM_VALUE})
+    @ResponseBody
+    ResponseEntity<?> getAppRoot(@PathVariable String hashId, @PathVariable Integer pieceIndex, @RequestHeader HttpHeaders headers) throws DecoderException {
+        var binary = ResponseMapper.prefersBinary(headers.getAccept());
+        var merkleHash = MerkleHash.rawHash(Hex.decodeHex(hashId));
+        var etag = CacheValidators.pieceETag(hashId, pieceIndex, binary ? "bin" : "json");
+        if (CacheValidators.served(serverFiles, merkleHash, pieceIndex, pieceIndex) && CacheValidators.notModified(headers.getOrEmpty(IF_NONE_MATCH), etag)) {
+            return notModified(etag, CacheValidators.IMMUTABLE).varyBy(ACCEPT).build();
+        }
+        return serverFiles.getProofForPiece(merkleHash, pieceIndex)
+                .<ResponseEntity<?>>map(pieceProof -> binary ? mapToBinaryResponse(pieceProof, merkleHash, etag) : immutable(etag).varyBy(ACCEPT).body(ResponseMapper.mapToPieceData(pieceProof)))
+                .fold(domainFailure -> badRequest().body(domainFailure.reason()), response -> response);
     }
 
-    @GetMapping(value = "/piece/{hashId}/{pieceIndex}", produces = APPLICATION_JSON_VALUE)
+    @GetMapping(value = "/pieces/{hashId}", produces = APPLICATION_JSON_VALUE)
     @ResponseBody
-    ResponseEntity<?> getAppRoot(@PathVariable String hashId, @PathVariable Integer pieceIndex) throws DecoderException {
+    ResponseEntity<?> getPieceRange(@PathVariable String hashId, @RequestParam Integer from, @RequestParam Integer to,
+                                    @RequestHeader HttpHeaders headers) throws DecoderException {
         var merkleHash = MerkleHash.rawHash(Hex.decodeHex(hashId));
-        return serverFiles.getProofForPiece(merkleHash, pieceIndex)
-                .map(this::mapToPieceData)
-                .fold(domainFailure -> badRequest().body(domainFailure.reason()), ResponseEntity::ok);
+        var etag = CacheValidators.pieceRangeETag(hashId, from, to);
+        if (CacheValidators.served(serverFiles, merkleHash, from, to) && CacheValidators.notModified(headers.getOrEmpty(IF_NONE_MATCH), etag)) {
+            return notModified(etag, CacheValidators.IMMUTABLE).build();
+        }
+        return serverFiles.getProofForPieceRange(merkleHash, from, to)
+                .map(ResponseMapper::mapToPieceRangeData)
+                .fold(domainFailure -> badRequest().body(domainFailure.reason()), response -> immutable(etag).body(response));
     }
 
-    private PieceData mapToPieceData(PieceProof proofForPiece) {
-        var stringProofs = proofForPiece.proofs().stream()
-                .map(MerkleTreeElement::hash)
-                .map(MerkleHash::getHexString)
-                .toList();
-        var content = proofForPiece.content();
-        return new PieceData(content.getHexString(), stringProofs);
+    private ResponseEntity<byte[]> mapToBinaryResponse(PieceProof proofForPiece, MerkleHash merkleHash, String etag) {
+        return immutable(etag)
+                .varyBy(ACCEPT)
+                .contentType(APPLICATION_OCTET_STREAM)
+                .body(PieceBinaryFormat.write(proofForPiece, merkleHash));
+    }
+
+    private static ResponseEntity.BodyBuilder immutable(String etag) {
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header(CACHE_CONTROL, CacheValidators.IMMUTABLE);
+    }
+
+    private static ResponseEntity.BodyBuilder notModified(String etag, String cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .header(CACHE_CONTROL, cacheControl);
     }
 }
@@ -0,0 +1,59 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeElement;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+
+import java.nio.ByteBuffer;
+
+import static java.lang.String.format;
+
+/**
+ * Writes piece with its proof in the binary wire format. All numbers are unsigned and big endian:
+ * <pre>
+ * offset                      size                       field
+ * 0                           1                          format version (1)
+ * 1                           1                          hash length in bytes (H)
+ * 2                           2                          number of proof hashes (N)
+ * 4                           4                          content length in bytes (C)
+ * 8                           N * H                      raw proof hashes, sibling first
+ * 8 + N * H                   C                          raw piece content
+ * </pre>
+ * The hash length is the length of the root hash, so it is set for a single piece file without proof hashes as well.
+ */
+final class PieceBinaryFormat {
+
+    static final byte VERSION = 1;
+    static final int HEADER_LENGTH = 8;
+
+    private PieceBinaryFormat() {
+        throw new AssertionError(format("The class \"%s\" is not instantiable", this.getClass()));
+    }
+
+    static byte[] write(PieceProof pieceProof, MerkleHash rootHash) {
+        var header = writeHeader(pieceProof, rootHash);
+        var content = pieceProof.content();
+        var buffer = ByteBuffer.allocate(header.remaining() + content.getContentLength());
+        buffer.put(header);
+        buffer.put(content.getContentBuffer());
+        return buffer.array();
+    }
+
+    /**
+     * Writes everything but the piece content, so the content can be sent right after it without being copied.
+     */
+    static ByteBuffer writeHeader(PieceProof pieceProof, MerkleHash rootHash) {
+        var content = pieceProof.content();
+        var proofs = pieceProof.proofs();
+        var hashLength = rootHash.getHash().length;
+        var buffer = ByteBuffer.allocate(HEADER_LENGTH + proofs.size() * hashLength);
+        buffer.put(VERSION)
+                .put((byte) hashLength)
+                .putShort((short) proofs.size())
+                .putInt(content.getContentLength());
+        proofs.stream()
+                .map(MerkleTreeElement::hash)
+                .forEach(hash -> buffer.put(hash.getHash()));
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,235 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.ports.in.StoreFile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Stores file pieces in parallel. The file is split into blocks of whole pieces, each block is read with a positional
+ * read and its pieces are hashed and persisted by a worker. At most two blocks per worker are in flight, which bounds
+ * the memory used when the workers cannot keep up. Piece hashes of finished blocks are added to a
+ * {@link MerkleTreeBuilder} in file order, so only the hashes of the blocks in flight are held besides the tree. When the
+ * ingestion fails part way, the pieces already persisted are released.
+ */
+final class PieceIngestion {
+
+    private static final int BLOCKS_IN_FLIGHT_PER_WORKER = 2;
+
+    private final StoreFile storeFile;
+    private final int parallelism;
+    private final int blockSize;
+
+    /**
+     * @param parallelism number of workers, <code>0</code> uses all available processors
+     * @param blockSize   bytes read at once, rounded down to whole pieces
+     */
+    PieceIngestion(StoreFile storeFile, int parallelism, int blockSize) {
+        if (parallelism < 0)
+            throw new IllegalArgumentException("Ingestion parallelism cannot be negative!");
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Ingestion block size has to be positive!");
+        this.storeFile = storeFile;
+        this.parallelism = parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @return builder of the file merkle tree holding all its piece hashes, empty for an empty file
+     */
+    MerkleTreeBuilder ingest(FileSource source, String hashingAlgoName, String encodingAlgoName) throws IOException {
+        var pieceSize = source.pieceSize();
+        var piecesPerBlock = Math.max(1, blockSize / pieceSize);
+        var blockBytes = (long) piecesPerBlock * pieceSize;
+        try (var channel = FileChannel.open(source.path(), READ)) {
+            var size = channel.size();
+            var merkleTreeBuilder = new MerkleTreeBuilder(pieceSize);
+            var blocks = new FileBlocks(channel, source, hashingAlgoName, encodingAlgoName);
+            try {
+                if (parallelism == 1) {
+                    ingestBlocks(blocks, size, blockBytes, merkleTreeBuilder);
+                } else {
+                    submitBlocks(blocks, size, blockBytes, merkleTreeBuilder);
+                }
+            } catch (IOException | RuntimeException exception) {
+                storeFile.releasePieces(merkleTreeBuilder.pieceHashes());
+                throw exception;
+            }
+            return merkleTreeBuilder;
+        }
+    }
+
+    /**
+     * Single worker reads on the calling thread, so files ingested concurrently do not start a pool each.
+     */
+    private static void ingestBlocks(FileBlocks blocks, long size, long blockBytes, MerkleTreeBuilder merkleTreeBuilder) throws IOException {
+        try {
+            for (var offset = 0L; offset < size; offset += blockBytes) {
+                addAll(merkleTreeBuilder, blocks.ingest(offset, (int) Math.min(blockBytes, size - offset)));
+            }
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    private void submitBlocks(FileBlocks blocks, long size, long blockBytes, MerkleTreeBuilder merkleTreeBuilder) throws IOException {
+        var executor = Executors.newFixedThreadPool(parallelism, new IngestionThreadFactory());
+        var tasks = new ArrayDeque<Future<PieceHash[]>>();
+        try {
+            submitBlocks(executor, tasks, blocks, size, blockBytes, merkleTreeBuilder);
+        } catch (IOException | RuntimeException exception) {
+            releaseInFlight(tasks);
+            throw exception;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submitBlocks(ExecutorService executor, Queue<Future<PieceHash[]>> tasks, FileBlocks blocks, long size,
+                              long blockBytes, MerkleTreeBuilder merkleTreeBuilder) throws IOException {
+        var inFlight = new Semaphore(parallelism * BLOCKS_IN_FLIGHT_PER_WORKER);
+        try {
+            for (var offset = 0L; offset < size; offset += blockBytes) {
+                inFlight.acquire();
+                var blockOffset = offset;
+                var blockLength = (int) Math.min(blockBytes, size - offset);
+                tasks.add(executor.submit(() -> {
+                    try {
+                        return blocks.ingest(blockOffset, blockLength);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                awaitDone(tasks, merkleTreeBuilder);
+            }
+            while (!tasks.isEmpty()) {
+                addAll(merkleTreeBuilder, await(tasks.poll()));
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("File ingestion was interrupted");
+        }
+    }
+
+    /**
+     * Releases pieces of the blocks submitted after a failed one. The blocks are awaited, a running task cannot be told
+     * apart from a queued one to cancel it, and there are at most two per worker. A failed block releases its own pieces.
+     */
+    private void releaseInFlight(Queue<Future<PieceHash[]>> tasks) {
+        for (var task : tasks) {
+            try {
+                storeFile.releasePieces(Arrays.asList(task.get()));
+            } catch (ExecutionException exception) {
+                // released by the block itself
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Collects finished blocks in submission order, so their hashes keep the file order and a failure stops submitting
+     * further blocks.
+     */
+    private static void awaitDone(Queue<Future<PieceHash[]>> tasks, MerkleTreeBuilder merkleTreeBuilder) throws IOException, InterruptedException {
+        while (!tasks.isEmpty() && tasks.peek().isDone()) {
+            addAll(merkleTreeBuilder, await(tasks.poll()));
+        }
+    }
+
+    private static void addAll(MerkleTreeBuilder merkleTreeBuilder, PieceHash[] pieceHashes) {
+        for (var pieceHash : pieceHashes) {
+            merkleTreeBuilder.add(pieceHash);
+        }
+    }
+
+    private static PieceHash[] await(Future<PieceHash[]> task) throws IOException, InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof UncheckedIOException ioException)
+                throw ioException.getCause();
+            if (exception.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            throw new IllegalStateException(exception.getCause());
+        }
+    }
+
+    private final class FileBlocks {
+        private final FileChannel channel;
+        private final FileSource source;
+        private final String hashingAlgoName;
+        private final String encodingAlgoName;
+
+        private FileBlocks(FileChannel channel, FileSource source, String hashingAlgoName, String encodingAlgoName) {
+            this.channel = channel;
+            this.source = source;
+            this.hashingAlgoName = hashingAlgoName;
+            this.encodingAlgoName = encodingAlgoName;
+        }
+
+        PieceHash[] ingest(long offset, int length) {
+            var buffer = ByteBuffer.allocate(length);
+            read(buffer, offset);
+            var pieceSize = source.pieceSize();
+            var pieceHashes = new PieceHash[(int) (((long) length + pieceSize - 1) / pieceSize)];
+            var persisted = 0;
+            try {
+                while (buffer.hasRemaining()) {
+                    var piece = new byte[Math.min(pieceSize, buffer.remaining())];
+                    buffer.get(piece);
+                    pieceHashes[persisted] = storeFile.persistPiece(new PersistPiece(piece, hashingAlgoName, encodingAlgoName, source));
+                    persisted++;
+                }
+            } catch (RuntimeException exception) {
+                storeFile.releasePieces(Arrays.asList(pieceHashes).subList(0, persisted));
+                throw exception;
+            }
+            return pieceHashes;
+        }
+
+        private void read(ByteBuffer buffer, long offset) {
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0)
+                        throw new EOFException("File <%s> ended before expected size".formatted(source.path()));
+                }
+                buffer.flip();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+
+    private static final class IngestionThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, "piece-ingestion-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpRange;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.RawFile;
+import pl.jackowiak.trustlessfileserver.domain.ports.in.ServerFiles;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.http.HttpHeaders.ACCEPT_RANGES;
+import static org.springframework.http.HttpHeaders.CACHE_CONTROL;
+import static org.springframework.http.HttpHeaders.CONTENT_RANGE;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.RANGE;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
+import static org.springframework.http.MediaType.TEXT_PLAIN_VALUE;
+
+/**
+ * Controller serving raw content for clients verifying it on their own. The bytes are sent as they are stored, the
+ * piece proof travels in the {@value ResponseMapper#PROOF_HEADER} header as comma separated hex hashes, sibling first.
+ */
+@RestController
+@RequestMapping("/")
+@Profile("!reactive")
+class RawContentEndpoint {
+
+    private final ServerFiles serverFiles;
+
+    RawContentEndpoint(ServerFiles serverFiles) {
+        this.serverFiles = serverFiles;
+    }
+
+    @GetMapping(value = "/piece/{hashId}/{pieceIndex}/raw", produces = APPLICATION_OCTET_STREAM_VALUE)
+    void getRawPiece(@PathVariable String hashId, @PathVariable Integer pieceIndex, HttpServletRequest request, HttpServletResponse response)
+            throws DecoderException, IOException {
+        var merkleHash = MerkleHash.rawHash(Hex.decodeHex(hashId));
+        var etag = CacheValidators.pieceETag(hashId, pieceIndex, "raw");
+        if (CacheValidators.served(serverFiles, merkleHash, pieceIndex, pieceIndex) && notModified(request, response, etag)) {
+            return;
+        }
+        var rawPiece = serverFiles.getRawPiece(merkleHash, pieceIndex);
+        if (rawPiece.isLeft()) {
+            writeFailure(response, rawPiece.getLeft());
+            return;
+        }
+        setImmutable(response, etag);
+        response.setContentType(APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(ResponseMapper.PROOF_HEADER, ResponseMapper.mapToProofHeader(rawPiece.get()));
+        RawContentWriter.write(request, response, List.of(rawPiece.get().content()).iterator(), rawPiece.get().content().length());
+    }
+
+    @GetMapping(value = "/file/{hashId}/raw", produces = APPLICATION_OCTET_STREAM_VALUE)
+    void getRawFile(@PathVariable String hashId, HttpServletRequest request, HttpServletResponse response) throws DecoderException, IOException {
+        var merkleHash = MerkleHash.rawHash(Hex.decodeHex(hashId));
+        var etag = CacheValidators.fileETag(hashId, "raw");
+        if (CacheValidators.served(serverFiles, merkleHash) && notModified(request, response, etag)) {
+            return;
+        }
+        var rawFile = serverFiles.getRawFile(merkleHash);
+        if (rawFile.isLeft()) {
+            writeFailure(response, rawFile.getLeft());
+            return;
+        }
+        setImmutable(response, etag);
+        response.setContentType(APPLICATION_OCTET_STREAM_VALUE);
+        RawContentWriter.write(request, response, rawFile.get().pieces(0, rawFile.get().merkleTree().pieceCount() - 1), rawFile.get().length());
+    }
+
+    /**
+     * Serves the file honouring byte ranges. Each range is widened to whole pieces, so the client gets exactly the
+     * pieces the multiproof in {@value ResponseMapper#PROOF_HEADER} verifies. Ranges overlapping or touching each other
+     * after the widening are served as one, more than one range left is sent as <code>multipart/byteranges</code> with
+     * the proof headers in each part. A syntactically invalid <code>Range</code> header is ignored, so the whole file is
+     * served.
+     */
+    @GetMapping("/file/{hashId}")
+    void getFile(@PathVariable String hashId, @RequestHeader(value = RANGE, required = false) String range,
+                 HttpServletRequest request, HttpServletResponse response) throws DecoderException, IOException {
+        var merkleHash = MerkleHash.rawHash(Hex.decodeHex(hashId));
+        var etag = CacheValidators.fileETag(hashId, "proofs");
+        if (CacheValidators.served(serverFiles, merkleHash) && notModified(request, response, etag)) {
+            return;
+        }
+        var rawFile = serverFiles.getRawFile(merkleHash);
+        if (rawFile.isLeft()) {
+            writeFailure(response, rawFile.getLeft());
+            return;
+        }
+        var file = rawFile.get();
+        setImmutable(response, etag);
+        response.setHeader(ACCEPT_RANGES, "bytes");
+        response.setHeader(ResponseMapper.PIECE_SIZE_HEADER, String.valueOf(file.merkleTree().pieceSize()));
+        var httpRanges = parseRanges(range);
+        if (httpRanges.isEmpty()) {
+            writePieceRange(request, response, file, new PieceRange(0, file.merkleTree().pieceCount() - 1));
+            return;
+        }
+        var pieceRanges = alignToPieces(file, httpRanges);
+        if (pieceRanges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(CONTENT_RANGE, "bytes */%d".formatted(file.length()));
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (pieceRanges.size() == 1) {
+            response.setHeader(CONTENT_RANGE, contentRange(file, pieceRanges.get(0)));
+            writePieceRange(request, response, file, pieceRanges.get(0));
+        } else {
+            writeMultipart(response, file, pieceRanges);
+        }
+    }
+
+    private static void writePieceRange(HttpServletRequest request, HttpServletResponse response, RawFile file, PieceRange pieceRange) throws IOException {
+        response.setContentType(APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(ResponseMapper.PIECES_HEADER, pieceRange.header());
+        response.setHeader(ResponseMapper.PROOF_HEADER, ResponseMapper.mapToProofHeader(file.proofs(pieceRange.fromIndex(), pieceRange.toIndex())));
+        RawContentWriter.write(request, response, file.pieces(pieceRange.fromIndex(), pieceRange.toIndex()), pieceRange.length(file));
+    }
+
+    private static void writeMultipart(HttpServletResponse response, RawFile file, List<PieceRange> pieceRanges) throws IOException {
+        var boundary = UUID.randomUUID().toString().replace("-", "");
+        var parts = new ArrayList<RawContentWriter.Part>(pieceRanges.size());
+        var length = 0L;
+        for (var pieceRange : pieceRanges) {
+            var header = ("\r\n--%s\r\nContent-Type: %s\r\n%s: %s\r\n%s: %s\r\n%s: %s\r\n\r\n").formatted(boundary, APPLICATION_OCTET_STREAM_VALUE,
+                    CONTENT_RANGE, contentRange(file, pieceRange),
+                    ResponseMapper.PIECES_HEADER, pieceRange.header(),
+                    ResponseMapper.PROOF_HEADER, ResponseMapper.mapToProofHeader(file.proofs(pieceRange.fromIndex(), pieceRange.toIndex())))
+                    .getBytes(US_ASCII);
+            parts.add(new RawContentWriter.Part(header, file.pieces(pieceRange.fromIndex(), pieceRange.toIndex())));
+            length += header.length + pieceRange.length(file);
+        }
+        var closing = "\r\n--%s--\r\n".formatted(boundary).getBytes(US_ASCII);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        RawContentWriter.writeParts(response, parts, closing, length + closing.length);
+    }
+
+    /**
+     * @return requested ranges, none when the header is missing or invalid
+     */
+    private static List<HttpRange> parseRanges(String range) {
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException exception) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Widens the requested byte ranges to piece boundaries, skipping the unsatisfiable ones.
+     */
+    private static List<PieceRange> alignToPieces(RawFile file, List<HttpRange> httpRanges) {
+        var aligned = httpRanges.stream()
+                .filter(httpRange -> httpRange.getRangeStart(file.length()) < file.length())
+                .map(httpRange -> new PieceRange(file.pieceAt(httpRange.getRangeStart(file.length())), file.pieceAt(httpRange.getRangeEnd(file.length()))))
+                .sorted(Comparator.comparingInt(PieceRange::fromIndex))
+                .toList();
+        var merged = new ArrayList<PieceRange>(aligned.size());
+        for (var pieceRange : aligned) {
+            var last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && pieceRange.fromIndex() <= last.toIndex() + 1) {
+                merged.set(merged.size() - 1, new PieceRange(last.fromIndex(), Math.max(last.toIndex(), pieceRange.toIndex())));
+            } else {
+                merged.add(pieceRange);
+            }
+        }
+        return merged;
+    }
+
+    private static String contentRange(RawFile file, PieceRange pieceRange) {
+        return "bytes %d-%d/%d".formatted(file.pieceStart(pieceRange.fromIndex()), file.pieceEnd(pieceRange.toIndex()) - 1, file.length());
+    }
+
+    private static boolean notModified(HttpServletRequest request, HttpServletResponse response, String etag) {
+        if (!CacheValidators.notModified(Collections.list(request.getHeaders(IF_NONE_MATCH)), etag)) {
+            return false;
+        }
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        setImmutable(response, etag);
+        return true;
+    }
+
+    private static void setImmutable(HttpServletResponse response, String etag) {
+        response.setHeader(ETAG, etag);
+        response.setHeader(CACHE_CONTROL, CacheValidators.IMMUTABLE);
+    }
+
+    private static void writeFailure(HttpServletResponse response, DomainFailure domainFailure) throws IOException {
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        response.setContentType(TEXT_PLAIN_VALUE);
+        response.getOutputStream().write(domainFailure.reason().getBytes(UTF_8));
+    }
+
+    /**
+     * Contiguous range of pieces, both indexes inclusive.
+     */
+    private record PieceRange(int fromIndex, int toIndex) {
+        long length(RawFile file) {
+            return file.pieceEnd(toIndex) - file.pieceStart(fromIndex);
+        }
+
+        String header() {
+            return fromIndex + "-" + toIndex;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import pl.jackowiak.trustlessfileserver.domain.model.PieceContent;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Writes raw piece content to the servlet response. Pieces lying next to each other in the same file are merged into
+ * a single region. When the whole response is one region and the connector supports it, the region is handed over to
+ * Tomcat sendfile, so the bytes never reach user space. Other regions are transferred from the file channel. Multipart
+ * bodies interleave part headers with the regions of each part.
+ */
+final class RawContentWriter {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private RawContentWriter() {
+        throw new AssertionError(format("The class \"%s\" is not instantiable", this.getClass()));
+    }
+
+    static void write(HttpServletRequest request, HttpServletResponse response, Iterator<PieceContent> pieces, long length) throws IOException {
+        response.setContentLengthLong(length);
+        var writer = new RegionWriter(response);
+        try (writer) {
+            var region = writeAllButLastRegion(writer, pieces);
+            if (!writer.written() && region != null && sendfileSupported(request)) {
+                request.setAttribute(SENDFILE_FILENAME, region.file().toString());
+                request.setAttribute(SENDFILE_START, region.position());
+                request.setAttribute(SENDFILE_END, region.position() + region.length());
+                return;
+            }
+            writer.write(region);
+        }
+    }
+
+    /**
+     * Writes each part header followed by its pieces, then the closing bytes. Sendfile is never used, as the body is
+     * not a single region of a file.
+     */
+    static void writeParts(HttpServletResponse response, List<Part> parts, byte[] closing, long length) throws IOException {
+        response.setContentLengthLong(length);
+        try (var writer = new RegionWriter(response)) {
+            for (var part : parts) {
+                writer.write(part.header());
+                writer.write(writeAllButLastRegion(writer, part.pieces()));
+            }
+            writer.write(closing);
+        }
+    }
+
+    /**
+     * Merges pieces lying next to each other into regions and writes all of them but the last one, which is returned
+     * so the caller decides how to send it. Pieces held in memory are written right away.
+     */
+    private static Region writeAllButLastRegion(RegionWriter writer, Iterator<PieceContent> pieces) throws IOException {
+        Region region = null;
+        while (pieces.hasNext()) {
+            var piece = pieces.next();
+            var location = piece.location().orElse(null);
+            if (region != null && location != null && region.isFollowedBy(location)) {
+                region = new Region(region.file(), region.position(), region.length() + location.length());
+                continue;
+            }
+            writer.write(region);
+            region = location == null ? null : new Region(location.file(), location.position(), location.length());
+            if (location == null) {
+                writer.write(piece);
+            }
+        }
+        return region;
+    }
+
+    private static boolean sendfileSupported(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED));
+    }
+
+    /**
+     * Part of a multipart body, the header bytes are written as they are.
+     */
+    record Part(byte[] header, Iterator<PieceContent> pieces) {
+    }
+
+    private record Region(Path file, long position, long length) {
+        boolean isFollowedBy(PieceLocation location) {
+            return file.equals(location.file()) && position + length == location.position();
+        }
+    }
+
+    /**
+     * Keeps files open until the response is written, pieces of the disk repository are spread over few segments.
+     */
+    private static final class RegionWriter implements AutoCloseable {
+        private final HttpServletResponse response;
+        private final Map<Path, FileChannel> files = new HashMap<>();
+        private WritableByteChannel output;
+
+        private RegionWriter(HttpServletResponse response) {
+            this.response = response;
+        }
+
+        void write(Region region) throws IOException {
+            if (region == null) {
+                return;
+            }
+            var file = files.get(region.file());
+            if (file == null) {
+                file = FileChannel.open(region.file(), READ);
+                files.put(region.file(), file);
+            }
+            var position = region.position();
+            var end = position + region.length();
+            while (position < end) {
+                var transferred = file.transferTo(position, end - position, output());
+                if (transferred <= 0)
+                    throw new EOFException("File <%s> ended before position <%d>".formatted(region.file(), end));
+                position += transferred;
+            }
+        }
+
+        void write(PieceContent piece) throws IOException {
+            write(piece.content().orElseThrow().getContentBuffer());
+        }
+
+        void write(byte[] bytes) throws IOException {
+            write(ByteBuffer.wrap(bytes));
+        }
+
+        boolean written() {
+            return output != null;
+        }
+
+        private void write(ByteBuffer content) throws IOException {
+            while (content.hasRemaining()) {
+                output().write(content);
+            }
+        }
+
+        private WritableByteChannel output() throws IOException {
+            if (output == null) {
+                output = Channels.newChannel(response.getOutputStream());
+            }
+            return output;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (var file : files.values()) {
+                file.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Routes of the reactive application layer, active with the <code>reactive</code> profile.
+ */
+@Configuration
+@Profile("reactive")
+class ReactiveEndpointConfig {
+
+    @Bean
+    RouterFunction<ServerResponse> fileServerRoutes(ReactiveHashesEndpoint endpoint) {
+        return RouterFunctions.route()
+                .GET("/hashes", endpoint::hashes)
+                .GET("/piece/{hashId}/{pieceIndex}", endpoint::piece)
+                .GET("/piece/{hashId}/{pieceIndex}/raw", endpoint::rawPiece)
+                .GET("/pieces/{hashId}", endpoint::pieceRange)
+                .build();
+    }
+
+    /**
+     * Tomcat is on the classpath for the servlet layer and would be picked for the reactive server otherwise.
+     */
+    @Bean
+    NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
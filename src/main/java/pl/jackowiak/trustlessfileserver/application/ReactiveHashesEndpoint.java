@@ -0,0 +1,197 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import io.vavr.control.Either;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceContent;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+import pl.jackowiak.trustlessfileserver.domain.ports.in.ServerFiles;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.CACHE_CONTROL;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM;
+import static org.springframework.web.reactive.function.server.ServerResponse.badRequest;
+import static org.springframework.web.reactive.function.server.ServerResponse.ok;
+
+/**
+ * Non-blocking counterpart of {@link HashesEndpoint} serving the same contract on Netty. Repositories may block on
+ * disk reads, so the ports are called on the bounded elastic scheduler and never on the event loop. Binary pieces are
+ * written as the proof header followed by the piece content buffer taken straight from the repository.
+ */
+@Component
+@Profile("reactive")
+class ReactiveHashesEndpoint {
+
+    private final ServerFiles serverFiles;
+
+    ReactiveHashesEndpoint(ServerFiles serverFiles) {
+        this.serverFiles = serverFiles;
+    }
+
+    Mono<ServerResponse> hashes(ServerRequest request) {
+        // the version is read before the files, so it never claims a newer catalog than the one sent
+        var etag = CacheValidators.catalogETag(serverFiles.catalogVersion());
+        if (notModified(request, etag)) {
+            return notModifiedResponse(etag, CacheValidators.REVALIDATE).build();
+        }
+        return call(() -> serverFiles.availableFiles().entrySet().stream()
+                .map(ResponseMapper::mapToHashes)
+                .toList())
+                .flatMap(response -> ok().eTag(etag).header(CACHE_CONTROL, CacheValidators.REVALIDATE).contentType(APPLICATION_JSON).bodyValue(response));
+    }
+
+    Mono<ServerResponse> piece(ServerRequest request) {
+        return handle(() -> {
+            var binary = ResponseMapper.prefersBinary(request.headers().accept());
+            var pieceIndex = Integer.parseInt(request.pathVariable("pieceIndex"));
+            var merkleHash = parseHash(request.pathVariable("hashId"));
+            var etag = CacheValidators.pieceETag(request.pathVariable("hashId"), pieceIndex, binary ? "bin" : "json");
+            if (CacheValidators.served(serverFiles, merkleHash, pieceIndex, pieceIndex) && notModified(request, etag)) {
+                return notModifiedResponse(etag, CacheValidators.IMMUTABLE).varyBy(ACCEPT).build();
+            }
+            return call(() -> serverFiles.getProofForPiece(merkleHash, pieceIndex))
+                    .flatMap(proof -> fold(proof, pieceProof -> binary ? binaryResponse(pieceProof, merkleHash, etag)
+                            : immutable(etag).varyBy(ACCEPT).contentType(APPLICATION_JSON).bodyValue(ResponseMapper.mapToPieceData(pieceProof))));
+        });
+    }
+
+    Mono<ServerResponse> pieceRange(ServerRequest request) {
+        return handle(() -> {
+            var from = Integer.parseInt(request.queryParam("from").orElseThrow(() -> new IllegalArgumentException("Parameter <from> is required")));
+            var to = Integer.parseInt(request.queryParam("to").orElseThrow(() -> new IllegalArgumentException("Parameter <to> is required")));
+            var merkleHash = parseHash(request.pathVariable("hashId"));
+            var etag = CacheValidators.pieceRangeETag(request.pathVariable("hashId"), from, to);
+            if (CacheValidators.served(serverFiles, merkleHash, from, to) && notModified(request, etag)) {
+                return notModifiedResponse(etag, CacheValidators.IMMUTABLE).build();
+            }
+            return call(() -> serverFiles.getProofForPieceRange(merkleHash, from, to))
+                    .flatMap(proof -> fold(proof, rangeProof -> immutable(etag).contentType(APPLICATION_JSON).bodyValue(ResponseMapper.mapToPieceRangeData(rangeProof))));
+        });
+    }
+
+    /**
+     * Pieces located in a file are sent with zero copy file transfer of Netty.
+     */
+    Mono<ServerResponse> rawPiece(ServerRequest request) {
+        return handle(() -> {
+            var pieceIndex = Integer.parseInt(request.pathVariable("pieceIndex"));
+            var merkleHash = parseHash(request.pathVariable("hashId"));
+            var etag = CacheValidators.pieceETag(request.pathVariable("hashId"), pieceIndex, "raw");
+            if (CacheValidators.served(serverFiles, merkleHash, pieceIndex, pieceIndex) && notModified(request, etag)) {
+                return notModifiedResponse(etag, CacheValidators.IMMUTABLE).build();
+            }
+            return call(() -> serverFiles.getRawPiece(merkleHash, pieceIndex))
+                    .flatMap(result -> fold(result, rawPiece -> immutable(etag).contentType(APPLICATION_OCTET_STREAM)
+                            .header(ResponseMapper.PROOF_HEADER, ResponseMapper.mapToProofHeader(rawPiece))
+                            .contentLength(rawPiece.content().length())
+                            .body(rawBody(rawPiece.content()))));
+        });
+    }
+
+    private static BodyInserter<PieceContent, ReactiveHttpOutputMessage> rawBody(PieceContent pieceContent) {
+        return (outputMessage, context) -> {
+            var location = pieceContent.location();
+            if (location.isPresent() && outputMessage instanceof ZeroCopyHttpOutputMessage zeroCopyMessage) {
+                return zeroCopyMessage.writeWith(location.get().file(), location.get().position(), location.get().length());
+            }
+            var bufferFactory = outputMessage.bufferFactory();
+            var content = pieceContent.content()
+                    .map(MerkleEncoded::getContentBuffer)
+                    .map(Mono::just)
+                    // the file is read with blocking calls, so the read is kept off the event loop
+                    .orElseGet(() -> call(() -> readLocation(location.orElseThrow())));
+            return outputMessage.writeWith(content.map(bufferFactory::wrap));
+        };
+    }
+
+    private static ByteBuffer readLocation(PieceLocation location) {
+        try (var file = FileChannel.open(location.file(), READ)) {
+            var buffer = ByteBuffer.allocate(location.length());
+            while (buffer.hasRemaining()) {
+                if (file.read(buffer, location.position() + buffer.position()) < 0)
+                    throw new EOFException("File <%s> ended before piece content".formatted(location.file()));
+            }
+            return buffer.flip();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private Mono<ServerResponse> binaryResponse(PieceProof pieceProof, MerkleHash merkleHash, String etag) {
+        var header = PieceBinaryFormat.writeHeader(pieceProof, merkleHash);
+        var content = pieceProof.content().getContentBuffer();
+        BodyInserter<PieceProof, ReactiveHttpOutputMessage> body = (outputMessage, context) -> {
+            var bufferFactory = outputMessage.bufferFactory();
+            return outputMessage.writeWith(Flux.just(bufferFactory.wrap(header), bufferFactory.wrap(content)));
+        };
+        return immutable(etag).varyBy(ACCEPT).contentType(APPLICATION_OCTET_STREAM)
+                .contentLength(header.remaining() + content.remaining())
+                .body(body);
+    }
+
+    private static boolean notModified(ServerRequest request, String etag) {
+        return CacheValidators.notModified(request.headers().header(IF_NONE_MATCH), etag);
+    }
+
+    private static ServerResponse.BodyBuilder immutable(String etag) {
+        return ok().eTag(etag)
+                .header(CACHE_CONTROL, CacheValidators.IMMUTABLE);
+    }
+
+    private static ServerResponse.BodyBuilder notModifiedResponse(String etag, String cacheControl) {
+        return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .header(CACHE_CONTROL, cacheControl);
+    }
+
+    /**
+     * Request parsing may fail before any port is called, failures of both are answered the same way.
+     */
+    private static Mono<ServerResponse> handle(Supplier<Mono<ServerResponse>> handler) {
+        return Mono.defer(handler)
+                .onErrorResume(IllegalArgumentException.class, exception -> badRequest().bodyValue(exception.getMessage()));
+    }
+
+    private static <T> Mono<ServerResponse> fold(Either<DomainFailure, T> result, Function<T, Mono<ServerResponse>> onSuccess) {
+        return result.fold(domainFailure -> badRequest().bodyValue(domainFailure.reason()), onSuccess);
+    }
+
+    private static <T> Mono<T> call(Callable<T> port) {
+        return Mono.fromCallable(port).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static MerkleHash parseHash(String hashId) {
+        try {
+            return MerkleHash.rawHash(Hex.decodeHex(hashId));
+        } catch (DecoderException exception) {
+            throw new IllegalArgumentException("Invalid hash <%s>".formatted(hashId), exception);
+        }
+    }
+}
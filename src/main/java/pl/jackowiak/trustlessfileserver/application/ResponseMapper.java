@@ -0,0 +1,95 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.springframework.http.MediaType;
+import pl.jackowiak.trustlessfileserver.application.model.DedupData;
+import pl.jackowiak.trustlessfileserver.application.model.FileDedupData;
+import pl.jackowiak.trustlessfileserver.application.model.Hashes;
+import pl.jackowiak.trustlessfileserver.application.model.PieceData;
+import pl.jackowiak.trustlessfileserver.application.model.PieceRangeData;
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeElement;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof;
+import pl.jackowiak.trustlessfileserver.domain.model.RawPiece;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM;
+
+/**
+ * Maps domain objects to the DTOs, shared by the servlet and the reactive endpoints so both serve the same contract.
+ */
+final class ResponseMapper {
+
+    static final String PROOF_HEADER = "X-Merkle-Proof";
+    static final String PIECES_HEADER = "X-Merkle-Pieces";
+    static final String PIECE_SIZE_HEADER = "X-Merkle-Piece-Size";
+
+    private ResponseMapper() {
+        throw new AssertionError(format("The class \"%s\" is not instantiable", this.getClass()));
+    }
+
+    static Hashes mapToHashes(Map.Entry<MerkleHash, FileMetadata> entry) {
+        var key = entry.getKey();
+        var metadata = entry.getValue();
+        return new Hashes(key.getHexString(), metadata.pieces(), metadata.pieceSize());
+    }
+
+    static PieceData mapToPieceData(PieceProof proofForPiece) {
+        var content = proofForPiece.content();
+        return new PieceData(content.getHexString(), mapToStringProofs(proofForPiece.proofs()));
+    }
+
+    static PieceRangeData mapToPieceRangeData(PieceRangeProof proofForRange) {
+        var contents = proofForRange.contents().stream()
+                .map(MerkleEncoded::getHexString)
+                .toList();
+        return new PieceRangeData(proofForRange.fromIndex(), proofForRange.toIndex(), contents, mapToStringProofs(proofForRange.proofs()));
+    }
+
+    /**
+     * Files are listed from the one stored in the fewest bytes per served byte.
+     */
+    static DedupData mapToDedupData(DedupStatistics dedupStatistics) {
+        var total = dedupStatistics.total();
+        var files = dedupStatistics.files().entrySet().stream()
+                .map(entry -> new FileDedupData(entry.getKey().getHexString(), entry.getValue().logicalBytes(), entry.getValue().uniqueBytes(),
+                        entry.getValue().storedBytes(), entry.getValue().ratio(), entry.getValue().compressionRatio()))
+                .sorted(Comparator.comparingDouble(FileDedupData::ratio).reversed().thenComparing(FileDedupData::hash))
+                .toList();
+        return new DedupData(total.logicalBytes(), total.uniqueBytes(), total.storedBytes(), total.ratio(), total.compressionRatio(), files);
+    }
+
+    static String mapToProofHeader(RawPiece rawPiece) {
+        return mapToProofHeader(rawPiece.proofs());
+    }
+
+    static String mapToProofHeader(List<MerkleTreeElement> proofs) {
+        return String.join(",", mapToStringProofs(proofs));
+    }
+
+    static boolean prefersBinary(List<MediaType> acceptedMediaTypes) {
+        var sortedMediaTypes = new ArrayList<>(acceptedMediaTypes);
+        MediaType.sortBySpecificityAndQuality(sortedMediaTypes);
+        return sortedMediaTypes.stream()
+                .filter(mediaType -> mediaType.isCompatibleWith(APPLICATION_JSON) || mediaType.isCompatibleWith(APPLICATION_OCTET_STREAM))
+                .findFirst()
+                .map(mediaType -> mediaType.equalsTypeAndSubtype(APPLICATION_OCTET_STREAM))
+                .orElse(false);
+    }
+
+    private static List<String> mapToStringProofs(List<MerkleTreeElement> proofs) {
+        return proofs.stream()
+                .map(MerkleTreeElement::hash)
+                .map(MerkleHash::getHexString)
+                .toList();
+    }
+}
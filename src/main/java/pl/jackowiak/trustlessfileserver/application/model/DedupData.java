@@ -0,0 +1,10 @@
+package pl.jackowiak.trustlessfileserver.application.model;
+
+import java.util.List;
+
+/**
+ * The DTO object used for deduplication and compression report handling.
+ */
+public record DedupData(long logicalBytes, long uniqueBytes, long storedBytes, double ratio, double compressionRatio,
+                        List<FileDedupData> files) {
+}
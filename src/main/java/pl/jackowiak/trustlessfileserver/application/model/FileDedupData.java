@@ -0,0 +1,8 @@
+package pl.jackowiak.trustlessfileserver.application.model;
+
+/**
+ * The DTO object describing deduplication and compression of a single file.
+ */
+public record FileDedupData(String hash, long logicalBytes, long uniqueBytes, long storedBytes, double ratio,
+                            double compressionRatio) {
+}
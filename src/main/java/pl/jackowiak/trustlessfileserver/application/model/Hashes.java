@@ -3,5 +3,5 @@ package pl.jackowiak.trustlessfileserver.application.model;
 /**
  * The DTO object used for hashes endpoint handling.
  */
-public record Hashes(String hash, int pieces) {
+public record Hashes(String hash, int pieces, int pieceSize) {
 }
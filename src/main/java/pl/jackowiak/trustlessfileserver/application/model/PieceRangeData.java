@@ -0,0 +1,9 @@
+package pl.jackowiak.trustlessfileserver.application.model;
+
+import java.util.List;
+
+/**
+ * The DTO object used for pieces range endpoint handling.
+ */
+public record PieceRangeData(int from, int to, List<String> contents, List<String> proofs) {
+}
@@ -1,12 +1,20 @@
 package pl.jackowiak.trustlessfileserver.domain;
 
 import io.vavr.control.Either;
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
 import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
 import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
 import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
 import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof;
+import pl.jackowiak.trustlessfileserver.domain.model.RawFile;
+import pl.jackowiak.trustlessfileserver.domain.model.RawPiece;
 import pl.jackowiak.trustlessfileserver.domain.ports.in.ServerFiles;
 import pl.jackowiak.trustlessfileserver.domain.ports.in.StoreFile;
 import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
@@ -14,8 +22,10 @@ import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
 import javax.annotation.Nonnull;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
+import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.MERKLE_TREE_SOURCE_BACKED;
 
 /**
  * The Facade which servers as an entry point to domain.
@@ -24,10 +34,16 @@ public class Facade implements StoreFile, ServerFiles {
 
     private final FileServerRepository fileServerRepository;
     private final ProofCreator proofCreator;
+    private final ProofCache proofCache;
 
     public Facade(FileServerRepository fileServerRepository) {
+        this(fileServerRepository, ProofCache.disabled());
+    }
+
+    public Facade(FileServerRepository fileServerRepository, ProofCache proofCache) {
         this.fileServerRepository = fileServerRepository;
         this.proofCreator = new ProofCreator(fileServerRepository);
+        this.proofCache = proofCache;
     }
 
     @Override
@@ -37,20 +53,127 @@ public class Facade implements StoreFile, ServerFiles {
 
     @Override
     public MerkleTree storeAsMerkleTree(List<PieceHash> pieceHashes) {
-        if (pieceHashes.isEmpty())
-            throw new IllegalArgumentException("Piece hashes for merkle tree creation cannot be empty!");
-        var merkleTree = new MerkleTree(pieceHashes);
+        return storeAsMerkleTree(pieceHashes, MerkleTree.DEFAULT_PIECE_SIZE);
+    }
+
+    @Override
+    public MerkleTree storeAsMerkleTree(List<PieceHash> pieceHashes, int pieceSize) {
+        var merkleTree = createMerkleTree(pieceHashes, pieceSize);
         fileServerRepository.persistMerkleTree(merkleTree, pieceHashes);
         return merkleTree;
     }
 
     @Override
-    public Map<MerkleHash, Integer> availableFiles() {
-        return fileServerRepository.getAvailableMerkleTreesWithNumberOfPieces();
+    public MerkleTree storeAsMerkleTree(List<PieceHash> pieceHashes, @Nonnull FileSource source) {
+        var merkleTree = createMerkleTree(pieceHashes, requireNonNull(source).pieceSize());
+        fileServerRepository.persistMerkleTree(merkleTree, pieceHashes, source);
+        return merkleTree;
+    }
+
+    @Override
+    public MerkleTree storeAsMerkleTree(@Nonnull MerkleTreeBuilder merkleTreeBuilder) {
+        var merkleTree = requireNonNull(merkleTreeBuilder).build();
+        fileServerRepository.persistMerkleTree(merkleTree, merkleTree.pieceHashes());
+        return merkleTree;
+    }
+
+    @Override
+    public MerkleTree storeAsMerkleTree(@Nonnull MerkleTreeBuilder merkleTreeBuilder, @Nonnull FileSource source) {
+        var merkleTree = requireNonNull(merkleTreeBuilder).build();
+        if (merkleTree.pieceSize() != requireNonNull(source).pieceSize())
+            throw new IllegalArgumentException("Merkle tree of <%d> bytes pieces cannot be stored for source file with <%d> bytes pieces!"
+                    .formatted(merkleTree.pieceSize(), source.pieceSize()));
+        fileServerRepository.persistMerkleTree(merkleTree, merkleTree.pieceHashes(), source);
+        return merkleTree;
+    }
+
+    @Override
+    public MerkleTree appendToMerkleTree(@Nonnull MerkleHash merkleRootHash, List<PieceHash> appendedPiecesHashes) {
+        var appendedMerkleTree = findAppendableMerkleTree(merkleRootHash).append(appendedPiecesHashes);
+        fileServerRepository.persistMerkleTree(appendedMerkleTree, appendedPiecesHashes);
+        return appendedMerkleTree;
+    }
+
+    @Override
+    public MerkleTree findAppendableMerkleTree(@Nonnull MerkleHash merkleRootHash) {
+        var merkleTree = fileServerRepository.getMerkleTreeByHash(requireNonNull(merkleRootHash))
+                .orElseThrow(() -> new IllegalArgumentException("Merkle tree <%s> not found!".formatted(merkleRootHash.getHexString())));
+        // the appended tree would be kept apart from the source file holding the original pieces
+        if (fileServerRepository.isSourceBacked(merkleRootHash))
+            throw new IllegalArgumentException(MERKLE_TREE_SOURCE_BACKED.formatted(merkleRootHash.getHexString()));
+        var lastPieceLength = fileServerRepository.getPieceContent(merkleRootHash, merkleTree.pieceCount() - 1)
+                .map(MerkleEncoded::getContentLength)
+                .orElseThrow(() -> new IllegalArgumentException("Pieces of <%s> are not available!".formatted(merkleRootHash.getHexString())));
+        // pieces are appended after the last one, so it has to be full to keep the piece offsets in the file
+        if (lastPieceLength != merkleTree.pieceSize())
+            throw new IllegalArgumentException("Last piece of <%s> is not full, pieces cannot be appended!".formatted(merkleRootHash.getHexString()));
+        return merkleTree;
+    }
+
+    @Override
+    public boolean deleteMerkleTree(@Nonnull MerkleHash merkleRootHash) {
+        var deleted = fileServerRepository.deleteMerkleTree(requireNonNull(merkleRootHash));
+        if (deleted) {
+            proofCache.invalidate(merkleRootHash);
+        }
+        return deleted;
+    }
+
+    @Override
+    public void releasePieces(List<PieceHash> storedPiecesHashes) {
+        fileServerRepository.releasePieces(storedPiecesHashes);
+    }
+
+    @Override
+    public Map<MerkleHash, FileMetadata> availableFiles() {
+        return fileServerRepository.getAvailableFiles();
+    }
+
+    @Override
+    public Optional<FileMetadata> fileMetadata(MerkleHash merkleTreeHash) {
+        return fileServerRepository.getMerkleTreeByHash(merkleTreeHash)
+                .map(merkleTree -> new FileMetadata(merkleTree.pieceCount(), merkleTree.pieceSize()));
+    }
+
+    @Override
+    public long catalogVersion() {
+        return fileServerRepository.getCatalogVersion();
+    }
+
+    @Override
+    public DedupStatistics dedupStatistics() {
+        return fileServerRepository.getDedupStatistics();
     }
 
     @Override
     public Either<DomainFailure, PieceProof> getProofForPiece(MerkleHash merkleTreeHash, int pieceIndex) {
-        return proofCreator.createProofForPiece(merkleTreeHash, pieceIndex);
+        return proofCache.get(merkleTreeHash, pieceIndex, () -> proofCreator.createProofForPiece(merkleTreeHash, pieceIndex));
+    }
+
+    @Override
+    public Either<DomainFailure, PieceRangeProof> getProofForPieceRange(MerkleHash merkleTreeHash, int fromIndex, int toIndex) {
+        return proofCreator.createProofForPieceRange(merkleTreeHash, fromIndex, toIndex);
+    }
+
+    @Override
+    public Either<DomainFailure, RawPiece> getRawPiece(MerkleHash merkleTreeHash, int pieceIndex) {
+        return proofCreator.createRawPiece(merkleTreeHash, pieceIndex);
+    }
+
+    @Override
+    public Either<DomainFailure, RawFile> getRawFile(MerkleHash merkleTreeHash) {
+        return proofCreator.createRawFile(merkleTreeHash);
+    }
+
+    @Override
+    public Optional<MerkleTree> findStoredMerkleTree(@Nonnull FileSource source) {
+        return fileServerRepository.getMerkleHashBySource(requireNonNull(source))
+                .flatMap(fileServerRepository::getMerkleTreeByHash);
+    }
+
+    private static MerkleTree createMerkleTree(List<PieceHash> pieceHashes, int pieceSize) {
+        if (pieceHashes.isEmpty())
+            throw new IllegalArgumentException("Piece hashes for merkle tree creation cannot be empty!");
+        return new MerkleTree(pieceHashes, pieceSize);
     }
 }
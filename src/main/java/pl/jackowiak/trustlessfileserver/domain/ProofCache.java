@@ -0,0 +1,211 @@
+package pl.jackowiak.trustlessfileserver.domain;
+
+import io.vavr.control.Either;
+import pl.jackowiak.trustlessfileserver.domain.model.CacheStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Size bounded LRU cache of created piece proofs. Proofs are immutable for given root hash and piece index, so cached
+ * entries never have to be refreshed. Hits take no lock, they only stamp the entry with the access time. Stores,
+ * invalidation and eviction are serialized, eviction frees an eighth of the budget at once, from the least recently
+ * used entries. Concurrent misses for the same key are coalesced, only one caller creates the proof while the others
+ * wait for its result, or get the exception it failed with.
+ */
+public final class ProofCache {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int PROOF_ELEMENT_OVERHEAD_BYTES = 64;
+    /**
+     * Eviction frees an eighth of the budget at once, so the following stores do not sort the entries again right away.
+     */
+    private static final int EVICTION_BATCH_DIVISOR = 8;
+
+    private final long maxBytes;
+    private final Map<ProofKey, CachedProof> entries = new ConcurrentHashMap<>();
+    private final Map<ProofKey, CompletableFuture<Either<DomainFailure, PieceProof>>> inFlight = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final AtomicLong sizeInBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile long invalidations;
+
+    public ProofCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static ProofCache disabled() {
+        return new ProofCache(0);
+    }
+
+    Either<DomainFailure, PieceProof> get(MerkleHash merkleTreeHash, int pieceIndex, Supplier<Either<DomainFailure, PieceProof>> proofSupplier) {
+        if (maxBytes <= 0) {
+            return proofSupplier.get();
+        }
+        var key = new ProofKey(merkleTreeHash, pieceIndex);
+        var cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return Either.right(cached.proof());
+        }
+        misses.increment();
+        var created = new CompletableFuture<Either<DomainFailure, PieceProof>>();
+        var pending = inFlight.putIfAbsent(key, created);
+        if (pending != null) {
+            return await(pending);
+        }
+        try {
+            var generation = invalidations;
+            var storedMeanwhile = lookup(key);
+            if (storedMeanwhile != null) {
+                created.complete(Either.right(storedMeanwhile.proof()));
+                return Either.right(storedMeanwhile.proof());
+            }
+            var proof = proofSupplier.get();
+            proof.peek(pieceProof -> store(key, pieceProof, generation));
+            created.complete(proof);
+            return proof;
+        } catch (RuntimeException | Error exception) {
+            created.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    /**
+     * Drops cached proofs of given root. Proofs being created meanwhile are returned but not cached.
+     */
+    void invalidate(MerkleHash merkleTreeHash) {
+        synchronized (writeLock) {
+            invalidations++;
+            entries.forEach((key, cachedProof) -> {
+                if (key.merkleTreeHash().equals(merkleTreeHash) && entries.remove(key, cachedProof)) {
+                    sizeInBytes.addAndGet(-cachedProof.weight());
+                }
+            });
+        }
+    }
+
+    public CacheStatistics statistics() {
+        return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), entries.size(), sizeInBytes.get(), maxBytes);
+    }
+
+    private CachedProof lookup(ProofKey key) {
+        var cached = entries.get(key);
+        if (cached != null) {
+            cached.touch();
+        }
+        return cached;
+    }
+
+    private void store(ProofKey key, PieceProof pieceProof, long generation) {
+        var weight = weigh(pieceProof);
+        if (weight > maxBytes) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (generation != invalidations) {
+                return;
+            }
+            var previous = entries.put(key, new CachedProof(pieceProof, weight));
+            sizeInBytes.addAndGet(weight - (previous == null ? 0 : previous.weight()));
+            if (sizeInBytes.get() > maxBytes) {
+                evict(key);
+            }
+        }
+    }
+
+    /**
+     * Frees an eighth of the budget from the least recently used entries, the one just stored is kept.
+     */
+    private void evict(ProofKey stored) {
+        var target = maxBytes - maxBytes / EVICTION_BATCH_DIVISOR;
+        var candidates = new ArrayList<EvictionCandidate>(entries.size());
+        entries.forEach((key, cachedProof) -> {
+            if (!key.equals(stored)) {
+                candidates.add(new EvictionCandidate(key, cachedProof, cachedProof.lastAccess()));
+            }
+        });
+        candidates.sort(Comparator.comparingLong(EvictionCandidate::lastAccess));
+        for (var candidate : candidates) {
+            if (sizeInBytes.get() <= target) {
+                return;
+            }
+            if (entries.remove(candidate.key(), candidate.cachedProof())) {
+                sizeInBytes.addAndGet(-candidate.cachedProof().weight());
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Waiters get the exception the proof creation failed with, not its wrapper.
+     */
+    private static Either<DomainFailure, PieceProof> await(CompletableFuture<Either<DomainFailure, PieceProof>> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause)
+                throw cause;
+            if (exception.getCause() instanceof Error cause)
+                throw cause;
+            throw exception;
+        }
+    }
+
+    private static long weigh(PieceProof pieceProof) {
+        var proofsWeight = pieceProof.proofs().stream()
+                .mapToLong(element -> element.hash().getHash().length + PROOF_ELEMENT_OVERHEAD_BYTES)
+                .sum();
+        return ENTRY_OVERHEAD_BYTES + pieceProof.content().getContentLength() + proofsWeight;
+    }
+
+    private record ProofKey(MerkleHash merkleTreeHash, int pieceIndex) {
+    }
+
+    /**
+     * The access time is read and written without a lock, eviction works on a snapshot of it.
+     */
+    private static final class CachedProof {
+        private final PieceProof proof;
+        private final long weight;
+        private volatile long lastAccess = System.nanoTime();
+
+        private CachedProof(PieceProof proof, long weight) {
+            this.proof = proof;
+            this.weight = weight;
+        }
+
+        PieceProof proof() {
+            return proof;
+        }
+
+        long weight() {
+            return weight;
+        }
+
+        long lastAccess() {
+            return lastAccess;
+        }
+
+        void touch() {
+            lastAccess = System.nanoTime();
+        }
+    }
+
+    private record EvictionCandidate(ProofKey key, CachedProof cachedProof, long lastAccess) {
+    }
+}
@@ -5,16 +5,26 @@ import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
 import pl.jackowiak.trustlessfileserver.domain.model.FailureMessages;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
-import pl.jackowiak.trustlessfileserver.domain.model.MerkleLeaf;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleProof;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceContent;
 import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
 import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof;
+import pl.jackowiak.trustlessfileserver.domain.model.RawFile;
+import pl.jackowiak.trustlessfileserver.domain.model.RawPiece;
 import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.PIECE_NOT_FOUND_IN_REPO;
+import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.PIECE_RANGE_NOT_FOUND_IN_REPO;
+import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.PIECE_RANGE_TOO_LARGE;
+import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.PIECE_RANGE_TOO_MANY_BYTES;
+import static pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof.MAX_RANGE_BYTES;
+import static pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof.MAX_RANGE_SIZE;
 
 class ProofCreator {
 
@@ -26,38 +36,113 @@ class ProofCreator {
 
     Either<DomainFailure, PieceProof> createProofForPiece(MerkleHash merkleTreeHash, int pieceIndex) {
         return fileServerRepository.getPieceHashByMerkleHash(merkleTreeHash)
-                .filter(pieces -> pieces.size() >= pieceIndex + 1)
+                .filter(pieces -> pieceIndex >= 0 && pieces.size() >= pieceIndex + 1)
                 .map(pieces -> pieces.get(pieceIndex))
                 .map(Either::<DomainFailure, PieceHash>right)
-                .map(pieceHash -> onPieceHashPresent(pieceHash, merkleTreeHash))
+                .map(pieceHash -> onPieceHashPresent(pieceHash, merkleTreeHash, pieceIndex))
                 .orElseGet(() -> Either.left(new DomainFailure(PIECE_NOT_FOUND_IN_REPO.formatted(merkleTreeHash.getHexString(), pieceIndex))));
     }
 
-    private Either<DomainFailure, PieceProof> onPieceHashPresent(Either<DomainFailure, PieceHash> pieceHashEither, MerkleHash merkleTreeHash) {
+    private Either<DomainFailure, PieceProof> onPieceHashPresent(Either<DomainFailure, PieceHash> pieceHashEither, MerkleHash merkleTreeHash, int pieceIndex) {
         return fileServerRepository.getMerkleTreeByHash(merkleTreeHash)
                 .map(Either::<DomainFailure, MerkleTree>right)
-                .map(merkleTree -> onMerkleTreePresent(merkleTree, pieceHashEither.get()))
+                .map(merkleTree -> onMerkleTreePresent(merkleTree, pieceHashEither.get(), pieceIndex))
                 .orElseGet(() -> Either.left(new DomainFailure(FailureMessages.MERKLE_TREE_NOT_FOUND_REPO.formatted(merkleTreeHash.getHexString()))));
     }
 
-    private Either<DomainFailure, PieceProof> onMerkleTreePresent(Either<DomainFailure, MerkleTree> merkleTreeEither, PieceHash pieceHash) {
-        return merkleTreeEither.filter(merkleTree -> MerkleProof.checkIfLeafInTree(new MerkleLeaf(pieceHash.merkleHash()), merkleTree.root()))
-                .map(merkleTree -> onPieceHashPresentInMerkleTree(merkleTree, pieceHash))
+    private Either<DomainFailure, PieceProof> onMerkleTreePresent(Either<DomainFailure, MerkleTree> merkleTreeEither, PieceHash pieceHash, int pieceIndex) {
+        return merkleTreeEither.filter(merkleTree -> isLeafUnderIndex(merkleTree, pieceHash, pieceIndex))
+                .map(merkleTree -> onPieceHashPresentInMerkleTree(merkleTree, pieceHash, pieceIndex))
                 .getOrElse(() -> Either.left(new DomainFailure(FailureMessages.PIECE_NOT_FOUND_IN_MERKLE_TREE.formatted(pieceHash.merkleHash().getHexString()))));
     }
 
-    private Either<DomainFailure, PieceProof> onPieceHashPresentInMerkleTree(Either<DomainFailure, MerkleTree> merkleTreeEither, PieceHash pieceHash) {
-        return fileServerRepository.getPieceContentByPieceHash(pieceHash)
+    private Either<DomainFailure, PieceProof> onPieceHashPresentInMerkleTree(Either<DomainFailure, MerkleTree> merkleTreeEither, PieceHash pieceHash, int pieceIndex) {
+        return fileServerRepository.getPieceContent(merkleTreeEither.get().root().hash(), pieceIndex)
                 .map(Either::<DomainFailure, MerkleEncoded>right)
-                .map(merkleEncoded -> onMerklePieceContentPresent(merkleEncoded, merkleTreeEither.get(), pieceHash))
+                .map(merkleEncoded -> onMerklePieceContentPresent(merkleEncoded, merkleTreeEither.get(), pieceIndex))
                 .orElseGet(() -> Either.left(new DomainFailure(FailureMessages.PIECE_CONTENT_NOT_FOUND_IN_REPO.formatted(pieceHash.merkleHash().getHexString()))));
     }
 
-    private Either<DomainFailure, PieceProof> onMerklePieceContentPresent(Either<DomainFailure, MerkleEncoded> merkleEncodedEither, MerkleTree merkleTree, PieceHash pieceHash) {
-        var leafToBeChecked = new MerkleLeaf(pieceHash.merkleHash());
-        var proofTree = MerkleProof.createProofTree(merkleTree.root(), leafToBeChecked);
-        var proofElements = MerkleProof.getProofElements(proofTree, leafToBeChecked);
-        Collections.reverse(proofElements);
+    private Either<DomainFailure, PieceProof> onMerklePieceContentPresent(Either<DomainFailure, MerkleEncoded> merkleEncodedEither, MerkleTree merkleTree, int pieceIndex) {
+        var proofElements = MerkleProof.getProofElements(merkleTree.levels(), pieceIndex);
         return Either.right(new PieceProof(merkleEncodedEither.get(), proofElements));
     }
-}
\ No newline at end of file
+
+    Either<DomainFailure, PieceRangeProof> createProofForPieceRange(MerkleHash merkleTreeHash, int fromIndex, int toIndex) {
+        if ((long) toIndex - fromIndex + 1 > MAX_RANGE_SIZE) {
+            return Either.left(new DomainFailure(PIECE_RANGE_TOO_LARGE.formatted(fromIndex, toIndex, MAX_RANGE_SIZE)));
+        }
+        return fileServerRepository.getPieceHashByMerkleHash(merkleTreeHash)
+                .filter(pieces -> fromIndex >= 0 && fromIndex <= toIndex && pieces.size() >= toIndex + 1)
+                .map(pieces -> pieces.subList(fromIndex, toIndex + 1))
+                .map(pieceHashes -> onPieceHashesPresent(pieceHashes, merkleTreeHash, fromIndex, toIndex))
+                .orElseGet(() -> Either.left(new DomainFailure(PIECE_RANGE_NOT_FOUND_IN_REPO.formatted(merkleTreeHash.getHexString(), fromIndex, toIndex))));
+    }
+
+    private Either<DomainFailure, PieceRangeProof> onPieceHashesPresent(List<PieceHash> pieceHashes, MerkleHash merkleTreeHash, int fromIndex, int toIndex) {
+        return fileServerRepository.getMerkleTreeByHash(merkleTreeHash)
+                .map(merkleTree -> onMerkleTreePresent(merkleTree, pieceHashes, fromIndex, toIndex))
+                .orElseGet(() -> Either.left(new DomainFailure(FailureMessages.MERKLE_TREE_NOT_FOUND_REPO.formatted(merkleTreeHash.getHexString()))));
+    }
+
+    private Either<DomainFailure, PieceRangeProof> onMerkleTreePresent(MerkleTree merkleTree, List<PieceHash> pieceHashes, int fromIndex, int toIndex) {
+        if ((long) pieceHashes.size() * merkleTree.pieceSize() > MAX_RANGE_BYTES) {
+            return Either.left(new DomainFailure(PIECE_RANGE_TOO_MANY_BYTES.formatted(fromIndex, toIndex, merkleTree.pieceSize(), MAX_RANGE_BYTES)));
+        }
+        var contents = new ArrayList<MerkleEncoded>(pieceHashes.size());
+        for (var i = 0; i < pieceHashes.size(); i++) {
+            var pieceHash = pieceHashes.get(i);
+            if (!isLeafUnderIndex(merkleTree, pieceHash, fromIndex + i)) {
+                return Either.left(new DomainFailure(FailureMessages.PIECE_NOT_FOUND_IN_MERKLE_TREE.formatted(pieceHash.merkleHash().getHexString())));
+            }
+            var content = fileServerRepository.getPieceContent(merkleTree.root().hash(), fromIndex + i);
+            if (content.isEmpty()) {
+                return Either.left(new DomainFailure(FailureMessages.PIECE_CONTENT_NOT_FOUND_IN_REPO.formatted(pieceHash.merkleHash().getHexString())));
+            }
+            contents.add(content.get());
+        }
+        var proofElements = MerkleProof.getMultiProofElements(merkleTree.levels(), fromIndex, toIndex);
+        return Either.right(new PieceRangeProof(fromIndex, toIndex, contents, proofElements));
+    }
+
+    Either<DomainFailure, RawPiece> createRawPiece(MerkleHash merkleTreeHash, int pieceIndex) {
+        return fileServerRepository.getMerkleTreeByHash(merkleTreeHash)
+                .filter(merkleTree -> pieceIndex >= 0 && pieceIndex < merkleTree.pieceCount())
+                .map(merkleTree -> findPieceContent(merkleTreeHash, pieceIndex)
+                        .map(content -> Either.<DomainFailure, RawPiece>right(new RawPiece(content, MerkleProof.getProofElements(merkleTree.levels(), pieceIndex))))
+                        .orElseGet(() -> Either.left(pieceContentNotFound(merkleTree, pieceIndex))))
+                .orElseGet(() -> Either.left(new DomainFailure(PIECE_NOT_FOUND_IN_REPO.formatted(merkleTreeHash.getHexString(), pieceIndex))));
+    }
+
+    Either<DomainFailure, RawFile> createRawFile(MerkleHash merkleTreeHash) {
+        var merkleTree = fileServerRepository.getMerkleTreeByHash(merkleTreeHash);
+        if (merkleTree.isEmpty()) {
+            return Either.left(new DomainFailure(FailureMessages.MERKLE_TREE_NOT_FOUND_REPO.formatted(merkleTreeHash.getHexString())));
+        }
+        var lastPiece = merkleTree.get().pieceCount() - 1;
+        if (findPieceContent(merkleTreeHash, lastPiece).isEmpty()) {
+            return Either.left(pieceContentNotFound(merkleTree.get(), lastPiece));
+        }
+        // pieces are looked up while the file is sent, content removed meanwhile can only end the response
+        return Either.right(new RawFile(merkleTree.get(), pieceIndex -> findPieceContent(merkleTreeHash, pieceIndex)
+                .orElseThrow(() -> new IllegalStateException(pieceContentNotFound(merkleTree.get(), pieceIndex).reason()))));
+    }
+
+    /**
+     * Prefers the file region of the piece, so it can be sent without being read into memory.
+     */
+    private Optional<PieceContent> findPieceContent(MerkleHash merkleTreeHash, int pieceIndex) {
+        return fileServerRepository.getPieceLocation(merkleTreeHash, pieceIndex)
+                .map(PieceContent::inFile)
+                .or(() -> fileServerRepository.getPieceContent(merkleTreeHash, pieceIndex).map(PieceContent::inMemory));
+    }
+
+    private static DomainFailure pieceContentNotFound(MerkleTree merkleTree, int pieceIndex) {
+        return new DomainFailure(FailureMessages.PIECE_CONTENT_NOT_FOUND_IN_REPO.formatted(merkleTree.levels().hashAt(0, pieceIndex).getHexString()));
+    }
+
+    private boolean isLeafUnderIndex(MerkleTree merkleTree, PieceHash pieceHash, int pieceIndex) {
+        var levels = merkleTree.levels();
+        return pieceIndex < levels.width(0) && levels.hashEquals(0, pieceIndex, pieceHash.merkleHash().getHash());
+    }
+}
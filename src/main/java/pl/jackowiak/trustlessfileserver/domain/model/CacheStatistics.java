@@ -0,0 +1,7 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+/**
+ * Cache counters snapshot.
+ */
+public record CacheStatistics(long hits, long misses, long evictions, int entries, long sizeInBytes, long maxBytes) {
+}
@@ -0,0 +1,16 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplication snapshot of the whole repository and of each stored file, computed when asked for.
+ */
+public record DedupStatistics(Deduplication total, Map<MerkleHash, Deduplication> files) {
+
+    public DedupStatistics plus(DedupStatistics other) {
+        var merged = new HashMap<>(files);
+        other.files.forEach((hash, deduplication) -> merged.merge(hash, deduplication, Deduplication::plus));
+        return new DedupStatistics(total.plus(other.total), merged);
+    }
+}
@@ -0,0 +1,27 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+/**
+ * Piece bytes as served, once per distinct piece and as stored. A piece listed several times is stored once, stored
+ * bytes of a piece shared by several files are split among them in proportion to how often each lists it. Unique and
+ * stored bytes differ by compression of the stored pieces.
+ */
+public record Deduplication(long logicalBytes, long uniqueBytes, long storedBytes) {
+
+    /**
+     * Served bytes per stored byte, <code>1</code> when nothing is stored.
+     */
+    public double ratio() {
+        return storedBytes == 0 ? 1 : (double) logicalBytes / storedBytes;
+    }
+
+    /**
+     * Distinct piece bytes per stored byte, <code>1</code> when nothing is stored.
+     */
+    public double compressionRatio() {
+        return storedBytes == 0 ? 1 : (double) uniqueBytes / storedBytes;
+    }
+
+    public Deduplication plus(Deduplication other) {
+        return new Deduplication(logicalBytes + other.logicalBytes, uniqueBytes + other.uniqueBytes, storedBytes + other.storedBytes);
+    }
+}
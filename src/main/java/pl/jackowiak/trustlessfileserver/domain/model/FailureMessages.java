@@ -10,6 +10,10 @@ public final class FailureMessages {
     public static final String MERKLE_TREE_NOT_FOUND_REPO = "Merkle Tree with hash <%s> not found in database.";
     public static final String PIECE_NOT_FOUND_IN_MERKLE_TREE = "Piece with hash <%s> not present in selected merkle tree!";
     public static final String PIECE_CONTENT_NOT_FOUND_IN_REPO = "Piece content not found in database for piece with hash <%s>.";
+    public static final String PIECE_RANGE_NOT_FOUND_IN_REPO = "Pieces for given merkle hash <%s> and range <%d-%d> not found in database";
+    public static final String PIECE_RANGE_TOO_LARGE = "Requested range <%d-%d> exceeds maximum range size of <%d> pieces.";
+    public static final String MERKLE_TREE_SOURCE_BACKED = "Merkle Tree with hash <%s> is served from its source file, pieces cannot be appended!";
+    public static final String PIECE_RANGE_TOO_MANY_BYTES = "Requested range <%d-%d> of <%d> bytes pieces exceeds maximum range size of <%d> bytes.";
 
     private FailureMessages() {
         throw new AssertionError(format("The class \"%s\" is not instantiable", this.getClass()));
@@ -0,0 +1,7 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+/**
+ * Information about stored file served to clients.
+ */
+public record FileMetadata(int pieces, int pieceSize) {
+}
@@ -0,0 +1,9 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import java.nio.file.Path;
+
+/**
+ * The file pieces are read from. Lets repositories serve piece content straight from the original file.
+ */
+public record FileSource(Path path, int pieceSize) {
+}
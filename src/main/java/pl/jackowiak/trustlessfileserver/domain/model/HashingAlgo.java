@@ -1,34 +1,27 @@
 package pl.jackowiak.trustlessfileserver.domain.model;
 
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Optional;
 
 import static com.google.common.collect.MoreCollectors.toOptional;
 import static java.util.Arrays.stream;
 import static org.apache.commons.codec.binary.Hex.encodeHexString;
-import static org.apache.commons.codec.digest.DigestUtils.sha1;
-import static org.apache.commons.codec.digest.DigestUtils.sha256;
 
 /**
- * Possible hashing algorithms.
+ * Possible hashing algorithms. Each thread reuses its own digest instance, the <code>into</code> variants write
+ * the hash into given buffer, so hashing does not allocate.
  */
 public enum HashingAlgo {
-    SHA_256("SHA-256") {
-        @Override
-        byte[] hash(byte[] data) {
-            return sha256(data);
-        }
-
+    SHA_256("SHA-256", 32) {
         @Override
         String toHex(byte[] data) {
             return encodeHexString(data);
         }
     },
-    SHA_1("SHA-1") {
-        @Override
-        byte[] hash(byte[] data) {
-            return sha1(data);
-        }
-
+    SHA_1("SHA-1", 20) {
         @Override
         String toHex(byte[] data) {
             return encodeHexString(data);
@@ -36,9 +29,13 @@ public enum HashingAlgo {
     };
 
     private final String algoName;
+    private final int digestLength;
+    private final ThreadLocal<MessageDigest> digests;
 
-    HashingAlgo(String algoName) {
+    HashingAlgo(String algoName, int digestLength) {
         this.algoName = algoName;
+        this.digestLength = digestLength;
+        this.digests = ThreadLocal.withInitial(() -> createDigest(algoName));
     }
 
     public static Optional<HashingAlgo> parseHashingAlgo(String algoName) {
@@ -47,7 +44,60 @@ public enum HashingAlgo {
                 .collect(toOptional());
     }
 
-    abstract byte[] hash(byte[] data);
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    byte[] hash(byte[] data) {
+        var hash = new byte[digestLength];
+        hashInto(data, 0, data.length, hash, 0);
+        return hash;
+    }
+
+    /**
+     * Hashes <code>length</code> bytes of data starting at <code>offset</code> into destination at given offset.
+     */
+    void hashInto(byte[] data, int offset, int length, byte[] destination, int destinationOffset) {
+        var digest = digests.get();
+        digest.update(data, offset, length);
+        finish(digest, destination, destinationOffset);
+    }
+
+    /**
+     * Hashes remaining bytes of the buffer into destination at given offset. The buffer position is not changed.
+     */
+    void hashInto(ByteBuffer data, byte[] destination, int destinationOffset) {
+        var digest = digests.get();
+        digest.update(data.duplicate());
+        finish(digest, destination, destinationOffset);
+    }
+
+    /**
+     * Hashes concatenation of two hashes, each <code>digestLength</code> long, into destination at given offset.
+     */
+    void hashPairInto(byte[] left, int leftOffset, byte[] right, int rightOffset, byte[] destination, int destinationOffset) {
+        var digest = digests.get();
+        digest.update(left, leftOffset, digestLength);
+        digest.update(right, rightOffset, digestLength);
+        finish(digest, destination, destinationOffset);
+    }
+
+    private void finish(MessageDigest digest, byte[] destination, int destinationOffset) {
+        try {
+            digest.digest(destination, destinationOffset, digestLength);
+        } catch (DigestException exception) {
+            digest.reset();
+            throw new IllegalArgumentException("No room for <%d> bytes hash at offset <%d>".formatted(digestLength, destinationOffset), exception);
+        }
+    }
+
+    private static MessageDigest createDigest(String algoName) {
+        try {
+            return MessageDigest.getInstance(algoName);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
 
     abstract String toHex(byte[] data);
 }
@@ -1,21 +1,23 @@
 package pl.jackowiak.trustlessfileserver.domain.model;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 import java.util.StringJoiner;
 
 /**
- * Represents piece stored in persistence layer.
+ * Represents piece stored in persistence layer. Only the raw content is kept, it is encoded on demand when served.
  */
 public final class MerkleEncoded {
     private final EncodingAlgo encodingAlgo;
-    private final byte[] encodedContent;
-    private final String hexString;
+    private final ByteBuffer content;
 
     public MerkleEncoded(EncodingAlgo encodingAlgo, byte[] content) {
+        this(encodingAlgo, ByteBuffer.wrap(content));
+    }
+
+    public MerkleEncoded(EncodingAlgo encodingAlgo, ByteBuffer content) {
         this.encodingAlgo = encodingAlgo;
-        this.encodedContent = encodingAlgo.encode(content);
-        this.hexString = encodingAlgo.toHex(encodedContent);
+        this.content = content.slice().asReadOnlyBuffer();
     }
 
     public EncodingAlgo getEncodingAlgo() {
@@ -23,11 +25,28 @@ public final class MerkleEncoded {
     }
 
     public byte[] getEncodedContent() {
-        return encodedContent;
+        return encodingAlgo.encode(getContent());
+    }
+
+    public byte[] getContent() {
+        var bytes = new byte[content.capacity()];
+        content.get(0, bytes);
+        return bytes;
+    }
+
+    /**
+     * Read only view of the raw content, no bytes are copied.
+     */
+    public ByteBuffer getContentBuffer() {
+        return content.duplicate();
+    }
+
+    public int getContentLength() {
+        return content.capacity();
     }
 
     public String getHexString() {
-        return hexString;
+        return encodingAlgo.toHex(getEncodedContent());
     }
 
     @Override
@@ -35,22 +54,19 @@ public final class MerkleEncoded {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MerkleEncoded that = (MerkleEncoded) o;
-        return encodingAlgo == that.encodingAlgo && Arrays.equals(encodedContent, that.encodedContent) && Objects.equals(hexString, that.hexString);
+        return encodingAlgo == that.encodingAlgo && Objects.equals(content, that.content);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(encodingAlgo, hexString);
-        result = 31 * result + Arrays.hashCode(encodedContent);
-        return result;
+        return Objects.hash(encodingAlgo, content);
     }
 
     @Override
     public String toString() {
         return new StringJoiner(", ", MerkleEncoded.class.getSimpleName() + "[", "]")
                 .add("encodingAlgo=" + encodingAlgo)
-                .add("encodedContent=" + Arrays.toString(encodedContent))
-                .add("hexString='" + hexString + "'")
+                .add("contentLength=" + getContentLength())
                 .toString();
     }
 }
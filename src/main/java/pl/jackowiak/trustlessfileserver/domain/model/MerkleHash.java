@@ -7,27 +7,29 @@ import java.util.StringJoiner;
 import static pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo.SHA_256;
 
 /**
- * The type holding information about hash.
+ * The type holding information about hash. The hex representation is created on first use only.
  */
 public final class MerkleHash {
     private final HashingAlgo hashingAlgo;
     private final byte[] hash;
-    private final String hexString;
+    private String hexString;
 
     public MerkleHash(byte[] content, HashingAlgo hashingAlgo) {
         this.hashingAlgo = hashingAlgo;
         this.hash = hashingAlgo.hash(content);
-        this.hexString = hashingAlgo.toHex(hash);
     }
 
-    private MerkleHash(byte[] content) {
-        this.hashingAlgo = SHA_256;
-        this.hash = content;
-        this.hexString = hashingAlgo.toHex(hash);
+    private MerkleHash(HashingAlgo hashingAlgo, byte[] hash) {
+        this.hashingAlgo = hashingAlgo;
+        this.hash = hash;
     }
 
     public static MerkleHash rawHash(byte[] content) {
-        return new MerkleHash(content);
+        return new MerkleHash(SHA_256, content);
+    }
+
+    public static MerkleHash rawHash(byte[] content, HashingAlgo hashingAlgo) {
+        return new MerkleHash(hashingAlgo, content);
     }
 
     public HashingAlgo getHashingAlgo() {
@@ -39,7 +41,12 @@ public final class MerkleHash {
     }
 
     public String getHexString() {
-        return hexString;
+        var hex = hexString;
+        if (hex == null) {
+            hex = hashingAlgo.toHex(hash);
+            hexString = hex;
+        }
+        return hex;
     }
 
     @Override
@@ -47,12 +54,12 @@ public final class MerkleHash {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MerkleHash that = (MerkleHash) o;
-        return hashingAlgo == that.hashingAlgo && Arrays.equals(hash, that.hash) && Objects.equals(hexString, that.hexString);
+        return hashingAlgo == that.hashingAlgo && Arrays.equals(hash, that.hash);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(hashingAlgo, hexString);
+        int result = Objects.hash(hashingAlgo);
         result = 31 * result + Arrays.hashCode(hash);
         return result;
     }
@@ -62,7 +69,7 @@ public final class MerkleHash {
         return new StringJoiner(", ", MerkleHash.class.getSimpleName() + "[", "]")
                 .add("hashingAlgo=" + hashingAlgo)
                 .add("hash=" + Arrays.toString(hash))
-                .add("hexString='" + hexString + "'")
+                .add("hexString='" + getHexString() + "'")
                 .toString();
     }
 }
@@ -0,0 +1,101 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Flat representation of the Merkle tree. Each level is kept as one contiguous buffer of fixed width hashes addressed
+ * by index. Level <code>0</code> holds the (balanced) leafs, the last level holds the root only.
+ */
+public final class MerkleLevels {
+
+    private final HashingAlgo hashingAlgo;
+    private final int hashWidth;
+    private final ByteBuffer[] levels;
+
+    public MerkleLevels(HashingAlgo hashingAlgo, int hashWidth, ByteBuffer[] levels) {
+        if (levels.length == 0) {
+            throw new IllegalArgumentException("Merkle levels cannot be empty!");
+        }
+        this.hashingAlgo = hashingAlgo;
+        this.hashWidth = hashWidth;
+        this.levels = levels.clone();
+    }
+
+    public HashingAlgo getHashingAlgo() {
+        return hashingAlgo;
+    }
+
+    public int getHashWidth() {
+        return hashWidth;
+    }
+
+    /**
+     * Number of levels above the leafs, which is also the length of each piece proof.
+     */
+    public int height() {
+        return levels.length - 1;
+    }
+
+    public int width(int level) {
+        return levels[level].capacity() / hashWidth;
+    }
+
+    public MerkleHash hashAt(int level, int index) {
+        var hash = new byte[hashWidth];
+        copyHash(level, index, hash, 0);
+        return MerkleHash.rawHash(hash, hashingAlgo);
+    }
+
+    public void copyHash(int level, int index, byte[] destination, int offset) {
+        levels[level].get(index * hashWidth, destination, offset, hashWidth);
+    }
+
+    /**
+     * Compares the stored hash in place, without copying it out of the level.
+     */
+    public boolean hashEquals(int level, int index, byte[] hash) {
+        if (hash.length != hashWidth) {
+            return false;
+        }
+        var buffer = levels[level];
+        var offset = Objects.checkFromIndexSize(index * hashWidth, hashWidth, buffer.capacity());
+        if (buffer.hasArray()) {
+            var from = buffer.arrayOffset() + offset;
+            return Arrays.equals(buffer.array(), from, from + hashWidth, hash, 0, hashWidth);
+        }
+        for (var i = 0; i < hashWidth; i++) {
+            if (buffer.get(offset + i) != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read only view of given level, used when levels are serialized.
+     */
+    public ByteBuffer level(int level) {
+        return levels[level].asReadOnlyBuffer();
+    }
+
+    public long sizeInBytes() {
+        var size = 0L;
+        for (var level : levels) {
+            size += level.capacity();
+        }
+        return size;
+    }
+
+    /**
+     * Creates tree element view for given position. Nodes resolve their children lazily from this structure.
+     */
+    public MerkleTreeElement elementAt(int level, int index) {
+        var hash = hashAt(level, index);
+        if (level == 0) {
+            return new MerkleLeaf(hash);
+        }
+        return new MerkleNode(hash, this, level, index);
+    }
+}
@@ -4,7 +4,7 @@ import java.util.Objects;
 import java.util.StringJoiner;
 
 /**
- * The Merkle node.
+ * The Merkle node. Either holds its children directly or resolves them from the flat {@link MerkleLevels}.
  */
 public final class MerkleNode extends MerkleTreeElement {
 
@@ -12,18 +12,36 @@ public final class MerkleNode extends MerkleTreeElement {
 
     private final MerkleTreeElement right;
 
+    private final MerkleLevels levels;
+
+    private final int level;
+
+    private final int index;
+
     public MerkleNode(MerkleHash hash, MerkleTreeElement left, MerkleTreeElement right) {
         super(hash);
         this.left = left;
         this.right = right;
+        this.levels = null;
+        this.level = 0;
+        this.index = 0;
+    }
+
+    MerkleNode(MerkleHash hash, MerkleLevels levels, int level, int index) {
+        super(hash);
+        this.left = null;
+        this.right = null;
+        this.levels = levels;
+        this.level = level;
+        this.index = index;
     }
 
     public MerkleTreeElement left() {
-        return left;
+        return levels == null ? left : levels.elementAt(level - 1, 2 * index);
     }
 
     public MerkleTreeElement right() {
-        return right;
+        return levels == null ? right : levels.elementAt(level - 1, 2 * index + 1);
     }
 
     @Override
@@ -32,19 +50,19 @@ public final class MerkleNode extends MerkleTreeElement {
         if (o == null || getClass() != o.getClass()) return false;
         if (!super.equals(o)) return false;
         MerkleNode that = (MerkleNode) o;
-        return Objects.equals(left, that.left) && Objects.equals(right, that.right);
+        return Objects.equals(left(), that.left()) && Objects.equals(right(), that.right());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), left, right);
+        return Objects.hash(super.hashCode(), left(), right());
     }
 
     @Override
     public String toString() {
         return new StringJoiner(", ", MerkleNode.class.getSimpleName() + "[", "]")
-                .add("left=" + left)
-                .add("right=" + right)
+                .add("left=" + left())
+                .add("right=" + right())
                 .add("hash=" + hash)
                 .toString();
     }
@@ -1,18 +1,16 @@
 package pl.jackowiak.trustlessfileserver.domain.model;
 
-import org.apache.commons.lang3.tuple.Pair;
-
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 import static java.lang.String.format;
-import static java.util.Collections.singletonList;
 
 /**
- * Creates proofs for given merkle trees and checks for leaf inclusion. Creates Merkle Proof Tree which is then used to
- * determine final leaf proofs.
+ * Creates proofs for given merkle trees and checks for leaf inclusion. Proofs are resolved directly from the leaf index
+ * by walking a single root-to-leaf path. Leaf inclusion by hash is checked by walking the whole tree.
  */
 public final class MerkleProof {
 
@@ -20,68 +18,125 @@ public final class MerkleProof {
         throw new AssertionError(format("The class \"%s\" is not instantiable", this.getClass()));
     }
 
-    public static boolean checkIfLeafInTree(MerkleLeaf leaf, MerkleTreeElement rootNode) {
-        if (rootNode instanceof MerkleLeaf) {
-            return Arrays.equals(rootNode.hash.getHash(), leaf.hash.getHash());
-        } else if (rootNode instanceof MerkleNode node) {
-            if (checkIfLeafInTree(leaf, node.left())) {
-                return true;
-            }
-            return checkIfLeafInTree(leaf, node.right());
+    /**
+     * Finds leaf placed under given index, walking only the path leading to it.
+     */
+    public static Optional<MerkleLeaf> findLeaf(MerkleTreeElement rootNode, int leafIndex) {
+        var depth = depth(rootNode);
+        if (leafIndex < 0 || leafIndex >= 1L << depth) {
+            return Optional.empty();
         }
-        return false;
+        var element = rootNode;
+        for (var level = depth - 1; level >= 0; level--) {
+            var node = (MerkleNode) element;
+            element = isRightChild(leafIndex, level) ? node.right() : node.left();
+        }
+        return Optional.of((MerkleLeaf) element);
+    }
+
+    /**
+     * Lists proof elements for leaf placed under given index. The first element is the sibling of the leaf, the next
+     * one its uncle and so on up to the child of the root.
+     */
+    public static List<MerkleTreeElement> getProofElements(MerkleTreeElement rootNode, int leafIndex) {
+        var depth = depth(rootNode);
+        var proofs = new ArrayDeque<MerkleTreeElement>(depth);
+        var element = rootNode;
+        for (var level = depth - 1; level >= 0; level--) {
+            var node = (MerkleNode) element;
+            var rightChild = isRightChild(leafIndex, level);
+            var sibling = rightChild ? node.left() : node.right();
+            proofs.addFirst(new MerkleLeaf(sibling.hash));
+            element = rightChild ? node.right() : node.left();
+        }
+        return new ArrayList<>(proofs);
     }
 
-    public static MerkleTreeElement createProofTree(MerkleTreeElement rootNode, MerkleLeaf leafToBeChecked) {
-        var proofTree = createProof(rootNode, leafToBeChecked);
-        return proofTree.getRight();
+    /**
+     * Lists proof elements for leaf placed under given index reading sibling hashes straight from the tree levels.
+     */
+    public static List<MerkleTreeElement> getProofElements(MerkleLevels levels, int leafIndex) {
+        var proofs = new ArrayList<MerkleTreeElement>(levels.height());
+        var index = leafIndex;
+        for (var level = 0; level < levels.height(); level++) {
+            proofs.add(new MerkleLeaf(levels.hashAt(level, index ^ 1)));
+            index >>= 1;
+        }
+        return proofs;
     }
 
-    public static List<MerkleTreeElement> getProofElements(MerkleTreeElement proofTree, MerkleLeaf leafToBeChecked) {
-        var elements = new ArrayDeque<>(singletonList(proofTree));
+    /**
+     * Lists hashes required to verify the contiguous range of leafs, level by level starting from the leafs. On each
+     * level the left neighbour of the range goes before the right one. Hashes computable from the range itself are
+     * skipped, so each required hash is listed once.
+     */
+    public static List<MerkleTreeElement> getMultiProofElements(MerkleLevels levels, int fromIndex, int toIndex) {
         var proofs = new ArrayList<MerkleTreeElement>();
-        while (!elements.isEmpty()) {
-            var element = elements.poll();
-            if (element instanceof MerkleNode node) {
-                if (node.left() != null) {
-                    elements.add(node.left());
-                }
-                if (node.right() != null) {
-                    elements.add(node.right());
-                }
-            } else if (element instanceof MerkleLeaf leaf && !leafToBeChecked.equals(leaf)) {
-                proofs.add(leaf);
+        var from = fromIndex;
+        var to = toIndex;
+        for (var level = 0; level < levels.height(); level++) {
+            if ((from & 1) == 1) {
+                proofs.add(new MerkleLeaf(levels.hashAt(level, from - 1)));
             }
+            if ((to & 1) == 0) {
+                proofs.add(new MerkleLeaf(levels.hashAt(level, to + 1)));
+            }
+            from >>= 1;
+            to >>= 1;
         }
         return proofs;
     }
 
-    private static Pair<Boolean, MerkleTreeElement> createProof(MerkleTreeElement rootNode, MerkleLeaf leafToBeChecked) {
-        if (rootNode instanceof MerkleLeaf leaf) {
-            return checkForDesiredLeaf(leafToBeChecked, leaf);
-        } else if (rootNode instanceof MerkleNode node) {
-            return createSubTree(leafToBeChecked, node);
+    /**
+     * Checks that proof elements, ordered as returned by {@link #getProofElements(MerkleLevels, int)}, lead from the
+     * piece hash under given index to the root hash. Intermediate hashes are computed in place in a single buffer.
+     */
+    public static boolean verify(MerkleHash pieceHash, int pieceIndex, List<MerkleTreeElement> proofs, MerkleHash rootHash) {
+        var hashingAlgo = rootHash.getHashingAlgo();
+        var hashWidth = hashingAlgo.getDigestLength();
+        if (pieceHash.getHash().length != hashWidth || pieceIndex < 0 || proofs.size() > 31 || pieceIndex >= 1 << proofs.size()) {
+            return false;
+        }
+        var current = pieceHash.getHash().clone();
+        var index = pieceIndex;
+        for (var proof : proofs) {
+            var sibling = proof.hash.getHash();
+            if (sibling.length != hashWidth) {
+                return false;
+            }
+            if ((index & 1) == 1) {
+                hashingAlgo.hashPairInto(sibling, 0, current, 0, current, 0);
+            } else {
+                hashingAlgo.hashPairInto(current, 0, sibling, 0, current, 0);
+            }
+            index >>= 1;
         }
-        throw new IllegalStateException("Reached out of recursion context!");
+        return Arrays.equals(current, rootHash.getHash());
     }
 
-    private static Pair<Boolean, MerkleTreeElement> createSubTree(MerkleLeaf leafToBeChecked, MerkleNode node) {
-        var leftNode = createProof(node.left(), leafToBeChecked);
-        var rightNode = createProof(node.right(), leafToBeChecked);
-        if (leftNode.getLeft() || rightNode.getLeft()) {
-            var newTree = new MerkleNode(node.hash, leftNode.getRight(), rightNode.getRight());
-            return Pair.of(true, newTree);
-        } else {
-            var newTree = new MerkleLeaf(node.hash);
-            return Pair.of(false, newTree);
+    public static boolean checkIfLeafInTree(MerkleLeaf leaf, MerkleTreeElement rootNode) {
+        if (rootNode instanceof MerkleLeaf) {
+            return Arrays.equals(rootNode.hash.getHash(), leaf.hash.getHash());
+        } else if (rootNode instanceof MerkleNode node) {
+            if (checkIfLeafInTree(leaf, node.left())) {
+                return true;
+            }
+            return checkIfLeafInTree(leaf, node.right());
         }
+        return false;
     }
 
-    private static Pair<Boolean, MerkleTreeElement> checkForDesiredLeaf(MerkleLeaf leafToBeChecked, MerkleLeaf leaf) {
-        if (leaf.equals(leafToBeChecked)) {
-            return Pair.of(true, new MerkleLeaf(leaf.hash));
-        } else {
-            return Pair.of(false, new MerkleLeaf(leaf.hash));
+    private static int depth(MerkleTreeElement rootNode) {
+        var depth = 0;
+        var element = rootNode;
+        while (element instanceof MerkleNode node) {
+            element = node.left();
+            depth++;
         }
+        return depth;
+    }
+
+    private static boolean isRightChild(int leafIndex, int level) {
+        return ((leafIndex >> level) & 1) == 1;
     }
 }
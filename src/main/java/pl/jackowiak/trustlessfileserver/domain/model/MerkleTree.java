@@ -1,36 +1,154 @@
 package pl.jackowiak.trustlessfileserver.domain.model;
 
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
-import static com.google.common.primitives.Bytes.concat;
 import static java.lang.Integer.highestOneBit;
-import static java.util.stream.Collectors.toCollection;
+import static java.lang.Math.max;
 import static org.apache.commons.codec.binary.Hex.encodeHexString;
 import static pl.jackowiak.trustlessfileserver.domain.model.MerkleUtils.logDebug;
 
 /**
- * The Merkle tree.
+ * The Merkle tree. Hashes are stored level by level in {@link MerkleLevels}, tree elements are created on demand.
  */
 public final class MerkleTree {
 
+    /**
+     * Levels with fewer pairs are hashed on the calling thread, splitting them does not pay off.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    private static final int CHUNK_SIZE = 1 << 10;
+    public static final int DEFAULT_PIECE_SIZE = 1024;
+
+    private final MerkleLevels levels;
+    private final int pieceCount;
+    private final int pieceSize;
     private final MerkleTreeElement root;
 
     public MerkleTree(List<PieceHash> piecesHashes) {
+        this(piecesHashes, DEFAULT_PIECE_SIZE);
+    }
+
+    public MerkleTree(List<PieceHash> piecesHashes, int pieceSize) {
         logDebug("Creating Merkle tree for: <%d> piece(s)".formatted(piecesHashes.size()));
-        this.root = createMerkleTree(piecesHashes);
+        if (pieceSize <= 0)
+            throw new IllegalArgumentException("Piece size has to be positive!");
+        this.levels = createMerkleTree(piecesHashes);
+        this.pieceCount = piecesHashes.size();
+        this.pieceSize = pieceSize;
+        this.root = levels.elementAt(levels.height(), 0);
         logDebug("Merkle tree created with root hash: <%s>".formatted(encodeHexString(root.hash.getHash())));
     }
 
+    public MerkleTree(MerkleLevels levels, int pieceCount, int pieceSize) {
+        this.levels = levels;
+        this.pieceCount = pieceCount;
+        this.pieceSize = pieceSize;
+        this.root = levels.elementAt(levels.height(), 0);
+    }
+
     public MerkleTreeElement root() {
         return root;
     }
 
-    private MerkleTreeElement createMerkleTree(List<PieceHash> piecesHashes) {
-        var leafs = mapToLeaf(piecesHashes);
+    public MerkleLevels levels() {
+        return levels;
+    }
+
+    public int pieceCount() {
+        return pieceCount;
+    }
+
+    /**
+     * Size of all pieces but the last one, which may be shorter.
+     */
+    public int pieceSize() {
+        return pieceSize;
+    }
+
+    /**
+     * Piece hashes view backed by the leafs level, without filler leafs.
+     */
+    public List<PieceHash> pieceHashes() {
+        return new AbstractList<>() {
+            @Override
+            public PieceHash get(int index) {
+                if (index < 0 || index >= pieceCount) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                return new PieceHash(levels.hashAt(0, index));
+            }
+
+            @Override
+            public int size() {
+                return pieceCount;
+            }
+        };
+    }
+
+    /**
+     * Creates a new tree with given pieces added after the existing ones, this tree is left unchanged. Only the paths
+     * from the new leafs to the root are hashed, so adding <code>k</code> pieces costs <code>O(k log n)</code> hashes.
+     * When the leafs level gets full, the tree grows by a filler subtree, whose hashes are computed once per level.
+     * The result is identical to the tree created from all the pieces at once.
+     */
+    public MerkleTree append(List<PieceHash> appendedPiecesHashes) {
+        if (appendedPiecesHashes.isEmpty())
+            throw new IllegalArgumentException("Appended piece hashes cannot be empty!");
+        var hashingAlgo = levels.getHashingAlgo();
+        var hashWidth = levels.getHashWidth();
+        var newPieceCount = (long) pieceCount + appendedPiecesHashes.size();
+        var newLeafs = max(1L, highestOneBit((int) Math.min(Integer.MAX_VALUE, newPieceCount - 1)) * 2L);
+        if (newPieceCount > Integer.MAX_VALUE || newLeafs * hashWidth > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many pieces for a single Merkle tree: <%d>".formatted(newPieceCount));
+        var newHeight = Long.numberOfTrailingZeros(newLeafs);
+        var newLevels = new byte[newHeight + 1][];
+        var filler = new byte[hashWidth];
+        for (var level = 0; level <= newHeight; level++) {
+            if (level > 0) {
+                var previousFiller = filler;
+                filler = new byte[hashWidth];
+                hashingAlgo.hashPairInto(previousFiller, 0, previousFiller, 0, filler, 0);
+            }
+            newLevels[level] = new byte[(int) (newLeafs >> level) * hashWidth];
+            var copied = level <= levels.height() ? levels.width(level) * hashWidth : 0;
+            if (copied > 0) {
+                levels.level(level).get(0, newLevels[level], 0, copied);
+            }
+            for (var offset = copied; offset < newLevels[level].length; offset += hashWidth) {
+                System.arraycopy(filler, 0, newLevels[level], offset, hashWidth);
+            }
+        }
+        for (var i = 0; i < appendedPiecesHashes.size(); i++) {
+            var leaf = appendedPiecesHashes.get(i).merkleHash();
+            if (leaf.getHashingAlgo() != hashingAlgo)
+                throw new IllegalArgumentException("All piece hashes must be created with the same hashing algorithm!");
+            System.arraycopy(leaf.getHash(), 0, newLevels[0], (pieceCount + i) * hashWidth, hashWidth);
+        }
+        // parents of the changed nodes form a contiguous range on every level
+        var from = pieceCount;
+        var to = (int) newPieceCount - 1;
+        for (var level = 1; level <= newHeight; level++) {
+            from >>= 1;
+            to >>= 1;
+            hashPairs(newLevels[level - 1], newLevels[level], from, to + 1, hashingAlgo, hashWidth);
+        }
+        var buffers = new ByteBuffer[newHeight + 1];
+        for (var level = 0; level <= newHeight; level++) {
+            buffers[level] = ByteBuffer.wrap(newLevels[level]);
+        }
+        return new MerkleTree(new MerkleLevels(hashingAlgo, hashWidth, buffers), (int) newPieceCount, pieceSize);
+    }
+
+    private MerkleLevels createMerkleTree(List<PieceHash> piecesHashes) {
         var hashingAlgo = determineHashingAlgo(piecesHashes);
-        var balancedLeafs = balanceWithEmptyLeafs(leafs);
-        return buildMerkleTree(balancedLeafs, hashingAlgo);
+        var hashWidth = hashingAlgo.getDigestLength();
+        var balancedLeafs = balanceWithEmptyLeafs(piecesHashes, hashWidth);
+        var levels = buildMerkleTree(balancedLeafs, hashingAlgo, hashWidth);
+        return new MerkleLevels(hashingAlgo, hashWidth, levels.stream().map(ByteBuffer::wrap).toArray(ByteBuffer[]::new));
     }
 
     private HashingAlgo determineHashingAlgo(List<PieceHash> piecesHashes) {
@@ -41,39 +159,54 @@ public final class MerkleTree {
                 .orElseThrow(() -> new IllegalStateException("Could not determine common hashing algorithm."));
     }
 
-    private MerkleTreeElement buildMerkleTree(List<? extends MerkleTreeElement> previousLevelElements, HashingAlgo hashingAlgo) {
-        if (previousLevelElements.size() == 1) {
-            return previousLevelElements.get(0);
-        } else {
-            var newLevelElements = new ArrayList<MerkleTreeElement>();
-            for (var i = 0; i <= previousLevelElements.size() - 2; i += 2) {
-                var leftElement = previousLevelElements.get(i);
-                var rightElement = previousLevelElements.get(i + 1);
-                var concatenatedHashes = concat(leftElement.hash.getHash(), rightElement.hash.getHash());
-                var merkleHash = new MerkleHash(concatenatedHashes, hashingAlgo);
-                var newNode = new MerkleNode(merkleHash, leftElement, rightElement);
-                newLevelElements.add(newNode);
-            }
-            return buildMerkleTree(newLevelElements, hashingAlgo);
+    private List<byte[]> buildMerkleTree(byte[] leafs, HashingAlgo hashingAlgo, int hashWidth) {
+        var levels = new ArrayList<byte[]>();
+        levels.add(leafs);
+        var previousLevel = leafs;
+        while (previousLevel.length > hashWidth) {
+            var newLevel = hashLevel(previousLevel, hashingAlgo, hashWidth);
+            levels.add(newLevel);
+            previousLevel = newLevel;
         }
+        return levels;
     }
 
-    private List<MerkleLeaf> mapToLeaf(List<PieceHash> pieceHashes) {
-        return pieceHashes.stream()
-                .map(PieceHash::merkleHash)
-                .map(MerkleLeaf::new)
-                .collect(toCollection(ArrayList::new));
+    private byte[] hashLevel(byte[] previousLevel, HashingAlgo hashingAlgo, int hashWidth) {
+        var newLevel = new byte[previousLevel.length / 2];
+        var pairs = newLevel.length / hashWidth;
+        if (pairs < PARALLEL_THRESHOLD) {
+            hashPairs(previousLevel, newLevel, 0, pairs, hashingAlgo, hashWidth);
+            return newLevel;
+        }
+        // chunks write disjoint parts of the new level, so the result does not depend on the scheduling
+        var chunks = (pairs + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream.range(0, chunks).parallel()
+                .forEach(chunk -> hashPairs(previousLevel, newLevel, chunk * CHUNK_SIZE, Math.min(pairs, (chunk + 1) * CHUNK_SIZE), hashingAlgo, hashWidth));
+        return newLevel;
     }
 
-    private List<? extends MerkleTreeElement> balanceWithEmptyLeafs(List<MerkleLeaf> leafs) {
-        var numberOfLeafs = leafs.size();
-        var nextPowerOfTwo = highestOneBit(numberOfLeafs - 1) * 2;
-        var fillerLeaf = new byte[32];
-        logDebug("Filling tree with <%d> element(s).".formatted(nextPowerOfTwo - leafs.size()));
-        while (leafs.size() < nextPowerOfTwo) {
-            leafs.add(new MerkleLeaf(MerkleHash.rawHash(fillerLeaf)));
+    private static void hashPairs(byte[] previousLevel, byte[] newLevel, int from, int to, HashingAlgo hashingAlgo, int hashWidth) {
+        // left and right hash lay next to each other in the previous level
+        for (var i = from; i < to; i++) {
+            hashingAlgo.hashInto(previousLevel, 2 * i * hashWidth, 2 * hashWidth, newLevel, i * hashWidth);
         }
-        return leafs;
     }
-}
 
+    private byte[] balanceWithEmptyLeafs(List<PieceHash> pieceHashes, int hashWidth) {
+        var numberOfLeafs = pieceHashes.size();
+        var nextPowerOfTwo = max(1L, highestOneBit(numberOfLeafs - 1) * 2L);
+        if (nextPowerOfTwo * hashWidth > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many pieces for a single Merkle tree: <%d>".formatted(numberOfLeafs));
+        }
+        logDebug("Filling tree with <%d> element(s).".formatted(nextPowerOfTwo - numberOfLeafs));
+        // filler leafs are the zero filled hashes left at the end of the level
+        var balancedLeafs = new byte[(int) nextPowerOfTwo * hashWidth];
+        for (var i = 0; i < numberOfLeafs; i++) {
+            var leaf = pieceHashes.get(i).merkleHash().getHash();
+            if (leaf.length != hashWidth)
+                throw new IllegalArgumentException("All piece hashes must be created with the same hashing algorithm!");
+            System.arraycopy(leaf, 0, balancedLeafs, i * hashWidth, hashWidth);
+        }
+        return balancedLeafs;
+    }
+}
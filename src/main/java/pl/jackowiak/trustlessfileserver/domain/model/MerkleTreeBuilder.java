@@ -0,0 +1,133 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds {@link MerkleTree} while piece hashes arrive, without keeping the list of them. Whenever a level gets a new
+ * pair of hashes, their parent is hashed right away, so {@link #build()} only adds the filler leafs, to a copy of the
+ * levels, which leaves the builder usable for further pieces. Memory grows with the number of pieces only by the hashes
+ * of the tree itself. The resulting tree is identical to the one created from the whole list at once. Not thread safe.
+ */
+public final class MerkleTreeBuilder {
+
+    private static final int INITIAL_LEVEL_WIDTH = 64;
+
+    private final int pieceSize;
+    private HashingAlgo hashingAlgo;
+    private int hashWidth;
+    private byte[][] levels = new byte[0][];
+    private int[] widths = new int[0];
+    private int pieceCount;
+
+    public MerkleTreeBuilder(int pieceSize) {
+        if (pieceSize <= 0)
+            throw new IllegalArgumentException("Piece size has to be positive!");
+        this.pieceSize = pieceSize;
+    }
+
+    /**
+     * Copy of given builder with levels sized for the given height and leafs, so filling it up never grows them.
+     */
+    private MerkleTreeBuilder(MerkleTreeBuilder builder, int height, long leafs) {
+        this.pieceSize = builder.pieceSize;
+        this.hashingAlgo = builder.hashingAlgo;
+        this.hashWidth = builder.hashWidth;
+        this.pieceCount = builder.pieceCount;
+        this.levels = new byte[height + 1][];
+        this.widths = Arrays.copyOf(builder.widths, height + 1);
+        for (var level = 0; level <= height; level++) {
+            levels[level] = new byte[(int) (leafs >> level) * hashWidth];
+            if (level < builder.levels.length) {
+                System.arraycopy(builder.levels[level], 0, levels[level], 0, widths[level] * hashWidth);
+            }
+        }
+    }
+
+    public MerkleTreeBuilder add(PieceHash pieceHash) {
+        var merkleHash = pieceHash.merkleHash();
+        if (hashingAlgo == null) {
+            hashingAlgo = merkleHash.getHashingAlgo();
+            hashWidth = hashingAlgo.getDigestLength();
+        }
+        if (merkleHash.getHash().length != hashWidth)
+            throw new IllegalArgumentException("All piece hashes must be created with the same hashing algorithm!");
+        if ((pieceCount + 1L) * hashWidth * 2 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many pieces for a single Merkle tree: <%d>".formatted(pieceCount + 1L));
+        appendLeaf(merkleHash.getHash());
+        pieceCount++;
+        return this;
+    }
+
+    public int pieceCount() {
+        return pieceCount;
+    }
+
+    /**
+     * Hashes of the pieces added so far, copied from the leaf level.
+     */
+    public List<PieceHash> pieceHashes() {
+        var pieceHashes = new ArrayList<PieceHash>(pieceCount);
+        for (var index = 0; index < pieceCount; index++) {
+            var hash = Arrays.copyOfRange(levels[0], index * hashWidth, (index + 1) * hashWidth);
+            pieceHashes.add(new PieceHash(MerkleHash.rawHash(hash, hashingAlgo)));
+        }
+        return pieceHashes;
+    }
+
+    /**
+     * Builds the tree of the pieces added so far, the builder itself is left unchanged.
+     */
+    public MerkleTree build() {
+        if (pieceCount == 0)
+            throw new IllegalArgumentException("Piece hashes for merkle tree creation cannot be empty!");
+        var leafs = Math.max(1, Integer.highestOneBit(pieceCount - 1) * 2L);
+        var height = Long.numberOfTrailingZeros(leafs);
+        var filled = new MerkleTreeBuilder(this, height, leafs);
+        // filler leafs are zero filled hashes, same as in the tree created from the whole list
+        var filler = new byte[hashWidth];
+        while (filled.widths[0] < leafs) {
+            filled.appendLeaf(filler);
+        }
+        var buffers = new ByteBuffer[height + 1];
+        for (var level = 0; level <= height; level++) {
+            buffers[level] = ByteBuffer.wrap(filled.levels[level]);
+        }
+        return new MerkleTree(new MerkleLevels(hashingAlgo, hashWidth, buffers), pieceCount, pieceSize);
+    }
+
+    private void appendLeaf(byte[] hash) {
+        append(0, hash);
+        for (var level = 0; widths[level] % 2 == 0; level++) {
+            hashLastPair(level);
+        }
+    }
+
+    private void hashLastPair(int level) {
+        var pairOffset = (widths[level] - 2) * hashWidth;
+        ensureCapacity(level + 1);
+        hashingAlgo.hashPairInto(levels[level], pairOffset, levels[level], pairOffset + hashWidth, levels[level + 1], widths[level + 1] * hashWidth);
+        widths[level + 1]++;
+    }
+
+    private void append(int level, byte[] hash) {
+        ensureCapacity(level);
+        System.arraycopy(hash, 0, levels[level], widths[level] * hashWidth, hashWidth);
+        widths[level]++;
+    }
+
+    private void ensureCapacity(int level) {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            widths = Arrays.copyOf(widths, level + 1);
+            levels[level] = new byte[INITIAL_LEVEL_WIDTH * hashWidth];
+        }
+        var required = (widths[level] + 1) * hashWidth;
+        if (required > levels[level].length) {
+            var grown = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * levels[level].length));
+            levels[level] = Arrays.copyOf(levels[level], grown);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package pl.jackowiak.trustlessfileserver.domain.model;
 
 import java.util.Objects;
+import java.util.Optional;
 import java.util.StringJoiner;
 
 import static pl.jackowiak.trustlessfileserver.domain.model.EncodingAlgo.parseEncodingAlgo;
@@ -13,12 +14,21 @@ public final class PersistPiece {
 
     private final MerkleHash merkleHash;
     private final MerkleEncoded merkleEncoded;
+    private final FileSource source;
 
     public PersistPiece(byte[] pieceContent, String hashingAlgoName, String encodingAlgoName) {
+        this(pieceContent, hashingAlgoName, encodingAlgoName, null);
+    }
+
+    /**
+     * Creates piece read from given file, which lets the repository skip keeping its content.
+     */
+    public PersistPiece(byte[] pieceContent, String hashingAlgoName, String encodingAlgoName, FileSource source) {
         var hashingAlgo = determineHashingAlgo(hashingAlgoName);
         var encodingAlgo = determineEncodingAlgo(encodingAlgoName);
         this.merkleEncoded = new MerkleEncoded(encodingAlgo, pieceContent);
         this.merkleHash = new MerkleHash(pieceContent, hashingAlgo);
+        this.source = source;
     }
 
     private static HashingAlgo determineHashingAlgo(String hashingAlgo) {
@@ -41,6 +51,10 @@ public final class PersistPiece {
         return merkleEncoded;
     }
 
+    public Optional<FileSource> getSource() {
+        return Optional.ofNullable(source);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
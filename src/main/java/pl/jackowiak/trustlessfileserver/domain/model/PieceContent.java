@@ -0,0 +1,22 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import java.util.Optional;
+
+/**
+ * Raw piece content, either located in a file or held in memory when the repository does not store pieces in files.
+ */
+public record PieceContent(Optional<PieceLocation> location, Optional<MerkleEncoded> content) {
+
+    public static PieceContent inFile(PieceLocation location) {
+        return new PieceContent(Optional.of(location), Optional.empty());
+    }
+
+    public static PieceContent inMemory(MerkleEncoded content) {
+        return new PieceContent(Optional.empty(), Optional.of(content));
+    }
+
+    public int length() {
+        return location.map(PieceLocation::length)
+                .orElseGet(() -> content.map(MerkleEncoded::getContentLength).orElse(0));
+    }
+}
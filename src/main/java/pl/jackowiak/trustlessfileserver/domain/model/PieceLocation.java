@@ -0,0 +1,9 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import java.nio.file.Path;
+
+/**
+ * Region of a file holding raw piece content, lets the content be sent to clients without reading it into memory.
+ */
+public record PieceLocation(Path file, long position, int length) {
+}
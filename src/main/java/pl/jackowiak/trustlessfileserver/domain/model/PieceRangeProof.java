@@ -0,0 +1,19 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import java.util.List;
+
+/**
+ * The proof of contiguous range of pieces. Holds contents of all pieces from the range and single multiproof with each
+ * hash required to verify the whole range listed once.
+ */
+public record PieceRangeProof(int fromIndex, int toIndex, List<MerkleEncoded> contents, List<MerkleTreeElement> proofs) {
+
+    /**
+     * Maximum number of pieces served within single range.
+     */
+    public static final int MAX_RANGE_SIZE = 1024;
+    /**
+     * Maximum number of bytes served within single range, counted by the piece size of the file.
+     */
+    public static final int MAX_RANGE_BYTES = 16 * 1024 * 1024;
+}
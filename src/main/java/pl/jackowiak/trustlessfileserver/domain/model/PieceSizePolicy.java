@@ -0,0 +1,34 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+/**
+ * Picks piece size for a file. With <code>maxTreeDepth</code> set, the piece size is doubled until the file fits in
+ * <code>2^maxTreeDepth</code> pieces, which bounds the tree depth and so the length of every proof.
+ * <code>0</code> keeps the piece size fixed.
+ */
+public record PieceSizePolicy(int pieceSize, int maxTreeDepth) {
+
+    public static final int MAX_PIECE_SIZE = 64 * 1024 * 1024;
+
+    public PieceSizePolicy {
+        if (pieceSize <= 0 || pieceSize > MAX_PIECE_SIZE)
+            throw new IllegalArgumentException("Piece size has to be between <1> and <%d> bytes!".formatted(MAX_PIECE_SIZE));
+        if (maxTreeDepth < 0 || maxTreeDepth > 30)
+            throw new IllegalArgumentException("Maximum tree depth has to be between <0> and <30>!");
+    }
+
+    public static PieceSizePolicy fixed(int pieceSize) {
+        return new PieceSizePolicy(pieceSize, 0);
+    }
+
+    public int pieceSizeFor(long fileLength) {
+        if (maxTreeDepth == 0) {
+            return pieceSize;
+        }
+        var maxPieces = 1L << maxTreeDepth;
+        var size = (long) pieceSize;
+        while (size < MAX_PIECE_SIZE && (fileLength + size - 1) / size > maxPieces) {
+            size *= 2;
+        }
+        return (int) Math.min(size, MAX_PIECE_SIZE);
+    }
+}
@@ -0,0 +1,92 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * Raw content of a whole stored file. Pieces are looked up one by one while the file is being sent, so even the
+ * largest files are never held in memory.
+ */
+public final class RawFile {
+
+    private final MerkleTree merkleTree;
+    private final IntFunction<PieceContent> pieces;
+    private final long length;
+
+    public RawFile(MerkleTree merkleTree, IntFunction<PieceContent> pieces) {
+        this.merkleTree = merkleTree;
+        this.pieces = pieces;
+        var lastPiece = merkleTree.pieceCount() - 1;
+        this.length = (long) lastPiece * merkleTree.pieceSize() + pieces.apply(lastPiece).length();
+    }
+
+    public MerkleTree merkleTree() {
+        return merkleTree;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public PieceContent piece(int index) {
+        if (index < 0 || index >= merkleTree.pieceCount()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return pieces.apply(index);
+    }
+
+    /**
+     * Index of the piece holding the byte at given position of the file.
+     */
+    public int pieceAt(long position) {
+        if (position < 0 || position >= length) {
+            throw new IndexOutOfBoundsException("Position <%d> is outside of the file of <%d> bytes".formatted(position, length));
+        }
+        return (int) (position / merkleTree.pieceSize());
+    }
+
+    /**
+     * Position of the first byte of the piece under given index.
+     */
+    public long pieceStart(int index) {
+        return (long) index * merkleTree.pieceSize();
+    }
+
+    /**
+     * Position right after the last byte of the piece under given index.
+     */
+    public long pieceEnd(int index) {
+        return Math.min(length, pieceStart(index + 1));
+    }
+
+    /**
+     * Pieces of the contiguous range, both indexes inclusive, looked up lazily while iterating.
+     */
+    public Iterator<PieceContent> pieces(int fromIndex, int toIndex) {
+        return new Iterator<>() {
+            private int index = fromIndex;
+
+            @Override
+            public boolean hasNext() {
+                return index <= toIndex;
+            }
+
+            @Override
+            public PieceContent next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return piece(index++);
+            }
+        };
+    }
+
+    /**
+     * Multiproof verifying the contiguous range of pieces, ordered as {@link MerkleProof#getMultiProofElements}.
+     */
+    public List<MerkleTreeElement> proofs(int fromIndex, int toIndex) {
+        return MerkleProof.getMultiProofElements(merkleTree.levels(), fromIndex, toIndex);
+    }
+}
@@ -0,0 +1,9 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import java.util.List;
+
+/**
+ * Raw piece content with its proof, for clients verifying pieces on their own.
+ */
+public record RawPiece(PieceContent content, List<MerkleTreeElement> proofs) {
+}
@@ -0,0 +1,13 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+/**
+ * Repository size snapshot. Heap sizes are estimates of merkle trees with their piece hash lists and of piece contents
+ * with their index entries, content kept outside of the heap is not counted.
+ */
+public record RepositoryStatistics(int files, long pieces, long treeHeapBytes, long pieceHeapBytes) {
+
+    public RepositoryStatistics plus(RepositoryStatistics other) {
+        return new RepositoryStatistics(files + other.files, pieces + other.pieces, treeHeapBytes + other.treeHeapBytes,
+                pieceHeapBytes + other.pieceHeapBytes);
+    }
+}
@@ -1,17 +1,47 @@
 package pl.jackowiak.trustlessfileserver.domain.ports.in;
 
 import io.vavr.control.Either;
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
 import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
 import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof;
+import pl.jackowiak.trustlessfileserver.domain.model.RawFile;
+import pl.jackowiak.trustlessfileserver.domain.model.RawPiece;
 
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Handles action related to serving application endpoints.
  */
 public interface ServerFiles {
-    Map<MerkleHash, Integer> availableFiles();
+    Map<MerkleHash, FileMetadata> availableFiles();
+
+    /**
+     * Metadata of a single served file, looked up without reading any piece or creating any proof.
+     */
+    Optional<FileMetadata> fileMetadata(MerkleHash merkleTreeHash);
+
+    /**
+     * Changes whenever a file becomes available, lets clients tell the catalog is unchanged without reading it.
+     */
+    long catalogVersion();
+
+    /**
+     * Served and stored bytes per file and in total, shows how much identical pieces of stored files save.
+     */
+    DedupStatistics dedupStatistics();
 
     Either<DomainFailure, PieceProof> getProofForPiece(MerkleHash merkleTreeHash, int pieceIndex);
+
+    Either<DomainFailure, PieceRangeProof> getProofForPieceRange(MerkleHash merkleTreeHash, int fromIndex, int toIndex);
+
+    /**
+     * Piece content with its proof, located in a file when the repository keeps pieces in files.
+     */
+    Either<DomainFailure, RawPiece> getRawPiece(MerkleHash merkleTreeHash, int pieceIndex);
+
+    Either<DomainFailure, RawFile> getRawFile(MerkleHash merkleTreeHash);
 }
@@ -1,10 +1,14 @@
 package pl.jackowiak.trustlessfileserver.domain.ports.in;
 
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
 import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
 import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Handles action related to persisting files.
@@ -14,4 +18,48 @@ public interface StoreFile {
     PieceHash persistPiece(PersistPiece piece);
 
     MerkleTree storeAsMerkleTree(List<PieceHash> storedPiecesHashes);
+
+    MerkleTree storeAsMerkleTree(List<PieceHash> storedPiecesHashes, int pieceSize);
+
+    MerkleTree storeAsMerkleTree(List<PieceHash> storedPiecesHashes, FileSource source);
+
+    /**
+     * Stores merkle tree built incrementally from pieces persisted while the file was being received.
+     */
+    MerkleTree storeAsMerkleTree(MerkleTreeBuilder merkleTreeBuilder);
+
+    /**
+     * Stores merkle tree built incrementally from pieces read from given source file.
+     */
+    MerkleTree storeAsMerkleTree(MerkleTreeBuilder merkleTreeBuilder, FileSource source);
+
+    /**
+     * Stores merkle tree of already stored file extended by given pieces. The file is published under the new root,
+     * the tree under the previous root is kept and keeps serving.
+     */
+    MerkleTree appendToMerkleTree(MerkleHash merkleRootHash, List<PieceHash> appendedPiecesHashes);
+
+    /**
+     * Finds stored merkle tree pieces can be appended to, so the appended content is checked before it is persisted.
+     *
+     * @throws IllegalArgumentException when the tree is not stored or its last piece is not full
+     */
+    MerkleTree findAppendableMerkleTree(MerkleHash merkleRootHash);
+
+    /**
+     * Deletes stored file, pieces no other file lists are released. Cached proofs of the file are dropped.
+     *
+     * @return false when no file with given root is stored
+     */
+    boolean deleteMerkleTree(MerkleHash merkleRootHash);
+
+    /**
+     * Releases pieces persisted for a file that will not be stored, e.g. an interrupted or rejected upload.
+     */
+    void releasePieces(List<PieceHash> storedPiecesHashes);
+
+    /**
+     * Finds merkle tree already stored for given, unchanged source file, so the file does not have to be read again.
+     */
+    Optional<MerkleTree> findStoredMerkleTree(FileSource source);
 }
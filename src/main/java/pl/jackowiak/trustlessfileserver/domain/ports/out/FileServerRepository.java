@@ -1,10 +1,15 @@
 package pl.jackowiak.trustlessfileserver.domain.ports.out;
 
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
 import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
 import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+import pl.jackowiak.trustlessfileserver.domain.model.RepositoryStatistics;
 
 import java.util.List;
 import java.util.Map;
@@ -16,13 +21,85 @@ import java.util.Optional;
 public interface FileServerRepository {
     PieceHash persistPieces(PersistPiece persistPiece);
 
+    /**
+     * Persists merkle tree, which references each piece it lists. Persisting a tree under an already stored root adds
+     * no references. Pieces stored by the upload of the tree, one hash for each time they were stored, stop being
+     * pending.
+     */
     void persistMerkleTree(MerkleTree hash, List<PieceHash> storedPiecesHashes);
 
-    Map<MerkleHash, Integer> getAvailableMerkleTreesWithNumberOfPieces();
+    /**
+     * Persists merkle tree of pieces read from given file. Repositories able to serve content from the file itself
+     * may skip keeping the pieces content.
+     */
+    default void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes, FileSource source) {
+        persistMerkleTree(merkleTree, storedPiecesHashes);
+    }
+
+    /**
+     * Removes merkle tree with given root and releases its pieces. A piece is removed once no persisted tree lists it
+     * and no file being stored may still need it.
+     *
+     * @return false when no tree with given root is stored
+     */
+    boolean deleteMerkleTree(MerkleHash merkleRootHash);
+
+    /**
+     * Releases pieces stored by an upload that will not persist its tree, one hash for each time they were stored.
+     * Pieces no persisted tree lists and no other upload stored meanwhile are removed.
+     */
+    void releasePieces(List<PieceHash> storedPiecesHashes);
+
+    Map<MerkleHash, FileMetadata> getAvailableFiles();
+
+    /**
+     * Version of the available files, increased after each merkle tree is persisted or deleted. Read before the
+     * available files, it never describes a catalog older than the one returned.
+     */
+    long getCatalogVersion();
+
+    /**
+     * Counts and heap estimates of stored files and pieces, computed when called.
+     */
+    RepositoryStatistics getStatistics();
+
+    /**
+     * Served and stored piece bytes of each file and of the whole repository, computed when called.
+     */
+    DedupStatistics getDedupStatistics();
 
     Optional<MerkleTree> getMerkleTreeByHash(MerkleHash merkleTreeHash);
 
     Optional<List<PieceHash>> getPieceHashByMerkleHash(MerkleHash merkleRootHash);
 
     Optional<MerkleEncoded> getPieceContentByPieceHash(PieceHash pieceHash);
+
+    /**
+     * Root hash of the merkle tree persisted for given source file, empty when the repository does not track sources
+     * or the file changed since.
+     */
+    default Optional<MerkleHash> getMerkleHashBySource(FileSource source) {
+        return Optional.empty();
+    }
+
+    default Optional<MerkleEncoded> getPieceContent(MerkleHash merkleRootHash, int pieceIndex) {
+        return getPieceHashByMerkleHash(merkleRootHash)
+                .filter(pieces -> pieceIndex >= 0 && pieceIndex < pieces.size())
+                .map(pieces -> pieces.get(pieceIndex))
+                .flatMap(this::getPieceContentByPieceHash);
+    }
+
+    /**
+     * File region holding the raw content of given piece, empty when the repository does not keep pieces in files.
+     */
+    default Optional<PieceLocation> getPieceLocation(MerkleHash merkleRootHash, int pieceIndex) {
+        return Optional.empty();
+    }
+
+    /**
+     * Whether pieces of given merkle tree are read from its source file instead of being kept by the repository.
+     */
+    default boolean isSourceBacked(MerkleHash merkleRootHash) {
+        return false;
+    }
 }
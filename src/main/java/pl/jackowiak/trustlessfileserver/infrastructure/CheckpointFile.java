@@ -0,0 +1,90 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Snapshot of an in memory index written next to a {@link SegmentLog}, so opening the log replays only the records
+ * appended after the snapshot. Written as <code>format version (1B) | body | crc32c of version and body (4B)</code>
+ * to a temporary file moved over the previous one, so a crash leaves either snapshot whole. A snapshot that is missing,
+ * of another version or corrupted is ignored and the whole log is replayed instead.
+ */
+final class CheckpointFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointFile.class);
+    private static final byte FORMAT_VERSION = 1;
+    private static final int CHECKSUM_LENGTH = 4;
+
+    interface Writer {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    interface Reader {
+        void read(DataInputStream input) throws IOException;
+    }
+
+    private CheckpointFile() {
+    }
+
+    static void write(Path path, Writer writer) throws IOException {
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        var crc = new CRC32C();
+        try (var output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)), crc))) {
+            output.writeByte(FORMAT_VERSION);
+            writer.write(output);
+            output.writeInt((int) crc.getValue());
+        }
+        try (var channel = FileChannel.open(temporary, READ, WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, path, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    /**
+     * @return whether the snapshot was found intact and passed to given reader
+     */
+    static boolean read(Path path, Reader reader) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) <= 1 + CHECKSUM_LENGTH) {
+            return false;
+        }
+        var bodyLength = Files.size(path) - CHECKSUM_LENGTH;
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            var version = input.readByte();
+            if (version != FORMAT_VERSION) {
+                LOG.warn("Ignoring checkpoint <%s> of unsupported format version <%d>".formatted(path, version));
+                return false;
+            }
+            var crc = new CRC32C();
+            crc.update(version);
+            var checked = new CheckedInputStream(input, crc);
+            checked.skipNBytes(bodyLength - 1);
+            if ((int) crc.getValue() != input.readInt()) {
+                LOG.warn("Ignoring corrupted checkpoint <%s>".formatted(path));
+                return false;
+            }
+        }
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            input.readByte();
+            reader.read(input);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,73 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * JDK raw deflate of each piece on its own, so a piece is decoded without reading its neighbours. A piece is kept
+ * encoded only when it shrinks by at least an eighth. Deflaters hold native memory and are costly to create, each
+ * thread reuses its own pair.
+ */
+public final class DeflatePieceCodec implements PieceCodec {
+
+    public static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+    private static final int MIN_SAVING_DIVISOR = 8;
+
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    public DeflatePieceCodec(int level) {
+        if (level != DEFAULT_LEVEL && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("Deflate level <%d> is not between 0 and 9".formatted(level));
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public Optional<byte[]> encode(ByteBuffer content) {
+        var contentLength = content.remaining();
+        var maxEncodedLength = contentLength - contentLength / MIN_SAVING_DIVISOR - 1;
+        if (maxEncodedLength <= 0) {
+            return Optional.empty();
+        }
+        var deflater = deflaters.get();
+        try {
+            deflater.setInput(content.duplicate());
+            deflater.finish();
+            // one spare byte tells a result exactly filling the limit from a truncated one
+            var encoded = new byte[maxEncodedLength + 1];
+            var encodedLength = deflater.deflate(encoded);
+            if (!deflater.finished() || encodedLength > maxEncodedLength) {
+                return Optional.empty();
+            }
+            return Optional.of(Arrays.copyOf(encoded, encodedLength));
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public ByteBuffer decode(ByteBuffer encoded, int contentLength) {
+        var inflater = inflaters.get();
+        try {
+            inflater.setInput(encoded.duplicate());
+            var content = new byte[contentLength];
+            var decodedLength = inflater.inflate(content);
+            if (decodedLength != contentLength || !inflater.finished())
+                throw new IllegalStateException("Deflated piece decoded to <%d> bytes, expected <%d>".formatted(decodedLength, contentLength));
+            return ByteBuffer.wrap(content);
+        } catch (DataFormatException exception) {
+            throw new IllegalStateException("Deflated piece is corrupted", exception);
+        } finally {
+            inflater.reset();
+        }
+    }
+}
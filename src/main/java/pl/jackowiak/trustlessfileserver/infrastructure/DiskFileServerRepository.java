@@ -0,0 +1,656 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.Deduplication;
+import pl.jackowiak.trustlessfileserver.domain.model.EncodingAlgo;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleLevels;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+import pl.jackowiak.trustlessfileserver.domain.model.RepositoryStatistics;
+import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Durable repository backed by {@link SegmentLog}. Piece content, merkle tree levels and ingested source files are
+ * appended as records, while only the piece locations and the trees are kept in memory. Opening the repository
+ * replays the log, so nothing has to be hashed again after restart.
+ * Deleted trees and pieces released by abandoned uploads are recorded as well, pieces no remaining tree lists are
+ * dropped from the index. Segments are never rewritten, so the disk space of dropped pieces is not reclaimed.
+ * Pieces the {@link PieceCodec} saves space on are appended encoded, with the codec name and content length, and are
+ * decoded on every read. Encoded pieces have no file region to be sent from.
+ * Closing the repository writes the piece index, trees and sources to a {@link CheckpointFile}, so the next open loads
+ * it and replays only the records appended after it instead of the whole log.
+ */
+public class DiskFileServerRepository implements FileServerRepository, Closeable {
+
+    private static final byte PIECE_RECORD = 1;
+    private static final byte TREE_RECORD = 2;
+    private static final byte SOURCE_RECORD = 3;
+    private static final byte DELETE_RECORD = 4;
+    private static final byte ENCODED_PIECE_RECORD = 5;
+    private static final byte RELEASE_RECORD = 6;
+    private static final int PIECE_PREFIX_LENGTH = 512;
+    private static final String CHECKPOINT_FILE = "checkpoint.bin";
+    /**
+     * Map entry, key, location records, codec and reference count of an indexed piece, its content stays in the segment.
+     */
+    private static final int PIECE_INDEX_ENTRY_BYTES = 232;
+
+    private final SegmentLog log;
+
+    private final Path checkpoint;
+
+    private final PieceCodecs codecs;
+
+    private final PieceCodec codec;
+
+    private final Map<MerkleHash, StoredPiece> PIECES_INDEX = new ConcurrentHashMap<>();
+
+    private final Map<MerkleHash, MerkleTree> MERKLE_DB = new ConcurrentHashMap<>();
+
+    private final Map<Path, StoredSource> SOURCES_DB = new ConcurrentHashMap<>();
+
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    public DiskFileServerRepository(Path directory, long maxSegmentBytes) {
+        this(directory, maxSegmentBytes, PieceCodecs.of(PieceCodec.NONE));
+    }
+
+    /**
+     * @param codecs the configured codec encodes appended pieces, pieces appended before with other codecs are still read
+     */
+    public DiskFileServerRepository(Path directory, long maxSegmentBytes, PieceCodecs codecs) {
+        this.codecs = codecs;
+        this.codec = codecs.configured();
+        this.checkpoint = directory.resolve(CHECKPOINT_FILE);
+        var recordLoader = new RecordLoader();
+        try {
+            var replayFrom = recordLoader.loadCheckpoint(directory, checkpoint);
+            this.log = SegmentLog.open(directory, maxSegmentBytes, replayFrom, recordLoader);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not open repository in <%s>".formatted(directory), exception);
+        }
+        countReferences(recordLoader.released);
+    }
+
+    /**
+     * Pieces listed by no tree after the replay are dropped when a deleted tree was the last one listing them. The
+     * others may belong to an interrupted upload and stay pending, like pieces stored while running.
+     */
+    private void countReferences(Set<MerkleHash> released) {
+        MERKLE_DB.values().forEach(merkleTree -> reference(merkleTree.pieceHashes()));
+        PIECES_INDEX.replaceAll((hash, stored) -> stored.references().isUnused() && !released.contains(hash)
+                ? stored.withReferences(PieceReferences.NONE.stored())
+                : stored);
+        PIECES_INDEX.values().removeIf(stored -> stored.references().isUnused());
+    }
+
+    /**
+     * The piece is appended outside of the index lock, so concurrent uploads of the same new piece may both append it,
+     * the index keeps the first record and replay the last one.
+     */
+    @Override
+    public PieceHash persistPieces(PersistPiece persistPiece) {
+        var merkleHash = persistPiece.getMerkleHash();
+        var stored = PIECES_INDEX.computeIfPresent(merkleHash, (hash, indexed) -> indexed.withReferences(indexed.references().stored()));
+        if (stored == null) {
+            var appended = appendPiece(merkleHash, persistPiece.getMerkleEncoded()).withReferences(PieceReferences.NONE.stored());
+            PIECES_INDEX.merge(merkleHash, appended, (indexed, ignored) -> indexed.withReferences(indexed.references().stored()));
+        }
+        return new PieceHash(merkleHash);
+    }
+
+    private StoredPiece appendPiece(MerkleHash merkleHash, MerkleEncoded merkleEncoded) {
+        var encoded = codec.encode(merkleEncoded.getContentBuffer());
+        var encodingAlgo = merkleEncoded.getEncodingAlgo();
+        var contentLength = merkleEncoded.getContentLength();
+        var header = ByteBuffer.allocate(PIECE_PREFIX_LENGTH);
+        putName(header, merkleHash.getHashingAlgo().name());
+        putName(header, encodingAlgo.name());
+        putBytes(header, merkleHash.getHash());
+        if (encoded.isEmpty()) {
+            var contentOffset = header.position();
+            var location = append(PIECE_RECORD, header.flip(), merkleEncoded.getContentBuffer());
+            return new StoredPiece(encodingAlgo, location, contentOffset, PieceCodec.NONE, contentLength, PieceReferences.NONE);
+        }
+        putName(header, codec.name());
+        header.putInt(contentLength);
+        var contentOffset = header.position();
+        var location = append(ENCODED_PIECE_RECORD, header.flip(), ByteBuffer.wrap(encoded.get()));
+        return new StoredPiece(encodingAlgo, location, contentOffset, codec, contentLength, PieceReferences.NONE);
+    }
+
+    @Override
+    public synchronized void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes) {
+        appendTree(merkleTree);
+        sync();
+        publish(merkleTree, storedPiecesHashes);
+    }
+
+    @Override
+    public synchronized void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes, FileSource source) {
+        appendTree(merkleTree);
+        var path = source.path().toAbsolutePath().normalize();
+        var storedSource = new StoredSource(source.pieceSize(), fileSize(path), lastModified(path), merkleTree.root().hash());
+        append(SOURCE_RECORD, writeSource(path, storedSource));
+        sync();
+        SOURCES_DB.put(path, storedSource);
+        publish(merkleTree, storedPiecesHashes);
+    }
+
+    private void publish(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes) {
+        var hash = merkleTree.root().hash();
+        if (!MERKLE_DB.containsKey(hash)) {
+            reference(merkleTree.pieceHashes());
+        }
+        settle(storedPiecesHashes);
+        MERKLE_DB.put(hash, merkleTree);
+        catalogVersion.incrementAndGet();
+    }
+
+    private void reference(List<PieceHash> pieceHashes) {
+        PieceReferences.count(pieceHashes).forEach((pieceHash, count) -> PIECES_INDEX.computeIfPresent(pieceHash,
+                (key, stored) -> stored.withReferences(stored.references().referenced(count))));
+    }
+
+    /**
+     * Dropped pieces are recorded, so replay does not keep them as pending stores of an interrupted upload.
+     */
+    @Override
+    public synchronized void releasePieces(List<PieceHash> storedPiecesHashes) {
+        var dropped = settle(storedPiecesHashes);
+        if (!dropped.isEmpty()) {
+            append(RELEASE_RECORD, writeHashes(dropped));
+            sync();
+        }
+    }
+
+    /**
+     * @return hashes of the pieces dropped as no longer used
+     */
+    private List<MerkleHash> settle(List<PieceHash> storedPiecesHashes) {
+        var dropped = new ArrayList<MerkleHash>();
+        PieceReferences.count(storedPiecesHashes).forEach((pieceHash, count) -> PIECES_INDEX.computeIfPresent(pieceHash, (key, stored) -> {
+            var references = stored.references().settled(count);
+            if (references.isUnused()) {
+                dropped.add(key);
+                return null;
+            }
+            return stored.withReferences(references);
+        }));
+        return dropped;
+    }
+
+    @Override
+    public synchronized boolean deleteMerkleTree(MerkleHash merkleRootHash) {
+        var merkleTree = MERKLE_DB.get(merkleRootHash);
+        if (merkleTree == null) {
+            return false;
+        }
+        append(DELETE_RECORD, writeHash(merkleRootHash));
+        sync();
+        MERKLE_DB.remove(merkleRootHash);
+        PieceReferences.count(merkleTree.pieceHashes()).forEach((pieceHash, count) -> PIECES_INDEX.computeIfPresent(pieceHash, (key, stored) -> {
+            var references = stored.references().released(count);
+            return references.isUnused() ? null : stored.withReferences(references);
+        }));
+        catalogVersion.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * The whole tree is a single record, so a tree larger than a record, above <code>2^24</code> pieces with 32 B
+     * hashes, is rejected before anything is written.
+     */
+    private void appendTree(MerkleTree merkleTree) {
+        var levels = merkleTree.levels();
+        var header = ByteBuffer.allocate(PIECE_PREFIX_LENGTH);
+        putName(header, levels.getHashingAlgo().name());
+        header.put((byte) levels.getHashWidth());
+        header.putInt(merkleTree.pieceCount());
+        header.putInt(merkleTree.pieceSize());
+        header.put((byte) (levels.height() + 1));
+        var parts = new ByteBuffer[levels.height() + 2];
+        for (var level = 0; level <= levels.height(); level++) {
+            header.putInt(levels.width(level));
+            parts[level + 1] = levels.level(level);
+        }
+        parts[0] = header.flip();
+        if (header.remaining() + levels.sizeInBytes() > SegmentLog.MAX_PAYLOAD_LENGTH)
+            throw new IllegalArgumentException("Merkle tree of <%d> pieces does not fit a disk record of <%d> bytes, use a larger piece size"
+                    .formatted(merkleTree.pieceCount(), SegmentLog.MAX_PAYLOAD_LENGTH));
+        // pieces have to be durable before the tree referencing them
+        sync();
+        append(TREE_RECORD, parts);
+    }
+
+    @Override
+    public Map<MerkleHash, FileMetadata> getAvailableFiles() {
+        return MERKLE_DB.entrySet().stream()
+                .collect(toMap(Map.Entry::getKey, entry -> new FileMetadata(entry.getValue().pieceCount(), entry.getValue().pieceSize())));
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    /**
+     * Piece content stays on disk, only the trees and the piece index are on heap.
+     */
+    @Override
+    public RepositoryStatistics getStatistics() {
+        var treeHeapBytes = 0L;
+        for (var merkleTree : MERKLE_DB.values()) {
+            treeHeapBytes += merkleTree.levels().sizeInBytes();
+        }
+        var pieces = PIECES_INDEX.size();
+        return new RepositoryStatistics(MERKLE_DB.size(), pieces, treeHeapBytes, (long) pieces * PIECE_INDEX_ENTRY_BYTES);
+    }
+
+    @Override
+    public DedupStatistics getDedupStatistics() {
+        var files = new HashMap<MerkleHash, Deduplication>();
+        MERKLE_DB.forEach((hash, merkleTree) -> {
+            var logicalBytes = 0L;
+            var uniqueBytes = 0L;
+            var storedBytes = 0L;
+            for (var counted : PieceReferences.count(merkleTree.pieceHashes()).entrySet()) {
+                var stored = PIECES_INDEX.get(counted.getKey());
+                if (stored != null) {
+                    logicalBytes += (long) stored.contentLength() * counted.getValue();
+                    uniqueBytes += stored.references().storedShare(stored.contentLength(), counted.getValue());
+                    storedBytes += stored.references().storedShare(stored.storedLength(), counted.getValue());
+                }
+            }
+            files.put(hash, new Deduplication(logicalBytes, uniqueBytes, storedBytes));
+        });
+        var logicalBytes = 0L;
+        var uniqueBytes = 0L;
+        var storedBytes = 0L;
+        for (var stored : PIECES_INDEX.values()) {
+            if (stored.references().references() > 0) {
+                logicalBytes += (long) stored.contentLength() * stored.references().references();
+                uniqueBytes += stored.contentLength();
+                storedBytes += stored.storedLength();
+            }
+        }
+        return new DedupStatistics(new Deduplication(logicalBytes, uniqueBytes, storedBytes), files);
+    }
+
+    @Override
+    public Optional<MerkleTree> getMerkleTreeByHash(MerkleHash merkleTreeHash) {
+        return ofNullable(MERKLE_DB.get(merkleTreeHash));
+    }
+
+    @Override
+    public Optional<List<PieceHash>> getPieceHashByMerkleHash(MerkleHash merkleRootHash) {
+        return ofNullable(MERKLE_DB.get(merkleRootHash)).map(MerkleTree::pieceHashes);
+    }
+
+    @Override
+    public Optional<MerkleEncoded> getPieceContentByPieceHash(PieceHash pieceHash) {
+        return ofNullable(PIECES_INDEX.get(pieceHash.merkleHash())).map(this::readPiece);
+    }
+
+    private MerkleEncoded readPiece(StoredPiece storedPiece) {
+        try {
+            var payload = log.read(storedPiece.location()).position(storedPiece.contentOffset());
+            if (storedPiece.codec() == PieceCodec.NONE) {
+                return new MerkleEncoded(storedPiece.encodingAlgo(), payload);
+            }
+            return new MerkleEncoded(storedPiece.encodingAlgo(), storedPiece.codec().decode(payload, storedPiece.contentLength()));
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public Optional<PieceLocation> getPieceLocation(MerkleHash merkleRootHash, int pieceIndex) {
+        return ofNullable(MERKLE_DB.get(merkleRootHash))
+                .filter(merkleTree -> pieceIndex >= 0 && pieceIndex < merkleTree.pieceCount())
+                .map(merkleTree -> merkleTree.pieceHashes().get(pieceIndex))
+                .map(pieceHash -> PIECES_INDEX.get(pieceHash.merkleHash()))
+                .filter(storedPiece -> storedPiece.codec() == PieceCodec.NONE)
+                .map(storedPiece -> new PieceLocation(log.segmentPath(storedPiece.location()),
+                        SegmentLog.payloadPosition(storedPiece.location()) + storedPiece.contentOffset(),
+                        storedPiece.contentLength()));
+    }
+
+    @Override
+    public Optional<MerkleHash> getMerkleHashBySource(FileSource source) {
+        var path = source.path().toAbsolutePath().normalize();
+        return ofNullable(SOURCES_DB.get(path))
+                .filter(stored -> stored.pieceSize() == source.pieceSize())
+                .filter(stored -> Files.isRegularFile(path) && stored.size() == fileSize(path) && stored.lastModified() == lastModified(path))
+                .map(StoredSource::merkleRootHash)
+                .filter(MERKLE_DB::containsKey);
+    }
+
+    /**
+     * Pieces stored concurrently with closing may be both in the checkpoint and in the replayed log, which is harmless.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        var end = log.end();
+        log.sync();
+        CheckpointFile.write(checkpoint, output -> writeCheckpoint(output, end));
+        log.close();
+    }
+
+    private void writeCheckpoint(DataOutputStream output, SegmentLog.Position end) throws IOException {
+        output.writeInt(end.segment());
+        output.writeLong(end.position());
+        output.writeInt(PIECES_INDEX.size());
+        for (var entry : PIECES_INDEX.entrySet()) {
+            var stored = entry.getValue();
+            writeHash(output, entry.getKey());
+            output.writeUTF(stored.encodingAlgo().name());
+            output.writeInt(stored.location().segment());
+            output.writeLong(stored.location().position());
+            output.writeInt(stored.location().payloadLength());
+            output.writeInt(stored.contentOffset());
+            output.writeUTF(stored.codec().name());
+            output.writeInt(stored.contentLength());
+        }
+        output.writeInt(MERKLE_DB.size());
+        for (var merkleTree : MERKLE_DB.values()) {
+            var levels = merkleTree.levels();
+            output.writeUTF(levels.getHashingAlgo().name());
+            output.writeByte(levels.getHashWidth());
+            output.writeInt(merkleTree.pieceCount());
+            output.writeInt(merkleTree.pieceSize());
+            output.writeByte(levels.height() + 1);
+            for (var level = 0; level <= levels.height(); level++) {
+                var levelBytes = levels.level(level);
+                var bytes = new byte[levelBytes.remaining()];
+                levelBytes.duplicate().get(bytes);
+                output.writeInt(levels.width(level));
+                output.write(bytes);
+            }
+        }
+        output.writeInt(SOURCES_DB.size());
+        for (var entry : SOURCES_DB.entrySet()) {
+            var source = entry.getValue();
+            output.writeUTF(entry.getKey().toString());
+            output.writeInt(source.pieceSize());
+            output.writeLong(source.size());
+            output.writeLong(source.lastModified());
+            writeHash(output, source.merkleRootHash());
+        }
+    }
+
+    private static void writeHash(DataOutputStream output, MerkleHash merkleHash) throws IOException {
+        output.writeUTF(merkleHash.getHashingAlgo().name());
+        output.writeByte(merkleHash.getHash().length);
+        output.write(merkleHash.getHash());
+    }
+
+    private static MerkleHash readHash(DataInputStream input) throws IOException {
+        var hashingAlgo = HashingAlgo.valueOf(input.readUTF());
+        var hash = new byte[input.readUnsignedByte()];
+        input.readFully(hash);
+        return MerkleHash.rawHash(hash, hashingAlgo);
+    }
+
+    private SegmentLog.Location append(byte type, ByteBuffer... payloadParts) {
+        try {
+            return log.append(type, payloadParts);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private void sync() {
+        try {
+            log.sync();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static long fileSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static ByteBuffer writeSource(Path path, StoredSource source) {
+        var pathBytes = path.toString().getBytes(UTF_8);
+        var root = source.merkleRootHash();
+        var buffer = ByteBuffer.allocate(PIECE_PREFIX_LENGTH + pathBytes.length);
+        buffer.putInt(source.pieceSize());
+        buffer.putLong(source.size());
+        buffer.putLong(source.lastModified());
+        putName(buffer, root.getHashingAlgo().name());
+        putBytes(buffer, root.getHash());
+        buffer.putInt(pathBytes.length);
+        buffer.put(pathBytes);
+        return buffer.flip();
+    }
+
+    private static ByteBuffer writeHash(MerkleHash merkleHash) {
+        var buffer = ByteBuffer.allocate(PIECE_PREFIX_LENGTH);
+        putName(buffer, merkleHash.getHashingAlgo().name());
+        putBytes(buffer, merkleHash.getHash());
+        return buffer.flip();
+    }
+
+    private static ByteBuffer writeHashes(List<MerkleHash> merkleHashes) {
+        var length = Integer.BYTES;
+        for (var merkleHash : merkleHashes) {
+            length += 2 + merkleHash.getHashingAlgo().name().length() + merkleHash.getHash().length;
+        }
+        var buffer = ByteBuffer.allocate(length);
+        buffer.putInt(merkleHashes.size());
+        merkleHashes.forEach(merkleHash -> {
+            putName(buffer, merkleHash.getHashingAlgo().name());
+            putBytes(buffer, merkleHash.getHash());
+        });
+        return buffer.flip();
+    }
+
+    private static void putName(ByteBuffer buffer, String name) {
+        putBytes(buffer, name.getBytes(UTF_8));
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.put((byte) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getName(ByteBuffer buffer) {
+        return new String(getBytes(buffer), UTF_8);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        var bytes = new byte[Byte.toUnsignedInt(buffer.get())];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Rebuilds in memory state from the checkpoint and the records replayed on open.
+     */
+    private final class RecordLoader implements SegmentLog.RecordConsumer {
+
+        private final Set<MerkleHash> released = new HashSet<>();
+
+        /**
+         * @return position of the first record the checkpoint does not hold, the log start without a usable checkpoint
+         */
+        SegmentLog.Position loadCheckpoint(Path directory, Path checkpoint) throws IOException {
+            var replayFrom = new SegmentLog.Position[]{SegmentLog.Position.START};
+            CheckpointFile.read(checkpoint, input -> {
+                var end = new SegmentLog.Position(input.readInt(), input.readLong());
+                if (SegmentLog.covers(directory, end)) {
+                    loadCheckpoint(input);
+                    replayFrom[0] = end;
+                }
+            });
+            return replayFrom[0];
+        }
+
+        private void loadCheckpoint(DataInputStream input) throws IOException {
+            for (var pieces = input.readInt(); pieces > 0; pieces--) {
+                var hash = readHash(input);
+                var encodingAlgo = EncodingAlgo.valueOf(input.readUTF());
+                var location = new SegmentLog.Location(input.readInt(), input.readLong(), input.readInt());
+                var contentOffset = input.readInt();
+                var pieceCodec = codecs.forName(input.readUTF());
+                var contentLength = input.readInt();
+                PIECES_INDEX.put(hash, new StoredPiece(encodingAlgo, location, contentOffset, pieceCodec, contentLength, PieceReferences.NONE));
+            }
+            for (var trees = input.readInt(); trees > 0; trees--) {
+                var hashingAlgo = HashingAlgo.valueOf(input.readUTF());
+                var hashWidth = input.readUnsignedByte();
+                var pieceCount = input.readInt();
+                var pieceSize = input.readInt();
+                var levels = new ByteBuffer[input.readUnsignedByte()];
+                for (var level = 0; level < levels.length; level++) {
+                    var levelBytes = new byte[input.readInt() * hashWidth];
+                    input.readFully(levelBytes);
+                    levels[level] = ByteBuffer.wrap(levelBytes);
+                }
+                var merkleTree = new MerkleTree(new MerkleLevels(hashingAlgo, hashWidth, levels), pieceCount, pieceSize);
+                MERKLE_DB.put(merkleTree.root().hash(), merkleTree);
+            }
+            for (var sources = input.readInt(); sources > 0; sources--) {
+                var path = Path.of(input.readUTF());
+                var pieceSize = input.readInt();
+                var size = input.readLong();
+                var lastModified = input.readLong();
+                SOURCES_DB.put(path, new StoredSource(pieceSize, size, lastModified, readHash(input)));
+            }
+        }
+
+        @Override
+        public int prefixLength(byte type) {
+            return type == PIECE_RECORD || type == ENCODED_PIECE_RECORD ? PIECE_PREFIX_LENGTH : Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void accept(byte type, SegmentLog.Location location, ByteBuffer payload) {
+            switch (type) {
+                case PIECE_RECORD -> loadPiece(location, payload, false);
+                case ENCODED_PIECE_RECORD -> loadPiece(location, payload, true);
+                case TREE_RECORD -> loadTree(payload);
+                case SOURCE_RECORD -> loadSource(payload);
+                case DELETE_RECORD -> loadDelete(payload);
+                case RELEASE_RECORD -> loadRelease(payload);
+                default -> throw new IllegalStateException("Unknown record type <%d> at <%s>".formatted(type, location));
+            }
+        }
+
+        private void loadPiece(SegmentLog.Location location, ByteBuffer payload, boolean encoded) {
+            var hashingAlgo = HashingAlgo.valueOf(getName(payload));
+            var encodingAlgo = EncodingAlgo.valueOf(getName(payload));
+            var hash = MerkleHash.rawHash(getBytes(payload), hashingAlgo);
+            var pieceCodec = encoded ? codecs.forName(getName(payload)) : PieceCodec.NONE;
+            var contentLength = encoded ? payload.getInt() : location.payloadLength() - payload.position();
+            PIECES_INDEX.put(hash, new StoredPiece(encodingAlgo, location, payload.position(), pieceCodec, contentLength, PieceReferences.NONE));
+            released.remove(hash);
+        }
+
+        private void loadTree(ByteBuffer payload) {
+            var hashingAlgo = HashingAlgo.valueOf(getName(payload));
+            var hashWidth = Byte.toUnsignedInt(payload.get());
+            var pieceCount = payload.getInt();
+            var pieceSize = payload.getInt();
+            var levels = new ByteBuffer[Byte.toUnsignedInt(payload.get())];
+            var widths = new int[levels.length];
+            for (var level = 0; level < levels.length; level++) {
+                widths[level] = payload.getInt();
+            }
+            for (var level = 0; level < levels.length; level++) {
+                var levelBytes = new byte[widths[level] * hashWidth];
+                payload.get(levelBytes);
+                levels[level] = ByteBuffer.wrap(levelBytes);
+            }
+            var merkleTree = new MerkleTree(new MerkleLevels(hashingAlgo, hashWidth, levels), pieceCount, pieceSize);
+            MERKLE_DB.put(merkleTree.root().hash(), merkleTree);
+        }
+
+        private void loadDelete(ByteBuffer payload) {
+            var hashingAlgo = HashingAlgo.valueOf(getName(payload));
+            var merkleTree = MERKLE_DB.remove(MerkleHash.rawHash(getBytes(payload), hashingAlgo));
+            if (merkleTree != null) {
+                merkleTree.pieceHashes().forEach(pieceHash -> released.add(pieceHash.merkleHash()));
+            }
+        }
+
+        private void loadRelease(ByteBuffer payload) {
+            for (var hashes = payload.getInt(); hashes > 0; hashes--) {
+                var hashingAlgo = HashingAlgo.valueOf(getName(payload));
+                released.add(MerkleHash.rawHash(getBytes(payload), hashingAlgo));
+            }
+        }
+
+        private void loadSource(ByteBuffer payload) {
+            var pieceSize = payload.getInt();
+            var size = payload.getLong();
+            var lastModified = payload.getLong();
+            var hashingAlgo = HashingAlgo.valueOf(getName(payload));
+            var root = MerkleHash.rawHash(getBytes(payload), hashingAlgo);
+            var pathBytes = new byte[payload.getInt()];
+            payload.get(pathBytes);
+            SOURCES_DB.put(Path.of(new String(pathBytes, UTF_8)), new StoredSource(pieceSize, size, lastModified, root));
+        }
+    }
+
+    /**
+     * Indexed piece, the content after <code>contentOffset</code> is encoded by the codec and decodes to
+     * <code>contentLength</code> bytes.
+     */
+    private record StoredPiece(EncodingAlgo encodingAlgo, SegmentLog.Location location, int contentOffset, PieceCodec codec,
+                               int contentLength, PieceReferences references) {
+        StoredPiece withReferences(PieceReferences references) {
+            return new StoredPiece(encodingAlgo, location, contentOffset, codec, contentLength, references);
+        }
+
+        int storedLength() {
+            return location.payloadLength() - contentOffset;
+        }
+    }
+
+    private record StoredSource(int pieceSize, long size, long lastModified, MerkleHash merkleRootHash) {
+    }
+}
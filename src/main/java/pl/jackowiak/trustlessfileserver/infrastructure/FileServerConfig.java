@@ -1,12 +1,18 @@
 package pl.jackowiak.trustlessfileserver.infrastructure;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.ProofCache;
 import pl.jackowiak.trustlessfileserver.domain.ports.in.ServerFiles;
 import pl.jackowiak.trustlessfileserver.domain.ports.in.StoreFile;
 import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
 
+import java.nio.file.Paths;
+
 /**
  * Spring related configuration.
  */
@@ -14,17 +20,48 @@ import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
 public class FileServerConfig {
 
     @Bean
-    public ServerFiles serverFiles(FileServerRepository fileServerRepository) {
-        return new Facade(fileServerRepository);
+    public ServerFiles serverFiles(FileServerRepository fileServerRepository, ProofCache proofCache, MeterRegistry meterRegistry) {
+        return new MeteredServerFiles(new Facade(new MeteredFileServerRepository(fileServerRepository, meterRegistry), proofCache), meterRegistry);
     }
 
     @Bean
-    public StoreFile storeFile(FileServerRepository fileServerRepository) {
-        return new Facade(fileServerRepository);
+    public StoreFile storeFile(FileServerRepository fileServerRepository, ProofCache proofCache, MeterRegistry meterRegistry) {
+        return new MeteredStoreFile(new Facade(fileServerRepository, proofCache), meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder fileServerMetrics(FileServerRepository fileServerRepository, ProofCache proofCache) {
+        return new FileServerMetrics(fileServerRepository, proofCache);
+    }
+
+    @Bean
+    public FileServerRepository fileServerRepository(@Value("${repository}") String repository,
+                                                     @Value("${repository.directory}") String directory,
+                                                     @Value("${repository.segmentBytes}") long segmentBytes,
+                                                     @Value("${repository.heapBytes}") long heapBytes,
+                                                     @Value("${repository.compression}") String compression,
+                                                     @Value("${pieceSize}") int pieceSize,
+                                                     MeterRegistry meterRegistry) {
+        var codecs = new PieceCodecs(pieceCodec(compression), codec -> new MeteredPieceCodec(codec, meterRegistry));
+        return switch (repository) {
+            case "in-memory" -> new InMemoryFileServerRepository(codecs.configured());
+            case "mapped" -> new MappedFileServerRepository();
+            case "disk" -> new DiskFileServerRepository(Paths.get(directory), segmentBytes, codecs);
+            case "tiered" -> new TieredFileServerRepository(new DiskFileServerRepository(Paths.get(directory), segmentBytes, codecs), heapBytes, pieceSize);
+            default -> throw new IllegalArgumentException("Unknown repository type <%s>".formatted(repository));
+        };
+    }
+
+    private static PieceCodec pieceCodec(String compression) {
+        return switch (compression) {
+            case "none" -> PieceCodec.NONE;
+            case "deflate" -> new DeflatePieceCodec(DeflatePieceCodec.DEFAULT_LEVEL);
+            default -> throw new IllegalArgumentException("Unknown compression <%s>".formatted(compression));
+        };
     }
 
     @Bean
-    public FileServerRepository fileServerRepository() {
-        return new InMemoryFileServerRepository();
+    public ProofCache proofCache(@Value("${proofCache.maxBytes}") long maxBytes) {
+        return new ProofCache(maxBytes);
     }
 }
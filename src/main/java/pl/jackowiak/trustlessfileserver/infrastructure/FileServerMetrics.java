@@ -0,0 +1,87 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import pl.jackowiak.trustlessfileserver.domain.ProofCache;
+import pl.jackowiak.trustlessfileserver.domain.model.RepositoryStatistics;
+import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository size, heap tier and proof cache gauges. Values are read on scrape, nothing is recorded while serving.
+ * Repository statistics scan the whole repository, so the gauges of a scrape share a single scan.
+ */
+final class FileServerMetrics implements MeterBinder {
+
+    /**
+     * Statistics this recent are reused, gauges of the same scrape are read well within it.
+     */
+    private static final long STATISTICS_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final FileServerRepository repository;
+    private final ProofCache proofCache;
+    private RepositoryStatistics statistics;
+    private long statisticsNanos;
+
+    FileServerMetrics(FileServerRepository repository, ProofCache proofCache) {
+        this.repository = repository;
+        this.proofCache = proofCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("trustless.files", this, metrics -> metrics.statistics().files())
+                .register(registry);
+        Gauge.builder("trustless.pieces", this, metrics -> metrics.statistics().pieces())
+                .register(registry);
+        Gauge.builder("trustless.heap", this, metrics -> metrics.statistics().treeHeapBytes())
+                .tag("store", "trees")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("trustless.heap", this, metrics -> metrics.statistics().pieceHeapBytes())
+                .tag("store", "pieces")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("trustless.proof.cache.hits", proofCache, cache -> cache.statistics().hits())
+                .register(registry);
+        FunctionCounter.builder("trustless.proof.cache.misses", proofCache, cache -> cache.statistics().misses())
+                .register(registry);
+        FunctionCounter.builder("trustless.proof.cache.evictions", proofCache, cache -> cache.statistics().evictions())
+                .register(registry);
+        Gauge.builder("trustless.proof.cache.size", proofCache, cache -> cache.statistics().sizeInBytes())
+                .baseUnit("bytes")
+                .register(registry);
+        if (repository instanceof TieredFileServerRepository tiered) {
+            bindTiers(registry, tiered);
+        }
+    }
+
+    private synchronized RepositoryStatistics statistics() {
+        var now = System.nanoTime();
+        if (statistics == null || now - statisticsNanos > STATISTICS_MAX_AGE_NANOS) {
+            statistics = repository.getStatistics();
+            statisticsNanos = now;
+        }
+        return statistics;
+    }
+
+    /**
+     * Piece reads answered by each tier, the heap hit rate is the heap share of both.
+     */
+    private static void bindTiers(MeterRegistry registry, TieredFileServerRepository tiered) {
+        FunctionCounter.builder("trustless.tier.reads", tiered, store -> store.tierStatistics().hits())
+                .tag("tier", "heap")
+                .register(registry);
+        FunctionCounter.builder("trustless.tier.reads", tiered, store -> store.tierStatistics().misses())
+                .tag("tier", "disk")
+                .register(registry);
+        FunctionCounter.builder("trustless.tier.evictions", tiered, store -> store.tierStatistics().evictions())
+                .register(registry);
+        Gauge.builder("trustless.tier.heap.size", tiered, store -> store.tierStatistics().sizeInBytes())
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
@@ -0,0 +1,77 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+
+/**
+ * Fixed size count-min sketch estimating how often each piece was accessed. Counters are to be halved once the recorded
+ * accesses reach ten times the width, so the estimate follows recent popularity instead of all time counts. Halving
+ * walks the whole sketch, so it is left to the owner to run off the reading threads.
+ * Increments are not atomic, accesses lost under contention only make the estimate lower.
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x97cb3127, 0x5f356495, 0xc2b2ae35, 0x27d4eb2f};
+
+    private final int[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedEntries number of entries whose frequency has to be told apart, rounded up to a power of two
+     */
+    FrequencySketch(int expectedEntries) {
+        var width = Integer.highestOneBit(Math.max(64, Math.min(1 << 24, expectedEntries) - 1) * 2);
+        this.counters = new int[width * DEPTH];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    /**
+     * @return whether the sketch is due to be {@link #reset() halved}
+     */
+    boolean increment(MerkleHash merkleHash) {
+        var hash = spread(merkleHash.hashCode());
+        for (var row = 0; row < DEPTH; row++) {
+            counters[index(hash, row)]++;
+        }
+        return ++additions >= sampleSize;
+    }
+
+    int frequency(MerkleHash merkleHash) {
+        var hash = spread(merkleHash.hashCode());
+        var frequency = Integer.MAX_VALUE;
+        for (var row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Halves all counters, when due.
+     */
+    void reset() {
+        if (additions < sampleSize) {
+            return;
+        }
+        additions = 0;
+        for (var i = 0; i < counters.length; i++) {
+            counters[i] >>>= 1;
+        }
+    }
+
+    long sizeInBytes() {
+        return (long) counters.length * Integer.BYTES;
+    }
+
+    private int index(int hash, int row) {
+        var rowHash = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+        return row * (mask + 1) + ((rowHash ^ rowHash >>> 16) & mask);
+    }
+
+    private static int spread(int hash) {
+        var spread = hash * 0x9e3779b9;
+        return spread ^ spread >>> 15;
+    }
+}
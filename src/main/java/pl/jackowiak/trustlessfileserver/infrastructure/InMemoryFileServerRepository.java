@@ -1,48 +1,181 @@
 package pl.jackowiak.trustlessfileserver.infrastructure;
 
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.Deduplication;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
 import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
 import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.RepositoryStatistics;
 import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toMap;
 
 /**
- * The in memory repository implementation. Currently used as default repository.
+ * The in memory repository implementation. Currently used as default repository. Pieces are addressed by their hash,
+ * so a piece listed by several files is kept once, and counted references free it with the last file listing it.
+ * Pieces are kept encoded by the {@link PieceCodec} when it saves space and decoded on every read.
  */
 public class InMemoryFileServerRepository implements FileServerRepository {
 
+    /**
+     * Piece hash with its list slot, see the memory footprint section of the README.
+     */
+    private static final int PIECE_HASH_BYTES = 96;
+    /**
+     * Map entry, key, buffer wrapper, codec and reference count of a stored piece on top of its stored content.
+     */
+    private static final int PIECE_ENTRY_OVERHEAD_BYTES = 246;
+
     private final Map<MerkleHash, List<PieceHash>> MERKLE_DB = new ConcurrentHashMap<>();
 
     private final Map<MerkleHash, MerkleTree> FULL_MERKLE_DB = new ConcurrentHashMap<>();
 
-    private final Map<MerkleHash, MerkleEncoded> PIECES_DB = new ConcurrentHashMap<>();
+    private final Map<MerkleHash, StoredPiece> PIECES_DB = new ConcurrentHashMap<>();
+
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    private final LongAdder pieceContentBytes = new LongAdder();
+
+    private final PieceCodec codec;
+
+    public InMemoryFileServerRepository() {
+        this(PieceCodec.NONE);
+    }
+
+    public InMemoryFileServerRepository(PieceCodec codec) {
+        this.codec = codec;
+    }
 
     @Override
     public PieceHash persistPieces(PersistPiece persistPiece) {
-        PIECES_DB.put(persistPiece.getMerkleHash(), persistPiece.getMerkleEncoded());
-        return new PieceHash(persistPiece.getMerkleHash());
+        var merkleHash = persistPiece.getMerkleHash();
+        // encoding is done outside of the map lock, a piece stored meanwhile by another upload wins
+        var encoded = PIECES_DB.containsKey(merkleHash) ? null : encode(persistPiece.getMerkleEncoded());
+        PIECES_DB.compute(merkleHash, (hash, stored) -> {
+            if (stored == null) {
+                var storedPiece = encoded != null ? encoded : encode(persistPiece.getMerkleEncoded());
+                pieceContentBytes.add(storedPiece.content().getContentLength());
+                return storedPiece;
+            }
+            return stored.withReferences(stored.references().stored());
+        });
+        return new PieceHash(merkleHash);
+    }
+
+    private StoredPiece encode(MerkleEncoded merkleEncoded) {
+        var contentLength = merkleEncoded.getContentLength();
+        return codec.encode(merkleEncoded.getContentBuffer())
+                .map(encoded -> new StoredPiece(new MerkleEncoded(merkleEncoded.getEncodingAlgo(), encoded), codec, contentLength, PieceReferences.NONE.stored()))
+                .orElseGet(() -> new StoredPiece(merkleEncoded, PieceCodec.NONE, contentLength, PieceReferences.NONE.stored()));
     }
 
     @Override
-    public void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes) {
+    public synchronized void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes) {
         var hash = merkleTree.root().hash();
-        MERKLE_DB.put(hash, storedPiecesHashes);
+        var pieceHashes = merkleTree.pieceHashes();
+        if (!MERKLE_DB.containsKey(hash)) {
+            PieceReferences.count(pieceHashes).forEach((pieceHash, count) -> PIECES_DB.computeIfPresent(pieceHash,
+                    (key, stored) -> stored.withReferences(stored.references().referenced(count))));
+        }
+        settle(storedPiecesHashes);
+        MERKLE_DB.put(hash, pieceHashes);
         FULL_MERKLE_DB.put(hash, merkleTree);
+        catalogVersion.incrementAndGet();
     }
 
     @Override
-    public Map<MerkleHash, Integer> getAvailableMerkleTreesWithNumberOfPieces() {
-        return MERKLE_DB.entrySet().stream()
-                .collect(toMap(Map.Entry::getKey, entry -> entry.getValue().size()));
+    public synchronized void releasePieces(List<PieceHash> storedPiecesHashes) {
+        settle(storedPiecesHashes);
+    }
+
+    private void settle(List<PieceHash> storedPiecesHashes) {
+        PieceReferences.count(storedPiecesHashes).forEach((pieceHash, count) -> PIECES_DB.computeIfPresent(pieceHash,
+                (key, stored) -> withReferences(stored, stored.references().settled(count))));
+    }
+
+    private StoredPiece withReferences(StoredPiece stored, PieceReferences references) {
+        if (references.isUnused()) {
+            pieceContentBytes.add(-stored.content().getContentLength());
+            return null;
+        }
+        return stored.withReferences(references);
+    }
+
+    @Override
+    public synchronized boolean deleteMerkleTree(MerkleHash merkleRootHash) {
+        var pieceHashes = MERKLE_DB.remove(merkleRootHash);
+        FULL_MERKLE_DB.remove(merkleRootHash);
+        if (pieceHashes == null) {
+            return false;
+        }
+        PieceReferences.count(pieceHashes).forEach((pieceHash, count) -> PIECES_DB.computeIfPresent(pieceHash,
+                (key, stored) -> withReferences(stored, stored.references().released(count))));
+        catalogVersion.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public Map<MerkleHash, FileMetadata> getAvailableFiles() {
+        return FULL_MERKLE_DB.entrySet().stream()
+                .collect(toMap(Map.Entry::getKey, entry -> new FileMetadata(entry.getValue().pieceCount(), entry.getValue().pieceSize())));
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    @Override
+    public RepositoryStatistics getStatistics() {
+        var treeHeapBytes = 0L;
+        for (var merkleTree : FULL_MERKLE_DB.values()) {
+            treeHeapBytes += merkleTree.levels().sizeInBytes() + (long) merkleTree.pieceCount() * PIECE_HASH_BYTES;
+        }
+        var pieces = PIECES_DB.size();
+        return new RepositoryStatistics(FULL_MERKLE_DB.size(), pieces, treeHeapBytes,
+                pieceContentBytes.sum() + (long) pieces * PIECE_ENTRY_OVERHEAD_BYTES);
+    }
+
+    @Override
+    public DedupStatistics getDedupStatistics() {
+        var files = new HashMap<MerkleHash, Deduplication>();
+        MERKLE_DB.forEach((hash, pieceHashes) -> {
+            var logicalBytes = 0L;
+            var uniqueBytes = 0L;
+            var storedBytes = 0L;
+            for (var counted : PieceReferences.count(pieceHashes).entrySet()) {
+                var stored = PIECES_DB.get(counted.getKey());
+                if (stored != null) {
+                    logicalBytes += (long) stored.contentLength() * counted.getValue();
+                    uniqueBytes += stored.references().storedShare(stored.contentLength(), counted.getValue());
+                    storedBytes += stored.references().storedShare(stored.content().getContentLength(), counted.getValue());
+                }
+            }
+            files.put(hash, new Deduplication(logicalBytes, uniqueBytes, storedBytes));
+        });
+        var logicalBytes = 0L;
+        var uniqueBytes = 0L;
+        var storedBytes = 0L;
+        for (var stored : PIECES_DB.values()) {
+            if (stored.references().references() > 0) {
+                logicalBytes += (long) stored.contentLength() * stored.references().references();
+                uniqueBytes += stored.contentLength();
+                storedBytes += stored.content().getContentLength();
+            }
+        }
+        return new DedupStatistics(new Deduplication(logicalBytes, uniqueBytes, storedBytes), files);
     }
 
     @Override
@@ -57,10 +190,24 @@ public class InMemoryFileServerRepository implements FileServerRepository {
 
     @Override
     public Optional<MerkleEncoded> getPieceContentByPieceHash(PieceHash pieceHash) {
-        return ofNullable(PIECES_DB.get(pieceHash.merkleHash()));
+        return ofNullable(PIECES_DB.get(pieceHash.merkleHash())).map(StoredPiece::decoded);
     }
 
     public void testPersistMerkleTree(MerkleHash hash, List<PieceHash> storedPiecesHashes) {
         MERKLE_DB.put(hash, storedPiecesHashes);
     }
+
+    /**
+     * Piece as stored, content is encoded by the codec and decodes to <code>contentLength</code> bytes.
+     */
+    private record StoredPiece(MerkleEncoded content, PieceCodec codec, int contentLength, PieceReferences references) {
+        StoredPiece withReferences(PieceReferences references) {
+            return new StoredPiece(content, codec, contentLength, references);
+        }
+
+        MerkleEncoded decoded() {
+            return codec == PieceCodec.NONE ? content
+                    : new MerkleEncoded(content.getEncodingAlgo(), codec.decode(content.getContentBuffer(), contentLength));
+        }
+    }
 }
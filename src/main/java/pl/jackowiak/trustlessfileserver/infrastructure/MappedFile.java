@@ -0,0 +1,88 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Read only memory mapping of a file split into pieces. The file is mapped in segments holding whole pieces,
+ * because single mapping cannot exceed {@link Integer#MAX_VALUE} bytes.
+ */
+final class MappedFile {
+
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private final Path path;
+    private final int pieceSize;
+    private final int piecesPerSegment;
+    private final int pieceCount;
+    private final long size;
+    private final MappedByteBuffer[] segments;
+
+    private MappedFile(Path path, int pieceSize, long size, MappedByteBuffer[] segments, int piecesPerSegment) {
+        this.path = path;
+        this.pieceSize = pieceSize;
+        this.size = size;
+        this.segments = segments;
+        this.piecesPerSegment = piecesPerSegment;
+        this.pieceCount = (int) ((size + pieceSize - 1) / pieceSize);
+    }
+
+    static MappedFile map(Path path, int pieceSize) throws IOException {
+        if (pieceSize <= 0 || pieceSize > MAX_SEGMENT_SIZE)
+            throw new IllegalArgumentException("Piece size <%d> is not supported".formatted(pieceSize));
+        var piecesPerSegment = (int) (MAX_SEGMENT_SIZE / pieceSize);
+        var segmentSize = (long) piecesPerSegment * pieceSize;
+        try (var channel = FileChannel.open(path, READ)) {
+            var size = channel.size();
+            var segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+            for (var i = 0; i < segments.length; i++) {
+                var position = i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+            }
+            return new MappedFile(path, pieceSize, size, segments, piecesPerSegment);
+        }
+    }
+
+    /**
+     * Read only view of the piece under given index, no bytes are copied.
+     */
+    ByteBuffer piece(int index) {
+        if (index < 0 || index >= pieceCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        var segment = segments[index / piecesPerSegment];
+        var offset = (index % piecesPerSegment) * pieceSize;
+        var length = (int) Math.min(pieceSize, size - (long) index * pieceSize);
+        return segment.slice(offset, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Region of the file holding the piece under given index.
+     */
+    PieceLocation location(int index) {
+        if (index < 0 || index >= pieceCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        var position = (long) index * pieceSize;
+        return new PieceLocation(path, position, (int) Math.min(pieceSize, size - position));
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int pieceCount() {
+        return pieceCount;
+    }
+
+    long size() {
+        return size;
+    }
+}
@@ -0,0 +1,244 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.Deduplication;
+import pl.jackowiak.trustlessfileserver.domain.model.EncodingAlgo;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+import pl.jackowiak.trustlessfileserver.domain.model.RepositoryStatistics;
+import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Repository serving pieces read from a file directly from its memory mapping, so the content is never kept on heap
+ * and is paged in by the OS on demand. Pieces without source file are kept in memory. Mapped pieces are served by root
+ * hash and index, an index by piece hash is built only once a piece is looked up by its hash.
+ * The source file is expected not to change while being served.
+ */
+public class MappedFileServerRepository implements FileServerRepository {
+
+    /**
+     * Map node, table slot, key and location of an indexed mapped piece.
+     */
+    private static final int PIECE_INDEX_ENTRY_BYTES = 136;
+
+    private final InMemoryFileServerRepository heapRepository = new InMemoryFileServerRepository();
+
+    private final Map<Path, EncodingAlgo> SOURCE_ENCODING_DB = new ConcurrentHashMap<>();
+
+    private final Map<MerkleHash, MappedTree> MAPPED_DB = new ConcurrentHashMap<>();
+
+    private final AtomicLong mappedCatalogVersion = new AtomicLong();
+
+    /**
+     * Mapped pieces by hash as of the catalog version it was built for, <code>null</code> until a lookup by piece hash.
+     */
+    private volatile PieceIndex pieceIndex;
+
+    @Override
+    public PieceHash persistPieces(PersistPiece persistPiece) {
+        return persistPiece.getSource()
+                .map(source -> persistSourcedPiece(persistPiece, source))
+                .orElseGet(() -> heapRepository.persistPieces(persistPiece));
+    }
+
+    private PieceHash persistSourcedPiece(PersistPiece persistPiece, FileSource source) {
+        SOURCE_ENCODING_DB.put(source.path(), persistPiece.getMerkleEncoded().getEncodingAlgo());
+        return new PieceHash(persistPiece.getMerkleHash());
+    }
+
+    @Override
+    public void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes) {
+        heapRepository.persistMerkleTree(merkleTree, storedPiecesHashes);
+    }
+
+    @Override
+    public void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes, FileSource source) {
+        var encodingAlgo = SOURCE_ENCODING_DB.remove(source.path());
+        if (encodingAlgo == null)
+            throw new IllegalArgumentException("No pieces were stored for source file <%s>".formatted(source.path()));
+        var mappedFile = mapFile(source);
+        if (mappedFile.pieceCount() != merkleTree.pieceCount())
+            throw new IllegalArgumentException("Source file <%s> has <%d> pieces, merkle tree was built from <%d>"
+                    .formatted(source.path(), mappedFile.pieceCount(), merkleTree.pieceCount()));
+        MAPPED_DB.put(merkleTree.root().hash(), new MappedTree(merkleTree, mappedFile, encodingAlgo));
+        mappedCatalogVersion.incrementAndGet();
+    }
+
+    /**
+     * Mapping of a deleted file is released by the garbage collector once no response refers to its pieces.
+     */
+    @Override
+    public boolean deleteMerkleTree(MerkleHash merkleRootHash) {
+        var deleted = MAPPED_DB.remove(merkleRootHash);
+        if (deleted != null) {
+            mappedCatalogVersion.incrementAndGet();
+            return true;
+        }
+        return heapRepository.deleteMerkleTree(merkleRootHash);
+    }
+
+    /**
+     * Pieces read from a source file are never pending, only the ones kept on heap are released.
+     */
+    @Override
+    public void releasePieces(List<PieceHash> storedPiecesHashes) {
+        heapRepository.releasePieces(storedPiecesHashes);
+    }
+
+    private static MappedFile mapFile(FileSource source) {
+        try {
+            return MappedFile.map(source.path().toAbsolutePath().normalize(), source.pieceSize());
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not map source file <%s>".formatted(source.path()), exception);
+        }
+    }
+
+    @Override
+    public Map<MerkleHash, FileMetadata> getAvailableFiles() {
+        var available = new HashMap<>(heapRepository.getAvailableFiles());
+        MAPPED_DB.forEach((hash, mappedTree) -> available.put(hash, new FileMetadata(mappedTree.merkleTree().pieceCount(), mappedTree.merkleTree().pieceSize())));
+        return available;
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return mappedCatalogVersion.get() + heapRepository.getCatalogVersion();
+    }
+
+    /**
+     * Mapped content lives in the page cache and piece hashes are read from the tree leafs, only the levels and the
+     * piece index, once built, are on heap.
+     */
+    @Override
+    public RepositoryStatistics getStatistics() {
+        var pieces = 0L;
+        var currentIndex = pieceIndex;
+        var treeHeapBytes = currentIndex == null ? 0L : (long) currentIndex.pieces().size() * PIECE_INDEX_ENTRY_BYTES;
+        for (var mappedTree : MAPPED_DB.values()) {
+            pieces += mappedTree.merkleTree().pieceCount();
+            treeHeapBytes += mappedTree.merkleTree().levels().sizeInBytes();
+        }
+        return heapRepository.getStatistics().plus(new RepositoryStatistics(MAPPED_DB.size(), pieces, treeHeapBytes, 0));
+    }
+
+    /**
+     * Mapped files are served from their own source files, each one is stored as a whole.
+     */
+    @Override
+    public DedupStatistics getDedupStatistics() {
+        var files = new HashMap<MerkleHash, Deduplication>();
+        var total = new Deduplication(0, 0, 0);
+        for (var mapped : MAPPED_DB.entrySet()) {
+            var size = mapped.getValue().mappedFile().size();
+            files.put(mapped.getKey(), new Deduplication(size, size, size));
+            total = total.plus(new Deduplication(size, size, size));
+        }
+        return heapRepository.getDedupStatistics().plus(new DedupStatistics(total, files));
+    }
+
+    @Override
+    public Optional<MerkleTree> getMerkleTreeByHash(MerkleHash merkleTreeHash) {
+        return ofNullable(MAPPED_DB.get(merkleTreeHash))
+                .map(MappedTree::merkleTree)
+                .or(() -> heapRepository.getMerkleTreeByHash(merkleTreeHash));
+    }
+
+    @Override
+    public Optional<List<PieceHash>> getPieceHashByMerkleHash(MerkleHash merkleRootHash) {
+        return ofNullable(MAPPED_DB.get(merkleRootHash))
+                .map(mappedTree -> mappedTree.merkleTree().pieceHashes())
+                .or(() -> heapRepository.getPieceHashByMerkleHash(merkleRootHash));
+    }
+
+    @Override
+    public Optional<MerkleEncoded> getPieceContentByPieceHash(PieceHash pieceHash) {
+        var heapContent = heapRepository.getPieceContentByPieceHash(pieceHash);
+        if (heapContent.isPresent()) {
+            return heapContent;
+        }
+        return ofNullable(pieceIndex().pieces().get(pieceHash.merkleHash()))
+                .map(mappedPiece -> mappedPiece.mappedTree().piece(mappedPiece.index()));
+    }
+
+    /**
+     * Builds the index again when mapped files were stored or deleted since. The version is read before the mapped
+     * files, so a file stored while building makes the next lookup build it again.
+     */
+    private PieceIndex pieceIndex() {
+        var version = mappedCatalogVersion.get();
+        var current = pieceIndex;
+        if (current != null && current.version() == version) {
+            return current;
+        }
+        synchronized (this) {
+            current = pieceIndex;
+            if (current != null && current.version() == version) {
+                return current;
+            }
+            var pieces = new HashMap<MerkleHash, MappedPiece>();
+            for (var mappedTree : MAPPED_DB.values()) {
+                var pieceHashes = mappedTree.merkleTree().pieceHashes();
+                for (var index = 0; index < pieceHashes.size(); index++) {
+                    pieces.putIfAbsent(pieceHashes.get(index).merkleHash(), new MappedPiece(mappedTree, index));
+                }
+            }
+            current = new PieceIndex(version, pieces);
+            pieceIndex = current;
+            return current;
+        }
+    }
+
+    @Override
+    public Optional<MerkleEncoded> getPieceContent(MerkleHash merkleRootHash, int pieceIndex) {
+        var mappedTree = MAPPED_DB.get(merkleRootHash);
+        if (mappedTree == null) {
+            return heapRepository.getPieceContent(merkleRootHash, pieceIndex);
+        }
+        if (pieceIndex < 0 || pieceIndex >= mappedTree.merkleTree().pieceCount()) {
+            return Optional.empty();
+        }
+        return Optional.of(mappedTree.piece(pieceIndex));
+    }
+
+    @Override
+    public Optional<PieceLocation> getPieceLocation(MerkleHash merkleRootHash, int pieceIndex) {
+        return ofNullable(MAPPED_DB.get(merkleRootHash))
+                .filter(mappedTree -> pieceIndex >= 0 && pieceIndex < mappedTree.merkleTree().pieceCount())
+                .map(mappedTree -> mappedTree.mappedFile().location(pieceIndex));
+    }
+
+    @Override
+    public boolean isSourceBacked(MerkleHash merkleRootHash) {
+        return MAPPED_DB.containsKey(merkleRootHash);
+    }
+
+    private record MappedTree(MerkleTree merkleTree, MappedFile mappedFile, EncodingAlgo encodingAlgo) {
+        MerkleEncoded piece(int index) {
+            return new MerkleEncoded(encodingAlgo, mappedFile.piece(index));
+        }
+    }
+
+    private record MappedPiece(MappedTree mappedTree, int index) {
+    }
+
+    private record PieceIndex(long version, Map<MerkleHash, MappedPiece> pieces) {
+    }
+}
@@ -0,0 +1,143 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+import pl.jackowiak.trustlessfileserver.domain.model.RepositoryStatistics;
+import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Times repository lookups as <code>trustless.repository.lookup</code>, a lookup finding nothing is a failure. Every
+ * method is delegated, default ones included, so the decorated repository keeps its own implementations.
+ */
+final class MeteredFileServerRepository implements FileServerRepository {
+
+    private static final String LOOKUP = "trustless.repository.lookup";
+
+    private final FileServerRepository delegate;
+    private final OutcomeTimer merkleTree;
+    private final OutcomeTimer pieceHashes;
+    private final OutcomeTimer pieceByHash;
+    private final OutcomeTimer pieceContent;
+    private final OutcomeTimer pieceLocation;
+    private final OutcomeTimer source;
+
+    MeteredFileServerRepository(FileServerRepository delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.merkleTree = OutcomeTimer.register(registry, LOOKUP, "merkle-tree");
+        this.pieceHashes = OutcomeTimer.register(registry, LOOKUP, "piece-hashes");
+        this.pieceByHash = OutcomeTimer.register(registry, LOOKUP, "piece-by-hash");
+        this.pieceContent = OutcomeTimer.register(registry, LOOKUP, "piece-content");
+        this.pieceLocation = OutcomeTimer.register(registry, LOOKUP, "piece-location");
+        this.source = OutcomeTimer.register(registry, LOOKUP, "source");
+    }
+
+    @Override
+    public PieceHash persistPieces(PersistPiece persistPiece) {
+        return delegate.persistPieces(persistPiece);
+    }
+
+    @Override
+    public void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes) {
+        delegate.persistMerkleTree(merkleTree, storedPiecesHashes);
+    }
+
+    @Override
+    public void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes, FileSource source) {
+        delegate.persistMerkleTree(merkleTree, storedPiecesHashes, source);
+    }
+
+    @Override
+    public boolean deleteMerkleTree(MerkleHash merkleRootHash) {
+        return delegate.deleteMerkleTree(merkleRootHash);
+    }
+
+    @Override
+    public void releasePieces(List<PieceHash> storedPiecesHashes) {
+        delegate.releasePieces(storedPiecesHashes);
+    }
+
+    @Override
+    public Map<MerkleHash, FileMetadata> getAvailableFiles() {
+        return delegate.getAvailableFiles();
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return delegate.getCatalogVersion();
+    }
+
+    @Override
+    public RepositoryStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
+    @Override
+    public DedupStatistics getDedupStatistics() {
+        return delegate.getDedupStatistics();
+    }
+
+    @Override
+    public Optional<MerkleTree> getMerkleTreeByHash(MerkleHash merkleTreeHash) {
+        var start = System.nanoTime();
+        var result = delegate.getMerkleTreeByHash(merkleTreeHash);
+        merkleTree.record(result.isPresent(), start);
+        return result;
+    }
+
+    @Override
+    public Optional<List<PieceHash>> getPieceHashByMerkleHash(MerkleHash merkleRootHash) {
+        var start = System.nanoTime();
+        var result = delegate.getPieceHashByMerkleHash(merkleRootHash);
+        pieceHashes.record(result.isPresent(), start);
+        return result;
+    }
+
+    @Override
+    public Optional<MerkleEncoded> getPieceContentByPieceHash(PieceHash pieceHash) {
+        var start = System.nanoTime();
+        var result = delegate.getPieceContentByPieceHash(pieceHash);
+        pieceByHash.record(result.isPresent(), start);
+        return result;
+    }
+
+    @Override
+    public Optional<MerkleHash> getMerkleHashBySource(FileSource fileSource) {
+        var start = System.nanoTime();
+        var result = delegate.getMerkleHashBySource(fileSource);
+        source.record(result.isPresent(), start);
+        return result;
+    }
+
+    @Override
+    public Optional<MerkleEncoded> getPieceContent(MerkleHash merkleRootHash, int pieceIndex) {
+        var start = System.nanoTime();
+        var result = delegate.getPieceContent(merkleRootHash, pieceIndex);
+        pieceContent.record(result.isPresent(), start);
+        return result;
+    }
+
+    @Override
+    public Optional<PieceLocation> getPieceLocation(MerkleHash merkleRootHash, int pieceIndex) {
+        var start = System.nanoTime();
+        var result = delegate.getPieceLocation(merkleRootHash, pieceIndex);
+        pieceLocation.record(result.isPresent(), start);
+        return result;
+    }
+
+    @Override
+    public boolean isSourceBacked(MerkleHash merkleRootHash) {
+        return delegate.isSourceBacked(merkleRootHash);
+    }
+}
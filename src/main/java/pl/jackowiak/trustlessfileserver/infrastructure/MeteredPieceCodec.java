@@ -0,0 +1,46 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Times decoding as <code>trustless.piece.decode</code>, the latency compression adds to each piece read from the
+ * repository. Encoding is part of the already timed piece ingestion.
+ */
+final class MeteredPieceCodec implements PieceCodec {
+
+    private final PieceCodec delegate;
+    private final Timer decode;
+
+    MeteredPieceCodec(PieceCodec delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.decode = Timer.builder("trustless.piece.decode")
+                .tag("codec", delegate.name())
+                .register(registry);
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public Optional<byte[]> encode(ByteBuffer content) {
+        return delegate.encode(content);
+    }
+
+    @Override
+    public ByteBuffer decode(ByteBuffer encoded, int contentLength) {
+        var start = System.nanoTime();
+        try {
+            return delegate.decode(encoded, contentLength);
+        } finally {
+            decode.record(System.nanoTime() - start, NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vavr.control.Either;
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof;
+import pl.jackowiak.trustlessfileserver.domain.model.RawFile;
+import pl.jackowiak.trustlessfileserver.domain.model.RawPiece;
+import pl.jackowiak.trustlessfileserver.domain.ports.in.ServerFiles;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Times proofs served by the domain as <code>trustless.proof</code>, cache hits included. Raw files are looked up
+ * lazily, their timer covers the lookup only, the transfer is part of the endpoint latency.
+ */
+final class MeteredServerFiles implements ServerFiles {
+
+    private final ServerFiles delegate;
+    private final OutcomeTimer piece;
+    private final OutcomeTimer range;
+    private final OutcomeTimer rawPiece;
+    private final OutcomeTimer rawFile;
+
+    MeteredServerFiles(ServerFiles delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.piece = OutcomeTimer.register(registry, "trustless.proof", "piece");
+        this.range = OutcomeTimer.register(registry, "trustless.proof", "range");
+        this.rawPiece = OutcomeTimer.register(registry, "trustless.proof", "raw-piece");
+        this.rawFile = OutcomeTimer.register(registry, "trustless.proof", "raw-file");
+    }
+
+    @Override
+    public Map<MerkleHash, FileMetadata> availableFiles() {
+        return delegate.availableFiles();
+    }
+
+    @Override
+    public Optional<FileMetadata> fileMetadata(MerkleHash merkleTreeHash) {
+        return delegate.fileMetadata(merkleTreeHash);
+    }
+
+    @Override
+    public long catalogVersion() {
+        return delegate.catalogVersion();
+    }
+
+    @Override
+    public DedupStatistics dedupStatistics() {
+        return delegate.dedupStatistics();
+    }
+
+    @Override
+    public Either<DomainFailure, PieceProof> getProofForPiece(MerkleHash merkleTreeHash, int pieceIndex) {
+        var start = System.nanoTime();
+        var result = delegate.getProofForPiece(merkleTreeHash, pieceIndex);
+        piece.record(result.isRight(), start);
+        return result;
+    }
+
+    @Override
+    public Either<DomainFailure, PieceRangeProof> getProofForPieceRange(MerkleHash merkleTreeHash, int fromIndex, int toIndex) {
+        var start = System.nanoTime();
+        var result = delegate.getProofForPieceRange(merkleTreeHash, fromIndex, toIndex);
+        range.record(result.isRight(), start);
+        return result;
+    }
+
+    @Override
+    public Either<DomainFailure, RawPiece> getRawPiece(MerkleHash merkleTreeHash, int pieceIndex) {
+        var start = System.nanoTime();
+        var result = delegate.getRawPiece(merkleTreeHash, pieceIndex);
+        rawPiece.record(result.isRight(), start);
+        return result;
+    }
+
+    @Override
+    public Either<DomainFailure, RawFile> getRawFile(MerkleHash merkleTreeHash) {
+        var start = System.nanoTime();
+        var result = delegate.getRawFile(merkleTreeHash);
+        rawFile.record(result.isRight(), start);
+        return result;
+    }
+}
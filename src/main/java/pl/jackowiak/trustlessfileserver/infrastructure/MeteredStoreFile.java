@@ -0,0 +1,94 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.ports.in.StoreFile;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Measures ingestion: <code>trustless.ingest.piece</code> times each stored piece, <code>trustless.ingest.bytes</code>
+ * counts their content, so its rate is the ingest throughput. <code>trustless.tree.build</code> times building and
+ * persisting merkle trees.
+ */
+final class MeteredStoreFile implements StoreFile {
+
+    private final StoreFile delegate;
+    private final Timer pieceTimer;
+    private final Counter pieceBytes;
+    private final Timer storeTimer;
+    private final Timer appendTimer;
+
+    MeteredStoreFile(StoreFile delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.pieceTimer = Timer.builder("trustless.ingest.piece").register(registry);
+        this.pieceBytes = Counter.builder("trustless.ingest.bytes").baseUnit("bytes").register(registry);
+        this.storeTimer = Timer.builder("trustless.tree.build").tag("operation", "store").register(registry);
+        this.appendTimer = Timer.builder("trustless.tree.build").tag("operation", "append").register(registry);
+    }
+
+    @Override
+    public PieceHash persistPiece(PersistPiece piece) {
+        var pieceHash = pieceTimer.record(() -> delegate.persistPiece(piece));
+        pieceBytes.increment(piece.getMerkleEncoded().getContentLength());
+        return pieceHash;
+    }
+
+    @Override
+    public MerkleTree storeAsMerkleTree(List<PieceHash> storedPiecesHashes) {
+        return storeTimer.record(() -> delegate.storeAsMerkleTree(storedPiecesHashes));
+    }
+
+    @Override
+    public MerkleTree storeAsMerkleTree(List<PieceHash> storedPiecesHashes, int pieceSize) {
+        return storeTimer.record(() -> delegate.storeAsMerkleTree(storedPiecesHashes, pieceSize));
+    }
+
+    @Override
+    public MerkleTree storeAsMerkleTree(List<PieceHash> storedPiecesHashes, FileSource source) {
+        return storeTimer.record(() -> delegate.storeAsMerkleTree(storedPiecesHashes, source));
+    }
+
+    @Override
+    public MerkleTree storeAsMerkleTree(MerkleTreeBuilder merkleTreeBuilder) {
+        return storeTimer.record(() -> delegate.storeAsMerkleTree(merkleTreeBuilder));
+    }
+
+    @Override
+    public MerkleTree storeAsMerkleTree(MerkleTreeBuilder merkleTreeBuilder, FileSource source) {
+        return storeTimer.record(() -> delegate.storeAsMerkleTree(merkleTreeBuilder, source));
+    }
+
+    @Override
+    public MerkleTree appendToMerkleTree(MerkleHash merkleRootHash, List<PieceHash> appendedPiecesHashes) {
+        return appendTimer.record(() -> delegate.appendToMerkleTree(merkleRootHash, appendedPiecesHashes));
+    }
+
+    @Override
+    public MerkleTree findAppendableMerkleTree(MerkleHash merkleRootHash) {
+        return delegate.findAppendableMerkleTree(merkleRootHash);
+    }
+
+    @Override
+    public boolean deleteMerkleTree(MerkleHash merkleRootHash) {
+        return delegate.deleteMerkleTree(merkleRootHash);
+    }
+
+    @Override
+    public void releasePieces(List<PieceHash> storedPiecesHashes) {
+        delegate.releasePieces(storedPiecesHashes);
+    }
+
+    @Override
+    public Optional<MerkleTree> findStoredMerkleTree(FileSource source) {
+        return delegate.findStoredMerkleTree(source);
+    }
+}
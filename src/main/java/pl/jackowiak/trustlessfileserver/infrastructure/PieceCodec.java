@@ -0,0 +1,45 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Compression of stored piece content. Pieces are hashed before being encoded, so proofs do not depend on the codec.
+ * A codec is shared by all threads and may keep native state per thread, like {@link DeflatePieceCodec}, so it is
+ * created once per repository, see {@link PieceCodecs}.
+ */
+public interface PieceCodec {
+
+    /**
+     * Stores every piece as it is.
+     */
+    PieceCodec NONE = new PieceCodec() {
+        @Override
+        public String name() {
+            return "none";
+        }
+
+        @Override
+        public Optional<byte[]> encode(ByteBuffer content) {
+            return Optional.empty();
+        }
+
+        @Override
+        public ByteBuffer decode(ByteBuffer encoded, int contentLength) {
+            return encoded;
+        }
+    };
+
+    /**
+     * Name recorded with each encoded piece of a durable repository.
+     */
+    String name();
+
+    /**
+     * Encoded content, empty when encoding does not save enough space to be worth decoding on every read.
+     */
+    Optional<byte[]> encode(ByteBuffer content);
+
+    ByteBuffer decode(ByteBuffer encoded, int contentLength);
+
+}
@@ -0,0 +1,46 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Codecs of a repository by name: the configured one, which encodes stored pieces, and the built in ones, which decode
+ * pieces stored earlier with another configuration. Each codec is created and decorated once, so all pieces of a codec
+ * share its per thread state and its decode timer.
+ */
+public final class PieceCodecs {
+
+    private final PieceCodec configured;
+    private final UnaryOperator<PieceCodec> decorator;
+    private final Map<String, PieceCodec> byName = new ConcurrentHashMap<>();
+
+    /**
+     * @param decorator applied once to each codec but {@link PieceCodec#NONE}, which never decodes anything
+     */
+    public PieceCodecs(PieceCodec configured, UnaryOperator<PieceCodec> decorator) {
+        this.decorator = decorator;
+        this.configured = decorate(configured);
+        byName.put(this.configured.name(), this.configured);
+    }
+
+    public static PieceCodecs of(PieceCodec configured) {
+        return new PieceCodecs(configured, UnaryOperator.identity());
+    }
+
+    public PieceCodec configured() {
+        return configured;
+    }
+
+    PieceCodec forName(String name) {
+        return byName.computeIfAbsent(name, unknown -> decorate(switch (unknown) {
+            case "none" -> PieceCodec.NONE;
+            case "deflate" -> new DeflatePieceCodec(DeflatePieceCodec.DEFAULT_LEVEL);
+            default -> throw new IllegalArgumentException("Unknown piece codec <%s>".formatted(unknown));
+        }));
+    }
+
+    private PieceCodec decorate(PieceCodec codec) {
+        return codec == PieceCodec.NONE ? codec : decorator.apply(codec);
+    }
+}
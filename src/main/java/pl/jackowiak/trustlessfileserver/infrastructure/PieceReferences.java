@@ -0,0 +1,60 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference count of a stored piece. Persisted trees reference the piece once for each time they list it. Each store
+ * of the piece is pending, as the piece may belong to a file still being received, until the upload that stored it
+ * persists its tree or releases it. Stores are settled only by their own upload, so a tree of another upload listing
+ * the piece does not settle them, and a piece is dropped only once it has neither references nor pending stores.
+ */
+record PieceReferences(int references, int pending) {
+
+    static final PieceReferences NONE = new PieceReferences(0, 0);
+
+    PieceReferences stored() {
+        return new PieceReferences(references, pending + 1);
+    }
+
+    /**
+     * Tree listing the piece <code>count</code> times was persisted.
+     */
+    PieceReferences referenced(int count) {
+        return new PieceReferences(references + count, pending);
+    }
+
+    /**
+     * Upload that stored the piece <code>count</code> times persisted its tree or was abandoned.
+     */
+    PieceReferences settled(int count) {
+        return new PieceReferences(references, Math.max(0, pending - count));
+    }
+
+    PieceReferences released(int count) {
+        return new PieceReferences(Math.max(0, references - count), pending);
+    }
+
+    boolean isUnused() {
+        return references == 0 && pending == 0;
+    }
+
+    /**
+     * Share of the piece charged to a file listing it <code>count</code> times, proportional to its references.
+     */
+    long storedShare(int length, int count) {
+        return (long) length * count / Math.max(count, references);
+    }
+
+    static Map<MerkleHash, Integer> count(List<PieceHash> pieceHashes) {
+        var counts = new HashMap<MerkleHash, Integer>();
+        for (var pieceHash : pieceHashes) {
+            counts.merge(pieceHash.merkleHash(), 1, Integer::sum);
+        }
+        return counts;
+    }
+}
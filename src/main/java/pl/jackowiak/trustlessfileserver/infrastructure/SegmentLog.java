@@ -0,0 +1,292 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append only log of checksummed records split into segment files. Each segment starts with its format version (1B)
+ * and each record is written as <code>payload length (4B) | crc32c of type and payload (4B) | type (1B) | payload</code>.
+ * Only the last segment is ever appended to, so only its tail can be torn by a crash. It is fully verified on open and
+ * truncated at the first broken record. Sealed segments are trusted on open and verified on every read instead.
+ * Records before a {@link Position} the owner already holds the state of, see {@link CheckpointFile}, are not replayed.
+ */
+final class SegmentLog implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentLog.class);
+    private static final int HEADER_LENGTH = 9;
+    /**
+     * Largest payload of a single record, its length is stored as an int.
+     */
+    static final long MAX_PAYLOAD_LENGTH = Integer.MAX_VALUE - HEADER_LENGTH;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int SEGMENT_HEADER_LENGTH = 1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final List<FileChannel> segments = new CopyOnWriteArrayList<>();
+    private final List<Path> segmentPaths = new CopyOnWriteArrayList<>();
+    private FileChannel active;
+    private long activeSize;
+
+    record Location(int segment, long position, int payloadLength) {
+    }
+
+    /**
+     * Position within the log, records appended before it precede it.
+     */
+    record Position(int segment, long position) {
+        static final Position START = new Position(0, SEGMENT_HEADER_LENGTH);
+    }
+
+    /**
+     * Receives records found while opening the log. Payloads of records in sealed segments may be limited to
+     * <code>prefixLength</code> bytes when the consumer does not need the whole record.
+     */
+    interface RecordConsumer {
+        int prefixLength(byte type);
+
+        void accept(byte type, Location location, ByteBuffer payload);
+    }
+
+    private SegmentLog(Path directory, long maxSegmentBytes) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    static SegmentLog open(Path directory, long maxSegmentBytes, RecordConsumer consumer) throws IOException {
+        return open(directory, maxSegmentBytes, Position.START, consumer);
+    }
+
+    /**
+     * Opens the log replaying only the records appended from given position on, which has to be {@link #covers covered}.
+     */
+    static SegmentLog open(Path directory, long maxSegmentBytes, Position replayFrom, RecordConsumer consumer) throws IOException {
+        if (maxSegmentBytes <= SEGMENT_HEADER_LENGTH + HEADER_LENGTH)
+            throw new IllegalArgumentException("Segment size <%d> is too small".formatted(maxSegmentBytes));
+        Files.createDirectories(directory);
+        var log = new SegmentLog(directory, maxSegmentBytes);
+        var segmentPaths = segmentPaths(directory);
+        if (!replayFrom.equals(Position.START) && !covers(segmentPaths, replayFrom))
+            throw new IllegalArgumentException("Position <%s> is beyond the log".formatted(replayFrom));
+        for (var i = 0; i < segmentPaths.size(); i++) {
+            var sealed = i < segmentPaths.size() - 1;
+            var path = segmentPaths.get(i);
+            var channel = sealed ? FileChannel.open(path, READ) : FileChannel.open(path, READ, WRITE);
+            log.segments.add(channel);
+            log.segmentPaths.add(path.toAbsolutePath());
+            var validLength = i < replayFrom.segment() ? channel.size() : log.scan(i, channel, sealed,
+                    i == replayFrom.segment() ? replayFrom.position() : SEGMENT_HEADER_LENGTH, consumer);
+            if (!sealed) {
+                log.active = channel;
+                log.activeSize = validLength;
+            }
+        }
+        if (log.active == null) {
+            log.roll();
+        }
+        return log;
+    }
+
+    /**
+     * Whether the log in given directory holds every record appended before given position, so it can be replayed from
+     * there.
+     */
+    static boolean covers(Path directory, Position position) throws IOException {
+        return Files.isDirectory(directory) && covers(segmentPaths(directory), position);
+    }
+
+    private static boolean covers(List<Path> segmentPaths, Position position) throws IOException {
+        return position.segment() < segmentPaths.size()
+                && position.position() >= SEGMENT_HEADER_LENGTH
+                && position.position() <= Files.size(segmentPaths.get(position.segment()));
+    }
+
+    private static List<Path> segmentPaths(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(SegmentLog::isSegment).sorted().toList();
+        }
+    }
+
+    private static boolean isSegment(Path path) {
+        var name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private long scan(int segment, FileChannel channel, boolean sealed, long from, RecordConsumer consumer) throws IOException {
+        var size = channel.size();
+        if (size == 0 && !sealed) {
+            // segment created right before a crash, its format version was never written
+            channel.write(ByteBuffer.wrap(new byte[]{FORMAT_VERSION}), 0);
+            return SEGMENT_HEADER_LENGTH;
+        }
+        var version = ByteBuffer.allocate(SEGMENT_HEADER_LENGTH);
+        readFully(channel, version, 0);
+        if (version.get(0) != FORMAT_VERSION)
+            throw new IllegalStateException("Segment <%d> has unsupported format version <%d>".formatted(segment, version.get(0)));
+        var position = from;
+        var header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (position < size) {
+            var broken = size - position < HEADER_LENGTH;
+            if (!broken) {
+                readFully(channel, header.clear(), position);
+                header.flip();
+                var payloadLength = header.getInt();
+                var crc = header.getInt();
+                var type = header.get();
+                broken = payloadLength < 0 || size - position - HEADER_LENGTH < payloadLength;
+                if (!broken) {
+                    var location = new Location(segment, position, payloadLength);
+                    var readLength = sealed ? Math.min(payloadLength, consumer.prefixLength(type)) : payloadLength;
+                    var payload = ByteBuffer.allocate(readLength);
+                    readFully(channel, payload, position + HEADER_LENGTH);
+                    payload.flip();
+                    broken = readLength == payloadLength && crc != checksum(type, payload);
+                    if (!broken) {
+                        consumer.accept(type, location, payload);
+                        position += HEADER_LENGTH + payloadLength;
+                        continue;
+                    }
+                }
+            }
+            if (sealed)
+                throw new IllegalStateException("Sealed segment <%d> is corrupted at position <%d>".formatted(segment, position));
+            LOG.warn("Truncating torn tail of segment <%d> at position <%d>, <%d> bytes dropped".formatted(segment, position, size - position));
+            channel.truncate(position);
+            channel.force(true);
+            return position;
+        }
+        return position;
+    }
+
+    synchronized Location append(byte type, ByteBuffer... payloadParts) throws IOException {
+        var payloadLength = 0L;
+        for (var part : payloadParts) {
+            payloadLength += part.remaining();
+        }
+        if (payloadLength > MAX_PAYLOAD_LENGTH)
+            throw new IllegalArgumentException("Record of <%d> bytes is too large".formatted(payloadLength));
+        if (activeSize > SEGMENT_HEADER_LENGTH && activeSize + HEADER_LENGTH + payloadLength > maxSegmentBytes) {
+            roll();
+        }
+        var header = ByteBuffer.allocate(HEADER_LENGTH)
+                .putInt((int) payloadLength)
+                .putInt(checksum(type, payloadParts))
+                .put(type)
+                .flip();
+        var position = activeSize;
+        var buffers = new ByteBuffer[payloadParts.length + 1];
+        buffers[0] = header;
+        for (var i = 0; i < payloadParts.length; i++) {
+            buffers[i + 1] = payloadParts[i].duplicate();
+        }
+        active.position(position);
+        var remaining = HEADER_LENGTH + payloadLength;
+        while (remaining > 0) {
+            remaining -= active.write(buffers);
+        }
+        activeSize += HEADER_LENGTH + payloadLength;
+        return new Location(segments.size() - 1, position, (int) payloadLength);
+    }
+
+    /**
+     * Reads and verifies payload of the record under given location.
+     */
+    ByteBuffer read(Location location) throws IOException {
+        var record = ByteBuffer.allocate(HEADER_LENGTH + location.payloadLength());
+        readFully(segments.get(location.segment()), record, location.position());
+        record.flip();
+        var crc = record.getInt(4);
+        var type = record.get(8);
+        var payload = record.position(HEADER_LENGTH).slice();
+        if (crc != checksum(type, payload))
+            throw new IllegalStateException("Record at <%s> is corrupted".formatted(location));
+        return payload;
+    }
+
+    /**
+     * Segment file holding the record under given location, for readers sending the payload without reading it.
+     * Such reads are not verified against the checksum.
+     */
+    Path segmentPath(Location location) {
+        return segmentPaths.get(location.segment());
+    }
+
+    /**
+     * Position of the first payload byte of the record under given location within its segment file.
+     */
+    static long payloadPosition(Location location) {
+        return location.position() + HEADER_LENGTH;
+    }
+
+    /**
+     * Position right after the last appended record.
+     */
+    synchronized Position end() {
+        return new Position(segments.size() - 1, activeSize);
+    }
+
+    /**
+     * Flushes appended records to the disk.
+     */
+    synchronized void sync() throws IOException {
+        active.force(false);
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.force(true);
+        }
+        var path = directory.resolve("%s%06d%s".formatted(SEGMENT_PREFIX, segments.size(), SEGMENT_SUFFIX));
+        active = FileChannel.open(path, CREATE, READ, WRITE);
+        active.write(ByteBuffer.wrap(new byte[]{FORMAT_VERSION}), 0);
+        activeSize = SEGMENT_HEADER_LENGTH;
+        segmentPaths.add(path.toAbsolutePath());
+        segments.add(active);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.force(true);
+        for (var segment : segments) {
+            segment.close();
+        }
+    }
+
+    private static int checksum(byte type, ByteBuffer... payloadParts) {
+        var crc = new CRC32C();
+        crc.update(type);
+        for (var part : payloadParts) {
+            crc.update(part.duplicate());
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            var read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new EOFException("Unexpected end of segment at position <%d>".formatted(position + buffer.position()));
+        }
+    }
+}
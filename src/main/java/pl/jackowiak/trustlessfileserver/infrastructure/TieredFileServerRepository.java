@@ -0,0 +1,303 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import pl.jackowiak.trustlessfileserver.domain.model.CacheStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.DedupStatistics;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+import pl.jackowiak.trustlessfileserver.domain.model.RepositoryStatistics;
+import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Heap budgeted repository keeping the most accessed pieces on heap in front of a spill repository on disk. Pieces are
+ * written through to the spill repository when stored, so evicting a piece only drops it from the heap tier and
+ * never writes anything. Pieces read from disk are admitted to the heap tier while it has room, once it is full only
+ * when accessed more often than the pieces kept by the last eviction, so a single pass over a large file does not
+ * flush the hot pieces. Access frequencies are estimated by {@link FrequencySketch}, which is counted in the budget.
+ * Eviction of the least accessed pieces in batches and halving of the sketch run on a single maintenance thread, so
+ * neither readers nor writers pay for them. A piece that does not fit is not admitted until eviction made room, so the
+ * budget is never exceeded. Trees, the piece index and raw piece locations are served by the spill repository.
+ */
+public class TieredFileServerRepository implements FileServerRepository, Closeable {
+
+    /**
+     * Map entry, key and buffer wrapper of a piece on heap on top of its content.
+     */
+    private static final int HOT_ENTRY_OVERHEAD_BYTES = 190;
+    /**
+     * Eviction frees an eighth of the budget at once, so the following admissions do not evict again right away.
+     */
+    private static final int EVICTION_BATCH_DIVISOR = 8;
+
+    private final FileServerRepository spillRepository;
+    private final long maxHeapBytes;
+    /**
+     * Budget left to the pieces once the sketch is counted.
+     */
+    private final long maxPieceBytes;
+    private final Map<MerkleHash, HotPiece> HOT_PIECES = new ConcurrentHashMap<>();
+    private final FrequencySketch frequencies;
+    private final Executor maintenanceExecutor;
+    private final AtomicBoolean maintenanceScheduled = new AtomicBoolean();
+    private final AtomicLong heapBytes = new AtomicLong();
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * Least accessed piece kept by the last eviction, a full heap tier admits only pieces accessed more often.
+     */
+    private volatile MerkleHash admissionVictim;
+
+    /**
+     * @param spillRepository repository receiving every stored piece and tree, usually {@link DiskFileServerRepository}
+     * @param maxHeapBytes    heap budget of the pieces kept on heap, including their entries and the frequency sketch
+     * @param pieceSize       configured piece size, sizes the sketch to the number of pieces fitting in the budget
+     */
+    public TieredFileServerRepository(FileServerRepository spillRepository, long maxHeapBytes, int pieceSize) {
+        this(spillRepository, maxHeapBytes, pieceSize, Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "tiered-repository-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * @param maintenanceExecutor runs eviction and sketch halving, a single task at a time
+     */
+    TieredFileServerRepository(FileServerRepository spillRepository, long maxHeapBytes, int pieceSize, Executor maintenanceExecutor) {
+        if (maxHeapBytes < 0)
+            throw new IllegalArgumentException("Heap budget <%d> cannot be negative".formatted(maxHeapBytes));
+        if (pieceSize <= 0)
+            throw new IllegalArgumentException("Piece size <%d> has to be positive".formatted(pieceSize));
+        this.spillRepository = spillRepository;
+        this.maxHeapBytes = maxHeapBytes;
+        this.frequencies = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxHeapBytes / (pieceSize + HOT_ENTRY_OVERHEAD_BYTES)));
+        this.maxPieceBytes = Math.max(0, maxHeapBytes - frequencies.sizeInBytes());
+        this.maintenanceExecutor = maintenanceExecutor;
+    }
+
+    @Override
+    public PieceHash persistPieces(PersistPiece persistPiece) {
+        return spillRepository.persistPieces(persistPiece);
+    }
+
+    @Override
+    public void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes) {
+        spillRepository.persistMerkleTree(merkleTree, storedPiecesHashes);
+    }
+
+    @Override
+    public void persistMerkleTree(MerkleTree merkleTree, List<PieceHash> storedPiecesHashes, FileSource source) {
+        spillRepository.persistMerkleTree(merkleTree, storedPiecesHashes, source);
+    }
+
+    /**
+     * Pieces of the deleted tree are dropped from heap, the ones still listed by other trees are read again from disk.
+     */
+    @Override
+    public boolean deleteMerkleTree(MerkleHash merkleRootHash) {
+        var pieceHashes = spillRepository.getPieceHashByMerkleHash(merkleRootHash);
+        var deleted = spillRepository.deleteMerkleTree(merkleRootHash);
+        if (deleted) {
+            pieceHashes.ifPresent(hashes -> hashes.forEach(pieceHash -> drop(pieceHash.merkleHash())));
+        }
+        return deleted;
+    }
+
+    @Override
+    public void releasePieces(List<PieceHash> storedPiecesHashes) {
+        spillRepository.releasePieces(storedPiecesHashes);
+        storedPiecesHashes.forEach(pieceHash -> drop(pieceHash.merkleHash()));
+    }
+
+    @Override
+    public Map<MerkleHash, FileMetadata> getAvailableFiles() {
+        return spillRepository.getAvailableFiles();
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return spillRepository.getCatalogVersion();
+    }
+
+    /**
+     * Statistics of the spill repository with the pieces kept on heap and the sketch added to its piece heap.
+     */
+    @Override
+    public RepositoryStatistics getStatistics() {
+        return spillRepository.getStatistics().plus(new RepositoryStatistics(0, 0, 0, tierHeapBytes()));
+    }
+
+    @Override
+    public DedupStatistics getDedupStatistics() {
+        return spillRepository.getDedupStatistics();
+    }
+
+    /**
+     * Reads of the heap tier, as hits, and of the disk tier, as misses, with evictions and the heap tier size.
+     */
+    public CacheStatistics tierStatistics() {
+        return new CacheStatistics(heapHits.sum(), diskHits.sum(), evictions.sum(), HOT_PIECES.size(), tierHeapBytes(), maxHeapBytes);
+    }
+
+    private long tierHeapBytes() {
+        return heapBytes.get() + frequencies.sizeInBytes();
+    }
+
+    @Override
+    public Optional<MerkleTree> getMerkleTreeByHash(MerkleHash merkleTreeHash) {
+        return spillRepository.getMerkleTreeByHash(merkleTreeHash);
+    }
+
+    @Override
+    public Optional<List<PieceHash>> getPieceHashByMerkleHash(MerkleHash merkleRootHash) {
+        return spillRepository.getPieceHashByMerkleHash(merkleRootHash);
+    }
+
+    @Override
+    public Optional<MerkleEncoded> getPieceContentByPieceHash(PieceHash pieceHash) {
+        var merkleHash = pieceHash.merkleHash();
+        if (frequencies.increment(merkleHash)) {
+            scheduleMaintenance();
+        }
+        var hotPiece = HOT_PIECES.get(merkleHash);
+        if (hotPiece != null) {
+            heapHits.increment();
+            return Optional.of(hotPiece.content());
+        }
+        var content = spillRepository.getPieceContentByPieceHash(pieceHash);
+        content.ifPresent(merkleEncoded -> {
+            diskHits.increment();
+            admit(merkleHash, merkleEncoded);
+        });
+        return content;
+    }
+
+    /**
+     * Raw pieces are sent from the spill files, the heap tier is not involved.
+     */
+    @Override
+    public Optional<PieceLocation> getPieceLocation(MerkleHash merkleRootHash, int pieceIndex) {
+        return spillRepository.getPieceLocation(merkleRootHash, pieceIndex);
+    }
+
+    @Override
+    public Optional<MerkleHash> getMerkleHashBySource(FileSource source) {
+        return spillRepository.getMerkleHashBySource(source);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (maintenanceExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+        if (spillRepository instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * A piece not fitting in the budget is left out, it only makes eviction run when accessed more often than the
+     * pieces kept by the last eviction, and is admitted on a later read once there is room.
+     */
+    private void admit(MerkleHash merkleHash, MerkleEncoded merkleEncoded) {
+        var weight = HotPiece.weigh(merkleEncoded);
+        if (weight > maxPieceBytes / EVICTION_BATCH_DIVISOR) {
+            return;
+        }
+        if (heapBytes.get() + weight > maxPieceBytes) {
+            var victim = admissionVictim;
+            if (victim == null || frequencies.frequency(merkleHash) > frequencies.frequency(victim)) {
+                scheduleMaintenance();
+            }
+            return;
+        }
+        // content read from disk may be a view of a larger record, the heap tier keeps an exact copy
+        var hotPiece = new HotPiece(new MerkleEncoded(merkleEncoded.getEncodingAlgo(), merkleEncoded.getContent()));
+        if (heapBytes.addAndGet(weight) > maxPieceBytes) {
+            // pieces admitted concurrently took the room meanwhile
+            heapBytes.addAndGet(-weight);
+        } else if (HOT_PIECES.putIfAbsent(merkleHash, hotPiece) != null) {
+            heapBytes.addAndGet(-weight);
+        }
+    }
+
+    private void scheduleMaintenance() {
+        if (maintenanceScheduled.compareAndSet(false, true)) {
+            try {
+                maintenanceExecutor.execute(this::maintain);
+            } catch (RejectedExecutionException closed) {
+                maintenanceScheduled.set(false);
+            }
+        }
+    }
+
+    private void maintain() {
+        maintenanceScheduled.set(false);
+        frequencies.reset();
+        evict();
+    }
+
+    private void drop(MerkleHash merkleHash) {
+        var removed = HOT_PIECES.remove(merkleHash);
+        if (removed != null) {
+            heapBytes.addAndGet(-removed.weight());
+        }
+    }
+
+    /**
+     * Frees an eighth of the budget, runs on the maintenance thread only.
+     */
+    private void evict() {
+        var target = maxPieceBytes - maxPieceBytes / EVICTION_BATCH_DIVISOR;
+        if (heapBytes.get() <= target) {
+            return;
+        }
+        var candidates = new ArrayList<EvictionCandidate>(HOT_PIECES.size());
+        HOT_PIECES.forEach((hash, hotPiece) -> candidates.add(new EvictionCandidate(hash, hotPiece, frequencies.frequency(hash))));
+        candidates.sort(Comparator.comparingInt(EvictionCandidate::frequency));
+        var evicted = 0;
+        while (heapBytes.get() > target && evicted < candidates.size()) {
+            var candidate = candidates.get(evicted++);
+            if (HOT_PIECES.remove(candidate.hash(), candidate.hotPiece())) {
+                heapBytes.addAndGet(-candidate.hotPiece().weight());
+                evictions.increment();
+            }
+        }
+        admissionVictim = evicted < candidates.size() ? candidates.get(evicted).hash() : null;
+    }
+
+    private record HotPiece(MerkleEncoded content) {
+        long weight() {
+            return weigh(content);
+        }
+
+        static long weigh(MerkleEncoded content) {
+            return HOT_ENTRY_OVERHEAD_BYTES + content.getContentLength();
+        }
+    }
+
+    private record EvictionCandidate(MerkleHash hash, HotPiece hotPiece, int frequency) {
+    }
+}
@@ -0,0 +1,78 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.infrastructure.InMemoryFileServerRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheValidatorsTest {
+
+    private static final String ETAG = CacheValidators.pieceETag("AB01", 3, "raw");
+
+    @Test
+    void shouldMatchStrongWeakListedAndWildcardTags() {
+        // GIVEN
+        // WHEN
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(CacheValidators.notModified(List.of(ETAG), ETAG)).isTrue();
+        soft.assertThat(CacheValidators.notModified(List.of("W/" + ETAG), ETAG)).isTrue();
+        soft.assertThat(CacheValidators.notModified(List.of("\"other\", " + ETAG), ETAG)).isTrue();
+        soft.assertThat(CacheValidators.notModified(List.of("\"other\"", ETAG), ETAG)).isTrue();
+        soft.assertThat(CacheValidators.notModified(List.of("*"), ETAG)).isTrue();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldNotMatchOtherOrMissingTags() {
+        // GIVEN
+        // WHEN
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(CacheValidators.notModified(List.of(), ETAG)).isFalse();
+        soft.assertThat(CacheValidators.notModified(List.of("\"other\""), ETAG)).isFalse();
+        soft.assertThat(CacheValidators.notModified(List.of(ETAG.substring(1, ETAG.length() - 1)), ETAG)).isFalse();
+        soft.assertThat(CacheValidators.notModified(List.of(CacheValidators.pieceETag("AB01", 3, "bin")), ETAG)).isFalse();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldTellApartRepresentationsOfSameFile() {
+        // GIVEN
+        // WHEN
+        var raw = CacheValidators.fileETag("AB01", "raw");
+        var proofs = CacheValidators.fileETag("ab01", "proofs");
+
+        //THEN
+        assertThat(raw).isNotEqualTo(proofs);
+        assertThat(CacheValidators.fileETag("AB01", "raw")).isEqualTo(CacheValidators.fileETag("ab01", "raw"));
+    }
+
+    @Test
+    void shouldServeOnlyStoredFilesAndTheirPieces() {
+        // GIVEN
+        var facade = new Facade(new InMemoryFileServerRepository());
+        var pieceHashes = List.of(
+                facade.persistPiece(new PersistPiece("0123".getBytes(), "SHA-256", "BASE_64")),
+                facade.persistPiece(new PersistPiece("4567".getBytes(), "SHA-256", "BASE_64")));
+        var rootHash = facade.storeAsMerkleTree(pieceHashes, 4).root().hash();
+        var missingHash = pieceHashes.get(0).merkleHash();
+
+        // WHEN
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(CacheValidators.served(facade, rootHash)).isTrue();
+        soft.assertThat(CacheValidators.served(facade, rootHash, 0, 1)).isTrue();
+        soft.assertThat(CacheValidators.served(facade, rootHash, 1, 2)).isFalse();
+        soft.assertThat(CacheValidators.served(facade, rootHash, 1, 0)).isFalse();
+        soft.assertThat(CacheValidators.served(facade, rootHash, -1, 0)).isFalse();
+        soft.assertThat(CacheValidators.served(facade, missingHash)).isFalse();
+        soft.assertThat(CacheValidators.served(facade, missingHash, 0, 0)).isFalse();
+        soft.assertAll();
+    }
+}
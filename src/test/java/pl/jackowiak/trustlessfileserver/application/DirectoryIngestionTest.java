@@ -0,0 +1,178 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTree;
+import pl.jackowiak.trustlessfileserver.infrastructure.DiskFileServerRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectoryIngestionTest {
+
+    private static final int PIECE_SIZE = 4;
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    @TempDir
+    Path temporaryDirectory;
+
+    private final List<Path> loaded = new CopyOnWriteArrayList<>();
+    private final Map<Path, String> storedContents = new ConcurrentHashMap<>();
+    private Path directory;
+    private DiskFileServerRepository repository;
+    private Facade facade;
+    private DirectoryIngestion sut;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createDirectories(temporaryDirectory.resolve("watched"));
+        // the disk repository remembers ingested sources, so unchanged files are found without reading them
+        repository = new DiskFileServerRepository(temporaryDirectory.resolve("repository"), 64 * 1024);
+        facade = new Facade(repository);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (sut != null) {
+            sut.close();
+        }
+        repository.close();
+    }
+
+    @Test
+    void shouldIngestOnlyFilesMatchingGlob() throws IOException {
+        // GIVEN
+        write("a.log", "first");
+        write("b.txt", "second");
+        write("logs/c.log", "third");
+        sut = new DirectoryIngestion(directory, "**.log", 2, this::load);
+
+        // WHEN
+        var stored = sut.ingestAll();
+
+        //THEN
+        assertThat(stored).isEqualTo(2);
+        assertThat(loaded).containsExactlyInAnyOrder(directory.resolve("a.log"), directory.resolve("logs/c.log"));
+    }
+
+    @Test
+    void shouldStoreRemainingFilesWhenOneFails() throws IOException {
+        // GIVEN
+        write("a.log", "first");
+        write("b.log", "second");
+        sut = new DirectoryIngestion(directory, "**", 2, path -> {
+            if (path.endsWith("a.log"))
+                throw new IllegalArgumentException("Broken file");
+            return load(path);
+        });
+
+        // WHEN
+        var stored = sut.ingestAll();
+
+        //THEN
+        assertThat(stored).isEqualTo(1);
+        assertThat(storedContents).containsOnlyKeys(directory.resolve("b.log"));
+    }
+
+    @Test
+    void shouldNotStoreUnchangedFilesAgain() throws IOException {
+        // GIVEN
+        write("a.log", "first");
+        write("b.log", "second");
+        sut = new DirectoryIngestion(directory, "**", 2, this::load);
+        sut.ingestAll();
+        var catalogVersion = facade.catalogVersion();
+
+        // WHEN
+        var stored = sut.ingestAll();
+
+        //THEN
+        assertThat(stored).isEqualTo(2);
+        assertThat(loaded).hasSize(4);
+        assertThat(storedContents).hasSize(2);
+        assertThat(facade.catalogVersion()).isEqualTo(catalogVersion);
+    }
+
+    @Test
+    void shouldIngestWatchedFileOnceWhenWritesStop() throws IOException, InterruptedException {
+        // GIVEN
+        sut = new DirectoryIngestion(directory, "**", 1, this::load);
+        sut.watch();
+        var file = write("growing.log", "0");
+
+        // WHEN
+        for (var i = 1; i < 5; i++) {
+            Thread.sleep(QUIET_PERIOD_MILLIS / 5);
+            Files.writeString(file, String.valueOf(i), APPEND);
+        }
+
+        //THEN
+        awaitTrue(() -> !loaded.isEmpty());
+        Thread.sleep(2 * QUIET_PERIOD_MILLIS);
+        assertThat(loaded).containsExactly(file);
+        assertThat(storedContents).containsEntry(file, "01234");
+    }
+
+    @Test
+    void shouldIngestFilesOfDirectoriesCreatedWhileWatching() throws IOException, InterruptedException {
+        // GIVEN
+        sut = new DirectoryIngestion(directory, "**.log", 1, this::load);
+        sut.watch();
+        var nested = write("new/deep/nested.log", "nested");
+        awaitTrue(() -> storedContents.containsKey(nested));
+
+        // WHEN
+        var later = write("new/deep/later.log", "later");
+
+        //THEN
+        awaitTrue(() -> storedContents.containsKey(later));
+        assertThat(storedContents).containsOnlyKeys(nested, later);
+    }
+
+    /**
+     * Stores the file unless already stored, the same way the file loader does.
+     */
+    private MerkleTree load(Path path) {
+        loaded.add(path);
+        var source = new FileSource(path, PIECE_SIZE);
+        return facade.findStoredMerkleTree(source).orElseGet(() -> {
+            try {
+                var merkleTree = facade.storeAsMerkleTree(new PieceIngestion(facade, 1, PIECE_SIZE).ingest(source, "SHA-256", "BASE_64"), source);
+                storedContents.put(path, Files.readString(path));
+                return merkleTree;
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        });
+    }
+
+    private Path write(String relativePath, String content) throws IOException {
+        var file = directory.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("Condition not met in time").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
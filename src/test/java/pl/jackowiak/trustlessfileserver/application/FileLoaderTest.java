@@ -0,0 +1,34 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.infrastructure.InMemoryFileServerRepository;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class FileLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRefuseToWatchDirectoryServedByMappedRepository() {
+        // GIVEN
+        var facade = new Facade(new InMemoryFileServerRepository());
+        var env = new MockEnvironment()
+                .withProperty("repository", "mapped")
+                .withProperty("directory", directory.toString())
+                .withProperty("directory.watch", "true");
+        var sut = new FileLoader(facade, env);
+
+        // WHEN
+        //THEN
+        assertThatIllegalArgumentException().isThrownBy(sut::run);
+        assertThat(facade.availableFiles()).isEmpty();
+    }
+}
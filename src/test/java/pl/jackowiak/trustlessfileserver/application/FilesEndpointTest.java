@@ -0,0 +1,91 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.apache.commons.codec.DecoderException;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import pl.jackowiak.trustlessfileserver.application.model.Hashes;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.infrastructure.InMemoryFileServerRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+
+class FilesEndpointTest {
+
+    private final InMemoryFileServerRepository repository = new InMemoryFileServerRepository();
+    private final Facade facade = new Facade(repository);
+    private final FilesEndpoint sut = new FilesEndpoint(facade, facade, new MockEnvironment());
+
+    @Test
+    void shouldStoreUploadedFileUnderSameRootAsItsPieces() throws IOException {
+        // GIVEN
+        var pieceHashes = Stream.of("0123", "4567", "89")
+                .map(piece -> facade.persistPiece(new PersistPiece(piece.getBytes(), "SHA-256", "BASE_64")))
+                .toList();
+        var expectedRootHash = facade.storeAsMerkleTree(pieceHashes, 4).root().hash().getHexString();
+
+        // WHEN
+        var uploaded = sut.upload(new ByteArrayInputStream("0123456789".getBytes()), 4, null);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(uploaded.getStatusCode()).isEqualTo(CREATED);
+        soft.assertThat(uploaded.getBody()).isEqualTo(new Hashes(expectedRootHash, 3, 4));
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldRejectUploadWhenBodyEmptyOrPieceSizeInvalid() throws IOException {
+        // GIVEN
+        var emptyBody = new ByteArrayInputStream(new byte[0]);
+
+        // WHEN
+        var emptyUpload = sut.upload(emptyBody, null, null);
+        var invalidPieceSizeUpload = sut.upload(new ByteArrayInputStream("0123".getBytes()), 0, null);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(emptyUpload.getStatusCode()).isEqualTo(BAD_REQUEST);
+        soft.assertThat(invalidPieceSizeUpload.getStatusCode()).isEqualTo(BAD_REQUEST);
+        soft.assertThat(repository.getAvailableFiles()).isEmpty();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldRejectAppendWithoutPersistingPiecesWhenLastPieceNotFull() throws IOException, DecoderException {
+        // GIVEN
+        var uploaded = (Hashes) sut.upload(new ByteArrayInputStream("0123456789".getBytes()), 4, null).getBody();
+        var pieces = repository.getStatistics().pieces();
+
+        // WHEN
+        var appended = sut.append(uploaded.hash(), new ByteArrayInputStream("abcdefgh".getBytes()));
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(appended.getStatusCode()).isEqualTo(BAD_REQUEST);
+        soft.assertThat(repository.getStatistics().pieces()).isEqualTo(pieces);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldPublishAppendedFileUnderNewRootWhenLastPieceFull() throws IOException, DecoderException {
+        // GIVEN
+        var uploaded = (Hashes) sut.upload(new ByteArrayInputStream("01234567".getBytes()), 4, null).getBody();
+
+        // WHEN
+        var appended = sut.append(uploaded.hash(), new ByteArrayInputStream("abcdef".getBytes()));
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(appended.getStatusCode()).isEqualTo(CREATED);
+        soft.assertThat(((Hashes) appended.getBody()).pieces()).isEqualTo(4);
+        soft.assertThat(((Hashes) appended.getBody()).hash()).isNotEqualTo(uploaded.hash());
+        soft.assertAll();
+    }
+}
@@ -0,0 +1,128 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.infrastructure.InMemoryFileServerRepository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.google.common.primitives.Bytes.concat;
+import static org.apache.commons.codec.digest.DigestUtils.sha256;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PieceBinaryFormatTest {
+
+    private static final int PIECE_SIZE = 4;
+
+    private final Facade facade = new Facade(new InMemoryFileServerRepository());
+
+    @Test
+    void shouldReadBackPieceAndProofVerifyingAgainstRoot() {
+        // GIVEN
+        var rootHash = storeFile("0123456789abcdefghij");
+        var pieceProof = facade.getProofForPiece(rootHash, 2).get();
+
+        // WHEN
+        var written = PieceBinaryFormat.write(pieceProof, rootHash);
+
+        //THEN
+        var read = Read.from(written);
+        var soft = new SoftAssertions();
+        soft.assertThat(read.version()).isEqualTo(PieceBinaryFormat.VERSION);
+        soft.assertThat(read.hashLength()).isEqualTo(32);
+        soft.assertThat(read.proofs()).hasSize(3);
+        soft.assertThat(read.proofs()).containsExactlyElementsOf(pieceProof.proofs().stream().map(proof -> proof.hash().getHash()).toList());
+        soft.assertThat(read.content()).isEqualTo("89ab".getBytes());
+        soft.assertThat(read.root(2)).isEqualTo(rootHash.getHash());
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldWriteHeaderWithoutProofsForSinglePieceFile() {
+        // GIVEN
+        var rootHash = storeFile("012");
+        var pieceProof = facade.getProofForPiece(rootHash, 0).get();
+
+        // WHEN
+        var written = PieceBinaryFormat.write(pieceProof, rootHash);
+
+        //THEN
+        var read = Read.from(written);
+        var soft = new SoftAssertions();
+        soft.assertThat(written).hasSize(PieceBinaryFormat.HEADER_LENGTH + 3);
+        soft.assertThat(read.hashLength()).isEqualTo(rootHash.getHash().length);
+        soft.assertThat(read.proofs()).isEmpty();
+        soft.assertThat(read.content()).isEqualTo("012".getBytes());
+        soft.assertThat(read.root(0)).isEqualTo(rootHash.getHash());
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldWriteHeaderSentBeforeContentSameAsStartOfWholeMessage() {
+        // GIVEN
+        var rootHash = storeFile("0123456789abcdefghij");
+        var pieceProof = facade.getProofForPiece(rootHash, 4).get();
+
+        // WHEN
+        var header = PieceBinaryFormat.writeHeader(pieceProof, rootHash);
+
+        //THEN
+        var bytes = new byte[header.remaining()];
+        header.get(bytes);
+        var written = PieceBinaryFormat.write(pieceProof, rootHash);
+        assertThat(bytes).isEqualTo(Arrays.copyOf(written, written.length - pieceProof.content().getContentLength()));
+    }
+
+    private MerkleHash storeFile(String content) {
+        var bytes = content.getBytes();
+        var pieceHashes = IntStream.range(0, (bytes.length + PIECE_SIZE - 1) / PIECE_SIZE)
+                .mapToObj(index -> Arrays.copyOfRange(bytes, index * PIECE_SIZE, Math.min(bytes.length, (index + 1) * PIECE_SIZE)))
+                .map(piece -> facade.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")))
+                .toList();
+        return facade.storeAsMerkleTree(pieceHashes, PIECE_SIZE).root().hash();
+    }
+
+    /**
+     * Reads the format the way a client does.
+     */
+    private record Read(byte version, int hashLength, List<byte[]> proofs, byte[] content) {
+
+        static Read from(byte[] written) {
+            var buffer = ByteBuffer.wrap(written);
+            var version = buffer.get();
+            var hashLength = Byte.toUnsignedInt(buffer.get());
+            var proofCount = Short.toUnsignedInt(buffer.getShort());
+            var contentLength = buffer.getInt();
+            var proofs = new ArrayList<byte[]>();
+            for (var i = 0; i < proofCount; i++) {
+                var hash = new byte[hashLength];
+                buffer.get(hash);
+                proofs.add(hash);
+            }
+            var content = new byte[contentLength];
+            buffer.get(content);
+            assertThat(buffer.hasRemaining()).isFalse();
+            return new Read(version, hashLength, proofs, content);
+        }
+
+        /**
+         * Hashes the content up to the root with the proofs, sibling first, the piece index tells the side.
+         */
+        byte[] root(int pieceIndex) {
+            var hash = sha256(content);
+            var index = pieceIndex;
+            for (var proof : proofs) {
+                hash = index % 2 == 0 ? sha256(concat(hash, proof)) : sha256(concat(proof, hash));
+                index /= 2;
+            }
+            return hash;
+        }
+    }
+}
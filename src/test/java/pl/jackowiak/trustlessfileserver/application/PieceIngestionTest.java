@@ -0,0 +1,102 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
+import pl.jackowiak.trustlessfileserver.infrastructure.InMemoryFileServerRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class PieceIngestionTest {
+
+    private static final int PIECE_SIZE = 4;
+    private static final int BLOCK_SIZE = 2 * PIECE_SIZE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldKeepFileOrderOfPiecesWhenBlocksIngestedInParallel() throws IOException {
+        // GIVEN
+        var source = source("file.bin", 41);
+        var facade = new Facade(new InMemoryFileServerRepository());
+        var sequential = new MerkleTreeBuilder(PIECE_SIZE);
+        try (var stream = Files.newInputStream(source.path())) {
+            byte[] piece;
+            while ((piece = stream.readNBytes(PIECE_SIZE)).length > 0) {
+                sequential.add(facade.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+            }
+        }
+        // block size not a multiple of the piece size, so blocks hold two pieces and the last one a shorter piece
+        var sut = new PieceIngestion(facade, 4, BLOCK_SIZE + 1);
+
+        // WHEN
+        var parallel = sut.ingest(source, "SHA-256", "BASE_64");
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(parallel.pieceHashes()).containsExactlyElementsOf(sequential.pieceHashes());
+        soft.assertThat(parallel.build().root().hash()).isEqualTo(sequential.build().root().hash());
+        soft.assertAll();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3})
+    void shouldReleasePersistedPiecesWhenIngestionFailsPartWay(int parallelism) throws IOException {
+        // GIVEN
+        var source = source("file.bin", 10);
+        var repository = new InMemoryFileServerRepository();
+        var sut = new PieceIngestion(new FailingFacade(repository, 7), parallelism, BLOCK_SIZE);
+
+        // WHEN
+        //THEN
+        assertThatIllegalStateException().isThrownBy(() -> sut.ingest(source, "SHA-256", "BASE_64"));
+        assertThat(repository.getStatistics().pieces()).isZero();
+    }
+
+    /**
+     * File of distinct pieces, the last one shorter than the others.
+     */
+    private FileSource source(String name, int pieces) throws IOException {
+        var content = new StringBuilder();
+        for (var i = 0; i < pieces; i++) {
+            content.append("%04d".formatted(i));
+        }
+        content.setLength(content.length() - 1);
+        return new FileSource(Files.writeString(directory.resolve(name), content), PIECE_SIZE);
+    }
+
+    /**
+     * Fails persisting the piece with given ordinal number, e.g. when the repository runs out of space.
+     */
+    private static final class FailingFacade extends Facade {
+        private final AtomicInteger persisted = new AtomicInteger();
+        private final int failingPiece;
+
+        private FailingFacade(FileServerRepository fileServerRepository, int failingPiece) {
+            super(fileServerRepository);
+            this.failingPiece = failingPiece;
+        }
+
+        @Override
+        public PieceHash persistPiece(PersistPiece piece) {
+            if (persisted.incrementAndGet() == failingPiece)
+                throw new IllegalStateException("Piece could not be persisted");
+            return super.persistPiece(piece);
+        }
+    }
+}
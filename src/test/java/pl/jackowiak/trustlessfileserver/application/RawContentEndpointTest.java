@@ -0,0 +1,200 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.apache.commons.codec.DecoderException;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.infrastructure.InMemoryFileServerRepository;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.springframework.http.HttpHeaders.CONTENT_RANGE;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+
+class RawContentEndpointTest {
+
+    private static final int PIECE_SIZE = 4;
+    private static final byte[] CONTENT = "abcdefghijklmnopqrstuvwxyz0123456789ABCD".getBytes(US_ASCII);
+
+    private final Facade facade = new Facade(new InMemoryFileServerRepository());
+    private final RawContentEndpoint sut = new RawContentEndpoint(facade);
+    private MerkleHash rootHash;
+
+    @BeforeEach
+    void setUp() {
+        var pieceHashes = IntStream.range(0, CONTENT.length / PIECE_SIZE)
+                .mapToObj(index -> Arrays.copyOfRange(CONTENT, index * PIECE_SIZE, (index + 1) * PIECE_SIZE))
+                .map(piece -> facade.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")))
+                .toList();
+        rootHash = facade.storeAsMerkleTree(pieceHashes, PIECE_SIZE).root().hash();
+    }
+
+    @Test
+    void shouldServeWholeFileWhenNoRangeRequested() throws DecoderException, IOException {
+        // GIVEN
+        var response = new MockHttpServletResponse();
+
+        // WHEN
+        sut.getFile(rootHash.getHexString(), null, new MockHttpServletRequest(), response);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(response.getStatus()).isEqualTo(200);
+        soft.assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+        soft.assertThat(response.getHeader(ResponseMapper.PIECES_HEADER)).isEqualTo("0-9");
+        soft.assertThat(response.getHeader(ResponseMapper.PROOF_HEADER)).isEqualTo(proofHeader(0, 9));
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldIgnoreInvalidRangeHeader() throws DecoderException, IOException {
+        // GIVEN
+        var response = new MockHttpServletResponse();
+
+        // WHEN
+        sut.getFile(rootHash.getHexString(), "bytes=abc", new MockHttpServletRequest(), response);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(response.getStatus()).isEqualTo(200);
+        soft.assertThat(response.getHeader(CONTENT_RANGE)).isNull();
+        soft.assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldWidenRangeToPieceBoundaries() throws DecoderException, IOException {
+        // GIVEN
+        var response = new MockHttpServletResponse();
+
+        // WHEN
+        sut.getFile(rootHash.getHexString(), "bytes=5-9", new MockHttpServletRequest(), response);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(response.getStatus()).isEqualTo(206);
+        soft.assertThat(response.getHeader(CONTENT_RANGE)).isEqualTo("bytes 4-11/40");
+        soft.assertThat(response.getHeader(ResponseMapper.PIECES_HEADER)).isEqualTo("1-2");
+        soft.assertThat(response.getHeader(ResponseMapper.PROOF_HEADER)).isEqualTo(proofHeader(1, 2));
+        soft.assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(CONTENT, 4, 12));
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldMergeRangesTouchingEachOtherAfterWidening() throws DecoderException, IOException {
+        // GIVEN
+        var response = new MockHttpServletResponse();
+
+        // WHEN
+        sut.getFile(rootHash.getHexString(), "bytes=9-10,0-1,5-6", new MockHttpServletRequest(), response);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(response.getStatus()).isEqualTo(206);
+        soft.assertThat(response.getHeader(CONTENT_RANGE)).isEqualTo("bytes 0-11/40");
+        soft.assertThat(response.getHeader(ResponseMapper.PIECES_HEADER)).isEqualTo("0-2");
+        soft.assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(CONTENT, 0, 12));
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldAnswerRangeNotSatisfiableWhenNoRangeInsideFile() throws DecoderException, IOException {
+        // GIVEN
+        var response = new MockHttpServletResponse();
+
+        // WHEN
+        sut.getFile(rootHash.getHexString(), "bytes=40-50", new MockHttpServletRequest(), response);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(response.getStatus()).isEqualTo(416);
+        soft.assertThat(response.getHeader(CONTENT_RANGE)).isEqualTo("bytes */40");
+        soft.assertThat(response.getContentAsByteArray()).isEmpty();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldSendSeparateRangesAsMultipartWithProofOfEachPart() throws DecoderException, IOException {
+        // GIVEN
+        var response = new MockHttpServletResponse();
+
+        // WHEN
+        sut.getFile(rootHash.getHexString(), "bytes=0-1,20-21", new MockHttpServletRequest(), response);
+
+        //THEN
+        var boundary = response.getContentType().substring(response.getContentType().indexOf("boundary=") + "boundary=".length());
+        var expectedBody = part(boundary, "bytes 0-3/40", "0-0", proofHeader(0, 0), "abcd")
+                + part(boundary, "bytes 20-23/40", "5-5", proofHeader(5, 5), "uvwx")
+                + "\r\n--" + boundary + "--\r\n";
+        var soft = new SoftAssertions();
+        soft.assertThat(response.getStatus()).isEqualTo(206);
+        soft.assertThat(response.getContentType()).startsWith("multipart/byteranges; boundary=");
+        soft.assertThat(response.getContentAsString(US_ASCII)).isEqualTo(expectedBody);
+        soft.assertThat(response.getContentLengthLong()).isEqualTo(expectedBody.length());
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldAnswerNotModifiedOnlyWithETagOfSameRepresentation() throws DecoderException, IOException {
+        // GIVEN
+        var rawResponse = new MockHttpServletResponse();
+        sut.getRawFile(rootHash.getHexString(), new MockHttpServletRequest(), rawResponse);
+        var request = new MockHttpServletRequest();
+        request.addHeader(IF_NONE_MATCH, rawResponse.getHeader(ETAG));
+        var response = new MockHttpServletResponse();
+
+        // WHEN
+        sut.getFile(rootHash.getHexString(), null, request, response);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(response.getStatus()).isEqualTo(200);
+        soft.assertThat(response.getHeader(ETAG)).isNotEqualTo(rawResponse.getHeader(ETAG));
+        soft.assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldAnswerBadRequestInsteadOfNotModifiedWhenFileMissing() throws DecoderException, IOException {
+        // GIVEN
+        var missingHash = facade.persistPiece(new PersistPiece("missing".getBytes(US_ASCII), "SHA-256", "BASE_64")).merkleHash().getHexString();
+        var request = new MockHttpServletRequest();
+        request.addHeader(IF_NONE_MATCH, "*");
+        var fileResponse = new MockHttpServletResponse();
+        var rawFileResponse = new MockHttpServletResponse();
+        var rawPieceResponse = new MockHttpServletResponse();
+        var outOfRangePieceResponse = new MockHttpServletResponse();
+
+        // WHEN
+        sut.getFile(missingHash, null, request, fileResponse);
+        sut.getRawFile(missingHash, request, rawFileResponse);
+        sut.getRawPiece(missingHash, 0, request, rawPieceResponse);
+        sut.getRawPiece(rootHash.getHexString(), 10, request, outOfRangePieceResponse);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(fileResponse.getStatus()).isEqualTo(400);
+        soft.assertThat(rawFileResponse.getStatus()).isEqualTo(400);
+        soft.assertThat(rawPieceResponse.getStatus()).isEqualTo(400);
+        soft.assertThat(outOfRangePieceResponse.getStatus()).isEqualTo(400);
+        soft.assertAll();
+    }
+
+    private String proofHeader(int fromIndex, int toIndex) {
+        return ResponseMapper.mapToProofHeader(facade.getRawFile(rootHash).get().proofs(fromIndex, toIndex));
+    }
+
+    private static String part(String boundary, String contentRange, String pieces, String proof, String content) {
+        return "\r\n--%s\r\nContent-Type: application/octet-stream\r\nContent-Range: %s\r\nX-Merkle-Pieces: %s\r\nX-Merkle-Proof: %s\r\n\r\n%s"
+                .formatted(boundary, contentRange, pieces, proof, content);
+    }
+}
@@ -0,0 +1,138 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceContent;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static pl.jackowiak.trustlessfileserver.domain.model.EncodingAlgo.BASE_64;
+
+class RawContentWriterTest {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.write(directory.resolve("file.bin"), "0123456789abcdef".getBytes(US_ASCII));
+    }
+
+    @Test
+    void shouldHandOverSingleMergedRegionToSendfileWhenSupported() throws IOException {
+        // GIVEN
+        var request = new MockHttpServletRequest();
+        request.setAttribute(SENDFILE_SUPPORTED, Boolean.TRUE);
+        var response = new MockHttpServletResponse();
+        var pieces = List.of(located(4, 4), located(8, 4), located(12, 2));
+
+        // WHEN
+        RawContentWriter.write(request, response, pieces.iterator(), 10);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(request.getAttribute(SENDFILE_FILENAME)).isEqualTo(file.toString());
+        soft.assertThat(request.getAttribute(SENDFILE_START)).isEqualTo(4L);
+        soft.assertThat(request.getAttribute(SENDFILE_END)).isEqualTo(14L);
+        soft.assertThat(response.getContentLengthLong()).isEqualTo(10);
+        soft.assertThat(response.getContentAsByteArray()).isEmpty();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldTransferRegionFromFileWhenSendfileNotSupported() throws IOException {
+        // GIVEN
+        var request = new MockHttpServletRequest();
+        var response = new MockHttpServletResponse();
+        var pieces = List.of(located(4, 4), located(8, 4));
+
+        // WHEN
+        RawContentWriter.write(request, response, pieces.iterator(), 8);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(request.getAttribute(SENDFILE_FILENAME)).isNull();
+        soft.assertThat(response.getContentAsString(US_ASCII)).isEqualTo("456789ab");
+        soft.assertThat(response.getContentLengthLong()).isEqualTo(8);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldWriteSeparateRegionsWithoutSendfile() throws IOException {
+        // GIVEN
+        var request = new MockHttpServletRequest();
+        request.setAttribute(SENDFILE_SUPPORTED, Boolean.TRUE);
+        var response = new MockHttpServletResponse();
+        var pieces = List.of(located(0, 4), located(8, 4), located(12, 4), located(2, 2));
+
+        // WHEN
+        RawContentWriter.write(request, response, pieces.iterator(), 14);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(request.getAttribute(SENDFILE_FILENAME)).isNull();
+        soft.assertThat(response.getContentAsString(US_ASCII)).isEqualTo("012389abcdef23");
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldKeepOrderOfInMemoryAndLocatedPieces() throws IOException {
+        // GIVEN
+        var request = new MockHttpServletRequest();
+        request.setAttribute(SENDFILE_SUPPORTED, Boolean.TRUE);
+        var response = new MockHttpServletResponse();
+        var pieces = List.of(inMemory("ABCD"), located(0, 4), located(4, 4), inMemory("EF"), located(8, 2));
+
+        // WHEN
+        RawContentWriter.write(request, response, pieces.iterator(), 16);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(request.getAttribute(SENDFILE_FILENAME)).isNull();
+        soft.assertThat(response.getContentAsString(US_ASCII)).isEqualTo("ABCD01234567EF89");
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldInterleavePartHeadersWithTheirPieces() throws IOException {
+        // GIVEN
+        var response = new MockHttpServletResponse();
+        var parts = List.of(
+                new RawContentWriter.Part("<h1>".getBytes(US_ASCII), List.of(located(0, 4), located(4, 2)).iterator()),
+                new RawContentWriter.Part("<h2>".getBytes(US_ASCII), List.of(inMemory("XY"), located(10, 2)).iterator()));
+
+        // WHEN
+        RawContentWriter.writeParts(response, parts, "<end>".getBytes(US_ASCII), 23);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(response.getContentAsString(US_ASCII)).isEqualTo("<h1>012345<h2>XYab<end>");
+        soft.assertThat(response.getContentLengthLong()).isEqualTo(23);
+        soft.assertAll();
+    }
+
+    private PieceContent located(long position, int length) {
+        return PieceContent.inFile(new PieceLocation(file, position, length));
+    }
+
+    private static PieceContent inMemory(String content) {
+        return PieceContent.inMemory(new MerkleEncoded(BASE_64, content.getBytes(US_ASCII)));
+    }
+}
@@ -0,0 +1,170 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import pl.jackowiak.trustlessfileserver.application.model.Hashes;
+import pl.jackowiak.trustlessfileserver.application.model.PieceData;
+import pl.jackowiak.trustlessfileserver.application.model.PieceRangeData;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.infrastructure.MappedFileServerRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM;
+
+class ReactiveHashesEndpointTest {
+
+    private static final int PIECE_SIZE = 4;
+
+    @TempDir
+    Path directory;
+
+    private Facade facade;
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        facade = new Facade(new MappedFileServerRepository());
+        var endpoint = new ReactiveHashesEndpoint(facade);
+        webTestClient = WebTestClient.bindToRouterFunction(new ReactiveEndpointConfig().fileServerRoutes(endpoint)).build();
+    }
+
+    @Test
+    void shouldListServedFiles() throws IOException {
+        // GIVEN
+        var rootHash = storeFile("0123456789");
+
+        // WHEN
+        //THEN
+        webTestClient.get().uri("/hashes").exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(ETAG)
+                .expectBodyList(Hashes.class).containsExactly(new Hashes(rootHash.getHexString(), 3, PIECE_SIZE));
+    }
+
+    @Test
+    void shouldServePieceWithProofAsJson() throws IOException {
+        // GIVEN
+        var rootHash = storeFile("0123456789");
+
+        // WHEN
+        var pieceData = webTestClient.get().uri("/piece/{hashId}/{pieceIndex}", rootHash.getHexString(), 1).accept(APPLICATION_JSON).exchange()
+                .expectStatus().isOk()
+                .expectBody(PieceData.class).returnResult().getResponseBody();
+
+        //THEN
+        assertThat(Base64.getDecoder().decode(pieceData.content())).isEqualTo("4567".getBytes());
+        assertThat(pieceData.proofs()).hasSize(2);
+    }
+
+    @Test
+    void shouldWriteBinaryPieceAsProofHeaderFollowedByContent() throws IOException {
+        // GIVEN
+        var rootHash = storeFile("0123456789");
+        var expected = PieceBinaryFormat.write(facade.getProofForPiece(rootHash, 2).get(), rootHash);
+
+        // WHEN
+        //THEN
+        webTestClient.get().uri("/piece/{hashId}/{pieceIndex}", rootHash.getHexString(), 2).accept(APPLICATION_OCTET_STREAM).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_OCTET_STREAM)
+                .expectHeader().contentLength(expected.length)
+                .expectBody(byte[].class).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldAnswerNotModifiedWhenPieceETagMatches() throws IOException {
+        // GIVEN
+        var rootHash = storeFile("0123456789");
+        var etag = webTestClient.get().uri("/piece/{hashId}/{pieceIndex}", rootHash.getHexString(), 0).accept(APPLICATION_OCTET_STREAM).exchange()
+                .expectStatus().isOk()
+                .returnResult(byte[].class).getResponseHeaders().getETag();
+
+        // WHEN
+        //THEN
+        webTestClient.get().uri("/piece/{hashId}/{pieceIndex}", rootHash.getHexString(), 0).accept(APPLICATION_OCTET_STREAM).ifNoneMatch(etag).exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(ETAG, etag)
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void shouldAnswerBadRequestInsteadOfNotModifiedWhenPieceMissing() throws IOException {
+        // GIVEN
+        var rootHash = storeFile("0123456789");
+
+        // WHEN
+        //THEN
+        webTestClient.get().uri("/piece/{hashId}/{pieceIndex}", rootHash.getHexString(), 3).ifNoneMatch("*").exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/piece/{hashId}/{pieceIndex}/raw", rootHash.getHexString(), 3).ifNoneMatch("*").exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/pieces/{hashId}?from=2&to=3", rootHash.getHexString()).ifNoneMatch("*").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void shouldServeRawPieceContentReadFromSourceFile() throws IOException {
+        // GIVEN
+        var rootHash = storeFile("0123456789");
+
+        // WHEN
+        //THEN
+        webTestClient.get().uri("/piece/{hashId}/{pieceIndex}/raw", rootHash.getHexString(), 2).exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(ResponseMapper.PROOF_HEADER)
+                .expectBody(byte[].class).isEqualTo("89".getBytes());
+    }
+
+    @Test
+    void shouldServePieceRange() throws IOException {
+        // GIVEN
+        var rootHash = storeFile("0123456789");
+
+        // WHEN
+        var pieceRangeData = webTestClient.get().uri("/pieces/{hashId}?from=0&to=1", rootHash.getHexString()).exchange()
+                .expectStatus().isOk()
+                .expectBody(PieceRangeData.class).returnResult().getResponseBody();
+
+        //THEN
+        assertThat(pieceRangeData.contents()).hasSize(2);
+        assertThat(Base64.getDecoder().decode(pieceRangeData.contents().get(1))).isEqualTo("4567".getBytes());
+    }
+
+    @Test
+    void shouldAnswerBadRequestWhenHashInvalidOrPieceMissing() throws IOException {
+        // GIVEN
+        var rootHash = storeFile("0123456789");
+
+        // WHEN
+        //THEN
+        webTestClient.get().uri("/piece/{hashId}/{pieceIndex}", "not-a-hash", 0).exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/piece/{hashId}/{pieceIndex}", rootHash.getHexString(), 3).exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private MerkleHash storeFile(String content) throws IOException {
+        var source = new FileSource(Files.write(directory.resolve("file.bin"), content.getBytes()), PIECE_SIZE);
+        var bytes = content.getBytes();
+        var merkleTreeBuilder = new MerkleTreeBuilder(PIECE_SIZE);
+        for (var offset = 0; offset < bytes.length; offset += PIECE_SIZE) {
+            var piece = Arrays.copyOfRange(bytes, offset, Math.min(bytes.length, offset + PIECE_SIZE));
+            merkleTreeBuilder.add(facade.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64", source)));
+        }
+        return facade.storeAsMerkleTree(merkleTreeBuilder, source).root().hash();
+    }
+}
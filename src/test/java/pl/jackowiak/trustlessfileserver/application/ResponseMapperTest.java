@@ -0,0 +1,38 @@
+package pl.jackowiak.trustlessfileserver.application;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.springframework.http.MediaType.parseMediaTypes;
+
+class ResponseMapperTest {
+
+    @Test
+    void shouldPreferBinaryOnlyWhenOctetStreamIsBestAcceptedType() {
+        // GIVEN
+        // WHEN
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(ResponseMapper.prefersBinary(parseMediaTypes("application/octet-stream"))).isTrue();
+        soft.assertThat(ResponseMapper.prefersBinary(parseMediaTypes("application/json;q=0.5, application/octet-stream"))).isTrue();
+        soft.assertThat(ResponseMapper.prefersBinary(parseMediaTypes("text/html, application/octet-stream"))).isTrue();
+        soft.assertThat(ResponseMapper.prefersBinary(parseMediaTypes("application/json"))).isFalse();
+        soft.assertThat(ResponseMapper.prefersBinary(parseMediaTypes("application/octet-stream;q=0.1, application/json"))).isFalse();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldServeJsonWhenClientAcceptsAnything() {
+        // GIVEN
+        // WHEN
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(ResponseMapper.prefersBinary(List.of())).isFalse();
+        soft.assertThat(ResponseMapper.prefersBinary(parseMediaTypes("*/*"))).isFalse();
+        soft.assertThat(ResponseMapper.prefersBinary(parseMediaTypes("application/*"))).isFalse();
+        soft.assertThat(ResponseMapper.prefersBinary(parseMediaTypes("text/html"))).isFalse();
+        soft.assertAll();
+    }
+}
@@ -9,6 +9,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.FileMetadata;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
 import pl.jackowiak.trustlessfileserver.domain.model.MerkleLeaf;
@@ -25,6 +26,7 @@ import java.util.stream.Stream;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.fail;
 import static org.assertj.core.data.Index.atIndex;
 import static org.junit.jupiter.params.provider.Arguments.of;
@@ -32,8 +34,13 @@ import static pl.jackowiak.trustlessfileserver.domain.model.EncodingAlgo.BASE_64
 import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.MERKLE_TREE_NOT_FOUND_REPO;
 import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.PIECE_CONTENT_NOT_FOUND_IN_REPO;
 import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.PIECE_NOT_FOUND_IN_REPO;
+import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.PIECE_RANGE_TOO_LARGE;
+import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.PIECE_RANGE_TOO_MANY_BYTES;
 import static pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo.SHA_256;
+import static pl.jackowiak.trustlessfileserver.domain.model.MerkleTree.DEFAULT_PIECE_SIZE;
 import static pl.jackowiak.trustlessfileserver.domain.model.MerkleUtils.printTree;
+import static pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof.MAX_RANGE_BYTES;
+import static pl.jackowiak.trustlessfileserver.domain.model.PieceRangeProof.MAX_RANGE_SIZE;
 
 class FacadeTest {
 
@@ -211,7 +218,7 @@ class FacadeTest {
         //THEN
         var soft = new SoftAssertions();
         soft.assertThat(availableFiles).hasSize(1);
-        soft.assertThat(availableFiles).hasEntrySatisfying(merkleTree.root().hash(), value -> assertThat(value).isEqualTo(5));
+        soft.assertThat(availableFiles).hasEntrySatisfying(merkleTree.root().hash(), value -> assertThat(value).isEqualTo(new FileMetadata(5, DEFAULT_PIECE_SIZE)));
         soft.assertAll();
     }
 
@@ -308,6 +315,266 @@ class FacadeTest {
         soft.assertAll();
     }
 
+    @Test
+    void shouldReturnProofForRequestedIndexWhenFileContainsDuplicatedPieces() {
+        // GIVEN
+        var duplicatedBytes = List.of(DUMMY_BYTES.get(0), DUMMY_BYTES.get(1), DUMMY_BYTES.get(0), DUMMY_BYTES.get(2));
+        duplicatedBytes.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var duplicatedPieces = duplicatedBytes.stream()
+                .map(bytes -> new PieceHash(new MerkleHash(bytes, SHA_256)))
+                .toList();
+        var merkleTree = sut.storeAsMerkleTree(duplicatedPieces);
+
+        // WHEN
+        var availableFiles = sut.getProofForPiece(merkleTree.root().hash(), 2);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(availableFiles.isRight()).isTrue();
+        soft.assertThat(proofsAsStrings(availableFiles.get())).containsExactly(
+                "eaf44a47d326731e66abd02faf3d705c0b40d69bb2c27ddf73cd569fd6929794",
+                "f40ba93b3e256b4aa516aec3e28564c05a557eb98702eb9c1d4ef1c2073fc360");
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldReturnRangeContentsWithDeduplicatedMultiProofWhenRangeFoundInRepo() throws DecoderException {
+        // GIVEN
+        var expectedRootHashString = "5df5a63d861485d6c4c804a509712e769d88d4c2c8a948e65b83213786c09755";
+        var expectedRootHash = MerkleHash.rawHash(Hex.decodeHex(expectedRootHashString));
+        DUMMY_BYTES.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        sut.storeAsMerkleTree(dummyPieces);
+
+        // WHEN
+        var rangeProof = sut.getProofForPieceRange(expectedRootHash, 1, 3);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(rangeProof.isRight()).isTrue();
+        soft.assertThat(rangeProof.get().contents()).containsExactly(
+                new MerkleEncoded(BASE_64, DUMMY_BYTES.get(1)),
+                new MerkleEncoded(BASE_64, DUMMY_BYTES.get(2)),
+                new MerkleEncoded(BASE_64, DUMMY_BYTES.get(3)));
+        soft.assertThat(rangeProof.get().proofs().stream().map(MerkleTreeElement::hash).map(MerkleHash::getHexString)).containsExactly(
+                "de9222aa8821b29c4f1aab37c97d604ab3f4d2e1f16ed0c897f1e048304a3688",
+                "e2ed7a1cc39fdc95c3210ba97d9deae6c9abcb73cde03f14b1d66115b5930133");
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldReturnDomainFailureWhenRequestedRangeExceedsMaximumRangeSize() throws DecoderException {
+        // GIVEN
+        var expectedRootHashString = "5df5a63d861485d6c4c804a509712e769d88d4c2c8a948e65b83213786c09755";
+        var expectedRootHash = MerkleHash.rawHash(Hex.decodeHex(expectedRootHashString));
+        sut.storeAsMerkleTree(dummyPieces);
+
+        // WHEN
+        var rangeProof = sut.getProofForPieceRange(expectedRootHash, 0, MAX_RANGE_SIZE);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(rangeProof.isLeft()).isTrue();
+        soft.assertThat(rangeProof.getLeft()).isEqualTo(new DomainFailure(PIECE_RANGE_TOO_LARGE.formatted(0, MAX_RANGE_SIZE, MAX_RANGE_SIZE)));
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldReturnDomainFailureWhenRequestedRangeExceedsMaximumRangeBytesForFilePieceSize() throws DecoderException {
+        // GIVEN
+        var expectedRootHashString = "5df5a63d861485d6c4c804a509712e769d88d4c2c8a948e65b83213786c09755";
+        var expectedRootHash = MerkleHash.rawHash(Hex.decodeHex(expectedRootHashString));
+        var pieceSize = MAX_RANGE_BYTES / 2;
+        DUMMY_BYTES.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        sut.storeAsMerkleTree(dummyPieces, pieceSize);
+
+        // WHEN
+        var rangeProof = sut.getProofForPieceRange(expectedRootHash, 0, 2);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(rangeProof.isLeft()).isTrue();
+        soft.assertThat(rangeProof.getLeft()).isEqualTo(new DomainFailure(PIECE_RANGE_TOO_MANY_BYTES.formatted(0, 2, pieceSize, MAX_RANGE_BYTES)));
+        soft.assertThat(sut.getProofForPieceRange(expectedRootHash, 0, 1).isRight()).isTrue();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldPublishFileUnderNewRootAndKeepPreviousRootWhenPiecesAppended() throws DecoderException {
+        // GIVEN
+        var expectedRootHashString = "5df5a63d861485d6c4c804a509712e769d88d4c2c8a948e65b83213786c09755";
+        DUMMY_BYTES.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var pieceSize = DUMMY_BYTES.get(0).length;
+        var previousMerkleTree = sut.storeAsMerkleTree(dummyPieces.subList(0, 3), pieceSize);
+
+        // WHEN
+        var merkleTree = sut.appendToMerkleTree(previousMerkleTree.root().hash(), dummyPieces.subList(3, 5));
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(merkleTree.root().hash()).isEqualTo(MerkleHash.rawHash(Hex.decodeHex(expectedRootHashString)));
+        soft.assertThat(sut.availableFiles()).containsOnly(
+                entry(previousMerkleTree.root().hash(), new FileMetadata(3, pieceSize)),
+                entry(merkleTree.root().hash(), new FileMetadata(5, pieceSize)));
+        soft.assertThat(sut.getProofForPiece(previousMerkleTree.root().hash(), 2).isRight()).isTrue();
+        soft.assertThat(sut.getProofForPiece(merkleTree.root().hash(), 4).isRight()).isTrue();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldThrowIAEWhenAppendingToFileWithLastPieceNotFull() {
+        // GIVEN
+        DUMMY_BYTES.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var merkleTree = sut.storeAsMerkleTree(dummyPieces.subList(0, 3));
+
+        // WHEN
+        //THEN
+        assertThatIllegalArgumentException().isThrownBy(() -> sut.appendToMerkleTree(merkleTree.root().hash(), dummyPieces.subList(3, 5)));
+    }
+
+    @Test
+    void shouldFindAppendableMerkleTreeOnlyWhenLastPieceFull() {
+        // GIVEN
+        DUMMY_BYTES.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var pieceSize = DUMMY_BYTES.get(0).length;
+        var fullMerkleTree = sut.storeAsMerkleTree(dummyPieces.subList(0, 3), pieceSize);
+        var notFullMerkleTree = sut.storeAsMerkleTree(dummyPieces.subList(0, 2));
+
+        // WHEN
+        var appendable = sut.findAppendableMerkleTree(fullMerkleTree.root().hash());
+
+        //THEN
+        assertThat(appendable.root().hash()).isEqualTo(fullMerkleTree.root().hash());
+        assertThatIllegalArgumentException().isThrownBy(() -> sut.findAppendableMerkleTree(notFullMerkleTree.root().hash()));
+    }
+
+    @Test
+    void shouldAlignByteRangeToPiecesAndProveItWithMultiProofWhenRawFileFound() {
+        // GIVEN
+        DUMMY_BYTES.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var merkleTree = sut.storeAsMerkleTree(dummyPieces, 8);
+
+        // WHEN
+        var rawFile = sut.getRawFile(merkleTree.root().hash()).get();
+        var fromIndex = rawFile.pieceAt(10);
+        var toIndex = rawFile.pieceAt(25);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(rawFile.length()).isEqualTo(40);
+        soft.assertThat(fromIndex).isEqualTo(1);
+        soft.assertThat(toIndex).isEqualTo(3);
+        soft.assertThat(rawFile.pieceStart(fromIndex)).isEqualTo(8);
+        soft.assertThat(rawFile.pieceEnd(toIndex)).isEqualTo(32);
+        soft.assertThat(rawFile.proofs(fromIndex, toIndex)).isEqualTo(sut.getProofForPieceRange(merkleTree.root().hash(), 1, 3).get().proofs());
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldChangeCatalogVersionOnlyWhenFileBecomesAvailable() {
+        // GIVEN
+        var initialVersion = sut.catalogVersion();
+        DUMMY_BYTES.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var versionAfterPieces = sut.catalogVersion();
+
+        // WHEN
+        sut.storeAsMerkleTree(dummyPieces);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(versionAfterPieces).isEqualTo(initialVersion);
+        soft.assertThat(sut.catalogVersion()).isGreaterThan(initialVersion);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldReleaseOnlyPiecesNoOtherFileListsWhenFileDeleted() {
+        // GIVEN
+        sut = new Facade(repository, new ProofCache(1024 * 1024));
+        DUMMY_BYTES.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var deletedRoot = sut.storeAsMerkleTree(dummyPieces.subList(0, 3)).root().hash();
+        var keptRoot = sut.storeAsMerkleTree(dummyPieces.subList(2, 5)).root().hash();
+        sut.getProofForPiece(deletedRoot, 0);
+
+        // WHEN
+        var deleted = sut.deleteMerkleTree(deletedRoot);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(deleted).isTrue();
+        soft.assertThat(sut.deleteMerkleTree(deletedRoot)).isFalse();
+        soft.assertThat(sut.availableFiles()).containsOnlyKeys(keptRoot);
+        soft.assertThat(sut.getProofForPiece(deletedRoot, 0).isLeft()).isTrue();
+        soft.assertThat(repository.getPieceContentByPieceHash(dummyPieces.get(0))).isEmpty();
+        soft.assertThat(repository.getPieceContentByPieceHash(dummyPieces.get(1))).isEmpty();
+        soft.assertThat(repository.getPieceContentByPieceHash(dummyPieces.get(2))).isPresent();
+        soft.assertThat(sut.getProofForPiece(keptRoot, 0).get().content().getContent()).isEqualTo(DUMMY_BYTES.get(2));
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldKeepPieceStoredByUploadInProgressWhenFilesListingItAreDeleted() {
+        // GIVEN
+        DUMMY_BYTES.subList(0, 2).forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var storedRoot = sut.storeAsMerkleTree(dummyPieces.subList(0, 2), 8).root().hash();
+        var uploadedPiece = sut.persistPiece(new PersistPiece(DUMMY_BYTES.get(1), "SHA-256", "BASE_64"));
+        var appendedPiece = sut.persistPiece(new PersistPiece(DUMMY_BYTES.get(2), "SHA-256", "BASE_64"));
+        var appendedRoot = sut.appendToMerkleTree(storedRoot, List.of(appendedPiece)).root().hash();
+
+        // WHEN
+        sut.deleteMerkleTree(storedRoot);
+        sut.deleteMerkleTree(appendedRoot);
+
+        //THEN
+        var uploadedRoot = sut.storeAsMerkleTree(List.of(uploadedPiece), 8).root().hash();
+        var soft = new SoftAssertions();
+        soft.assertThat(repository.getPieceContentByPieceHash(dummyPieces.get(0))).isEmpty();
+        soft.assertThat(repository.getPieceContentByPieceHash(dummyPieces.get(2))).isEmpty();
+        soft.assertThat(sut.getProofForPiece(uploadedRoot, 0).get().content().getContent()).isEqualTo(DUMMY_BYTES.get(1));
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldRemoveOnlyPiecesNoFileListsWhenUploadIsReleased() {
+        // GIVEN
+        DUMMY_BYTES.subList(0, 2).forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var storedRoot = sut.storeAsMerkleTree(dummyPieces.subList(0, 2), 8).root().hash();
+        var uploadedPieces = DUMMY_BYTES.subList(1, 4).stream()
+                .map(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")))
+                .toList();
+
+        // WHEN
+        sut.releasePieces(uploadedPieces);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(repository.getPieceContentByPieceHash(dummyPieces.get(1))).isPresent();
+        soft.assertThat(repository.getPieceContentByPieceHash(dummyPieces.get(2))).isEmpty();
+        soft.assertThat(repository.getPieceContentByPieceHash(dummyPieces.get(3))).isEmpty();
+        soft.assertThat(sut.getProofForPiece(storedRoot, 1).get().content().getContent()).isEqualTo(DUMMY_BYTES.get(1));
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldSplitStoredBytesOfSharedPiecesAmongFilesListingThem() {
+        // GIVEN
+        DUMMY_BYTES.forEach(piece -> sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64")));
+        var firstRoot = sut.storeAsMerkleTree(dummyPieces.subList(0, 4)).root().hash();
+        var secondRoot = sut.storeAsMerkleTree(List.of(dummyPieces.get(0), dummyPieces.get(1), dummyPieces.get(2), dummyPieces.get(4))).root().hash();
+
+        // WHEN
+        var dedupStatistics = sut.dedupStatistics();
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(dedupStatistics.total().logicalBytes()).isEqualTo(64);
+        soft.assertThat(dedupStatistics.total().storedBytes()).isEqualTo(40);
+        soft.assertThat(dedupStatistics.total().ratio()).isEqualTo(1.6);
+        soft.assertThat(dedupStatistics.files().get(firstRoot).storedBytes()).isEqualTo(20);
+        soft.assertThat(dedupStatistics.files().get(secondRoot).storedBytes()).isEqualTo(20);
+        soft.assertThat(dedupStatistics.files().get(secondRoot).ratio()).isEqualTo(1.6);
+        soft.assertAll();
+    }
+
     private List<String> proofsAsStrings(PieceProof pieceProof) {
         return pieceProof.proofs().stream()
                 .map(MerkleTreeElement::hash)
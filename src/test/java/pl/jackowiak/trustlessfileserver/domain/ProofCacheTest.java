@@ -0,0 +1,228 @@
+package pl.jackowiak.trustlessfileserver.domain;
+
+import io.vavr.control.Either;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import pl.jackowiak.trustlessfileserver.domain.model.DomainFailure;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleEncoded;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceProof;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static pl.jackowiak.trustlessfileserver.domain.model.EncodingAlgo.BASE_64;
+import static pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo.SHA_256;
+
+class ProofCacheTest {
+
+    private static final MerkleHash ROOT_HASH = new MerkleHash("root".getBytes(), SHA_256);
+    private static final PieceProof PIECE_PROOF = new PieceProof(new MerkleEncoded(BASE_64, new byte[1024]), List.of());
+    /**
+     * Content and entry overhead of the proof, it has no proof elements.
+     */
+    private static final long PIECE_PROOF_WEIGHT = 1024 + 128;
+
+    @Test
+    void shouldCreateProofOnlyOnceWhenSamePieceRequestedAgain() {
+        // GIVEN
+        var sut = new ProofCache(1024 * 1024);
+        var invocations = new AtomicInteger();
+        Supplier<Either<DomainFailure, PieceProof>> proofSupplier = () -> {
+            invocations.incrementAndGet();
+            return Either.right(PIECE_PROOF);
+        };
+
+        // WHEN
+        sut.get(ROOT_HASH, 0, proofSupplier);
+        var proof = sut.get(ROOT_HASH, 0, proofSupplier);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(proof.get()).isEqualTo(PIECE_PROOF);
+        soft.assertThat(invocations).hasValue(1);
+        soft.assertThat(sut.statistics().hits()).isEqualTo(1);
+        soft.assertThat(sut.statistics().misses()).isEqualTo(1);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldNotCacheDomainFailures() {
+        // GIVEN
+        var sut = new ProofCache(1024 * 1024);
+        var invocations = new AtomicInteger();
+        Supplier<Either<DomainFailure, PieceProof>> proofSupplier = () -> {
+            invocations.incrementAndGet();
+            return Either.left(new DomainFailure("failure"));
+        };
+
+        // WHEN
+        sut.get(ROOT_HASH, 0, proofSupplier);
+        sut.get(ROOT_HASH, 0, proofSupplier);
+
+        //THEN
+        assertThat(invocations).hasValue(2);
+    }
+
+    @Test
+    void shouldCreateProofAgainOnlyForInvalidatedRoot() {
+        // GIVEN
+        var sut = new ProofCache(1024 * 1024);
+        var otherRootHash = new MerkleHash("other root".getBytes(), SHA_256);
+        var invocations = new AtomicInteger();
+        Supplier<Either<DomainFailure, PieceProof>> proofSupplier = () -> {
+            invocations.incrementAndGet();
+            return Either.right(PIECE_PROOF);
+        };
+        sut.get(ROOT_HASH, 0, proofSupplier);
+        sut.get(otherRootHash, 0, proofSupplier);
+
+        // WHEN
+        sut.invalidate(ROOT_HASH);
+        sut.get(ROOT_HASH, 0, proofSupplier);
+        sut.get(otherRootHash, 0, proofSupplier);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(invocations).hasValue(3);
+        soft.assertThat(sut.statistics().entries()).isEqualTo(2);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedProofWhenByteBudgetExceeded() {
+        // GIVEN
+        var sut = new ProofCache(3000);
+        var invocations = new AtomicInteger();
+        Supplier<Either<DomainFailure, PieceProof>> proofSupplier = () -> {
+            invocations.incrementAndGet();
+            return Either.right(PIECE_PROOF);
+        };
+        sut.get(ROOT_HASH, 0, proofSupplier);
+        sut.get(ROOT_HASH, 1, proofSupplier);
+
+        // WHEN
+        sut.get(ROOT_HASH, 0, proofSupplier);
+        sut.get(ROOT_HASH, 2, proofSupplier);
+        sut.get(ROOT_HASH, 0, proofSupplier);
+        sut.get(ROOT_HASH, 1, proofSupplier);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(invocations).hasValue(4);
+        soft.assertThat(sut.statistics().evictions()).isEqualTo(2);
+        soft.assertThat(sut.statistics().sizeInBytes()).isLessThanOrEqualTo(3000);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldCoalesceConcurrentMissesForSameKey() throws Exception {
+        // GIVEN
+        var sut = new ProofCache(1024 * 1024);
+        var invocations = new AtomicInteger();
+        var proofStarted = new CountDownLatch(1);
+        var releaseProof = new CountDownLatch(1);
+        Supplier<Either<DomainFailure, PieceProof>> proofSupplier = () -> {
+            invocations.incrementAndGet();
+            proofStarted.countDown();
+            await(releaseProof);
+            return Either.right(PIECE_PROOF);
+        };
+        var executor = Executors.newFixedThreadPool(4);
+
+        // WHEN
+        Future<Either<DomainFailure, PieceProof>> first = executor.submit(() -> sut.get(ROOT_HASH, 0, proofSupplier));
+        await(proofStarted);
+        var others = List.of(
+                executor.submit(() -> sut.get(ROOT_HASH, 0, proofSupplier)),
+                executor.submit(() -> sut.get(ROOT_HASH, 0, proofSupplier)),
+                executor.submit(() -> sut.get(ROOT_HASH, 0, proofSupplier)));
+        releaseProof.countDown();
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(first.get(5, TimeUnit.SECONDS).get()).isEqualTo(PIECE_PROOF);
+        for (var other : others) {
+            soft.assertThat(other.get(5, TimeUnit.SECONDS).get()).isEqualTo(PIECE_PROOF);
+        }
+        soft.assertThat(invocations).hasValue(1);
+        soft.assertAll();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldRethrowExceptionOfProofCreationToCoalescedWaiters() throws Exception {
+        // GIVEN
+        var sut = new ProofCache(1024 * 1024);
+        var failure = new IllegalStateException("proof creation failed");
+        var proofStarted = new CountDownLatch(1);
+        var releaseProof = new CountDownLatch(1);
+        Supplier<Either<DomainFailure, PieceProof>> proofSupplier = () -> {
+            proofStarted.countDown();
+            await(releaseProof);
+            throw failure;
+        };
+        var executor = Executors.newFixedThreadPool(2);
+
+        // WHEN
+        Future<Either<DomainFailure, PieceProof>> first = executor.submit(() -> sut.get(ROOT_HASH, 0, proofSupplier));
+        await(proofStarted);
+        Future<Either<DomainFailure, PieceProof>> waiter = executor.submit(() -> sut.get(ROOT_HASH, 0, proofSupplier));
+        Thread.sleep(100);
+        releaseProof.countDown();
+
+        //THEN
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class).hasCause(failure);
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class).hasCause(failure);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldKeepSizeWithinBudgetWhenAccessedConcurrently() throws Exception {
+        // GIVEN
+        var sut = new ProofCache(8 * PIECE_PROOF_WEIGHT);
+        Supplier<Either<DomainFailure, PieceProof>> proofSupplier = () -> Either.right(PIECE_PROOF);
+        var executor = Executors.newFixedThreadPool(8);
+        var tasks = new ArrayList<Future<?>>();
+
+        // WHEN
+        for (var thread = 0; thread < 8; thread++) {
+            var seed = thread;
+            tasks.add(executor.submit(() -> {
+                for (var i = 0; i < 10_000; i++) {
+                    assertThat(sut.get(ROOT_HASH, (seed * 7 + i * 13) % 32, proofSupplier).get()).isEqualTo(PIECE_PROOF);
+                }
+            }));
+        }
+        for (var task : tasks) {
+            task.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdownNow();
+
+        //THEN
+        var statistics = sut.statistics();
+        var soft = new SoftAssertions();
+        soft.assertThat(statistics.sizeInBytes()).isLessThanOrEqualTo(8 * PIECE_PROOF_WEIGHT);
+        soft.assertThat(statistics.sizeInBytes()).isEqualTo(statistics.entries() * PIECE_PROOF_WEIGHT);
+        soft.assertThat(statistics.hits() + statistics.misses()).isEqualTo(80_000);
+        soft.assertThat(statistics.evictions()).isPositive();
+        soft.assertAll();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
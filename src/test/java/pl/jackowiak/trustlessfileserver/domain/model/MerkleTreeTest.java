@@ -0,0 +1,133 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.google.common.primitives.Bytes.concat;
+import static org.apache.commons.codec.digest.DigestUtils.sha256;
+import static org.assertj.core.api.Assertions.assertThat;
+import static pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo.SHA_256;
+
+class MerkleTreeTest {
+
+    @Test
+    void shouldCreateSameRootAsSequentialBuildWhenLevelsAreHashedInParallel() {
+        // GIVEN
+        var pieceHashes = IntStream.range(0, 20_001)
+                .mapToObj(index -> ByteBuffer.allocate(Integer.BYTES).putInt(index).array())
+                .map(bytes -> new PieceHash(new MerkleHash(bytes, SHA_256)))
+                .toList();
+
+        // WHEN
+        var merkleTree = new MerkleTree(pieceHashes);
+
+        //THEN
+        assertThat(merkleTree.root().hash().getHash()).isEqualTo(sequentialRoot(pieceHashes));
+    }
+
+    @Test
+    void shouldTellStoredLeafHashesApartWhenComparedInPlace() {
+        // GIVEN
+        var pieceHashes = IntStream.range(0, 5)
+                .mapToObj(index -> ByteBuffer.allocate(Integer.BYTES).putInt(index).array())
+                .map(bytes -> new PieceHash(new MerkleHash(bytes, SHA_256)))
+                .toList();
+
+        // WHEN
+        var levels = new MerkleTree(pieceHashes).levels();
+
+        //THEN
+        var soft = new SoftAssertions();
+        for (var index = 0; index < pieceHashes.size(); index++) {
+            var hash = pieceHashes.get(index).merkleHash().getHash();
+            soft.assertThat(levels.hashEquals(0, index, hash)).isTrue();
+            soft.assertThat(levels.hashEquals(0, (index + 1) % pieceHashes.size(), hash)).isFalse();
+            soft.assertThat(levels.hashEquals(0, index, Arrays.copyOf(hash, 20))).isFalse();
+        }
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldCreateSameTreeAsFromWholeListWhenPieceHashesAreAddedIncrementally() {
+        // GIVEN
+        var pieceHashes = IntStream.range(0, 1_025)
+                .mapToObj(index -> ByteBuffer.allocate(Integer.BYTES).putInt(index).array())
+                .map(bytes -> new PieceHash(new MerkleHash(bytes, SHA_256)))
+                .toList();
+        var merkleTreeBuilder = new MerkleTreeBuilder(512);
+
+        // WHEN
+        pieceHashes.forEach(merkleTreeBuilder::add);
+        var merkleTree = merkleTreeBuilder.build();
+
+        //THEN
+        var expected = new MerkleTree(pieceHashes, 512);
+        assertThat(merkleTree.root()).isEqualTo(expected.root());
+        assertThat(merkleTree.pieceHashes()).isEqualTo(pieceHashes);
+        assertThat(merkleTree.pieceSize()).isEqualTo(512);
+    }
+
+    @Test
+    void shouldLeaveBuilderUnchangedWhenTreeBuilt() {
+        // GIVEN
+        var pieceHashes = IntStream.range(0, 7)
+                .mapToObj(index -> ByteBuffer.allocate(Integer.BYTES).putInt(index).array())
+                .map(bytes -> new PieceHash(new MerkleHash(bytes, SHA_256)))
+                .toList();
+        var merkleTreeBuilder = new MerkleTreeBuilder(512);
+        pieceHashes.subList(0, 5).forEach(merkleTreeBuilder::add);
+        var builtFirst = merkleTreeBuilder.build();
+
+        // WHEN
+        var builtAgain = merkleTreeBuilder.build();
+        pieceHashes.subList(5, 7).forEach(merkleTreeBuilder::add);
+        var builtAfterAdding = merkleTreeBuilder.build();
+
+        //THEN
+        assertThat(builtAgain.root()).isEqualTo(builtFirst.root());
+        assertThat(builtFirst.root()).isEqualTo(new MerkleTree(pieceHashes.subList(0, 5), 512).root());
+        assertThat(builtAfterAdding.root()).isEqualTo(new MerkleTree(pieceHashes, 512).root());
+        assertThat(merkleTreeBuilder.pieceHashes()).isEqualTo(pieceHashes);
+    }
+
+    @Test
+    void shouldCreateSameTreeAsFromWholeListWhenPiecesAppendedBeyondFullLevel() {
+        // GIVEN
+        var pieceHashes = IntStream.range(0, 1_030)
+                .mapToObj(index -> ByteBuffer.allocate(Integer.BYTES).putInt(index).array())
+                .map(bytes -> new PieceHash(new MerkleHash(bytes, SHA_256)))
+                .toList();
+        var previousMerkleTree = new MerkleTree(pieceHashes.subList(0, 1_024));
+
+        // WHEN
+        var merkleTree = previousMerkleTree.append(pieceHashes.subList(1_024, 1_030));
+
+        //THEN
+        assertThat(merkleTree.root()).isEqualTo(new MerkleTree(pieceHashes).root());
+        assertThat(merkleTree.pieceHashes()).isEqualTo(pieceHashes);
+        assertThat(previousMerkleTree.pieceCount()).isEqualTo(1_024);
+    }
+
+    private static byte[] sequentialRoot(List<PieceHash> pieceHashes) {
+        var level = new ArrayList<byte[]>();
+        pieceHashes.forEach(pieceHash -> level.add(pieceHash.merkleHash().getHash()));
+        while (Integer.bitCount(level.size()) != 1) {
+            level.add(new byte[32]);
+        }
+        var currentLevel = List.copyOf(level);
+        while (currentLevel.size() > 1) {
+            var nextLevel = new ArrayList<byte[]>();
+            for (var i = 0; i < currentLevel.size(); i += 2) {
+                nextLevel.add(sha256(concat(currentLevel.get(i), currentLevel.get(i + 1))));
+            }
+            currentLevel = nextLevel;
+        }
+        return currentLevel.get(0);
+    }
+}
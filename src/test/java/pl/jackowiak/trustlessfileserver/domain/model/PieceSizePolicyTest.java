@@ -0,0 +1,37 @@
+package pl.jackowiak.trustlessfileserver.domain.model;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.Arguments.of;
+
+class PieceSizePolicyTest {
+
+    private static Stream<Arguments> expectedPieceSizes() {
+        return Stream.of(
+                of(0, 10L << 30, 1024),
+                of(20, 1000L, 1024),
+                of(20, 1L << 30, 1024),
+                of(20, (1L << 30) + 1, 2048),
+                of(20, 10L << 30, 16384),
+                of(1, Long.MAX_VALUE / 2, PieceSizePolicy.MAX_PIECE_SIZE)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("expectedPieceSizes")
+    void shouldPickSmallestPieceSizeKeepingTreeWithinMaximumDepth(int maxTreeDepth, long fileLength, int expectedPieceSize) {
+        // GIVEN
+        var sut = new PieceSizePolicy(1024, maxTreeDepth);
+
+        // WHEN
+        var pieceSize = sut.pieceSizeFor(fileLength);
+
+        //THEN
+        assertThat(pieceSize).isEqualTo(expectedPieceSize);
+    }
+}
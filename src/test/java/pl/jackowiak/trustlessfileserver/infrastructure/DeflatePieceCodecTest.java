@@ -0,0 +1,126 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeflatePieceCodecTest {
+
+    private static final int PIECE_SIZE = 1024;
+    private static final int MAX_ENCODED_LENGTH = PIECE_SIZE - PIECE_SIZE / 8 - 1;
+
+    private final DeflatePieceCodec sut = new DeflatePieceCodec(DeflatePieceCodec.DEFAULT_LEVEL);
+
+    @Test
+    void shouldDecodeEncodedPieceToOriginalContent() {
+        // GIVEN
+        var content = "Number 1 ".repeat(100).getBytes();
+
+        // WHEN
+        var encoded = sut.encode(ByteBuffer.wrap(content));
+
+        //THEN
+        assertThat(encoded).hasValueSatisfying(bytes -> {
+            assertThat(bytes.length).isLessThan(content.length / 2);
+            assertThat(sut.decode(ByteBuffer.wrap(bytes), content.length).array()).isEqualTo(content);
+        });
+    }
+
+    @Test
+    void shouldNotEncodeIncompressiblePiece() {
+        // GIVEN
+        var content = new byte[PIECE_SIZE];
+        new Random(1).nextBytes(content);
+
+        // WHEN
+        var encoded = sut.encode(ByteBuffer.wrap(content));
+
+        //THEN
+        assertThat(encoded).isEmpty();
+    }
+
+    @Test
+    void shouldEncodePieceShrinkingExactlyToLimitButNotOneByteMore() {
+        // GIVEN
+        var atLimit = contentDeflatingTo(MAX_ENCODED_LENGTH);
+        var overLimit = contentDeflatingTo(MAX_ENCODED_LENGTH + 1);
+
+        // WHEN
+        var encodedAtLimit = sut.encode(ByteBuffer.wrap(atLimit));
+        var encodedOverLimit = sut.encode(ByteBuffer.wrap(overLimit));
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(encodedAtLimit).hasValueSatisfying(bytes -> assertThat(bytes).hasSize(MAX_ENCODED_LENGTH));
+        soft.assertThat(encodedOverLimit).isEmpty();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldThrowISEWhenDecodingCorruptedPiece() {
+        // GIVEN
+        var content = "Number 1 ".repeat(100).getBytes();
+        var encoded = sut.encode(ByteBuffer.wrap(content)).orElseThrow();
+        var truncated = Arrays.copyOf(encoded, encoded.length / 2);
+        var garbage = new byte[encoded.length];
+        Arrays.fill(garbage, (byte) 0xff);
+
+        // WHEN
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThatThrownBy(() -> sut.decode(ByteBuffer.wrap(truncated), content.length)).isInstanceOf(IllegalStateException.class);
+        soft.assertThatThrownBy(() -> sut.decode(ByteBuffer.wrap(garbage), content.length)).isInstanceOf(IllegalStateException.class);
+        soft.assertThatThrownBy(() -> sut.decode(ByteBuffer.wrap(encoded), content.length + 1)).isInstanceOf(IllegalStateException.class);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldDecodeAgainAfterCorruptedPiece() {
+        // GIVEN
+        var content = "Number 1 ".repeat(100).getBytes();
+        var encoded = sut.encode(ByteBuffer.wrap(content)).orElseThrow();
+        assertThatThrownBy(() -> sut.decode(ByteBuffer.wrap(Arrays.copyOf(encoded, 3)), content.length));
+
+        // WHEN
+        var decoded = sut.decode(ByteBuffer.wrap(encoded), content.length);
+
+        //THEN
+        assertThat(decoded.array()).isEqualTo(content);
+    }
+
+    /**
+     * Random prefix followed by zeros, the longer the prefix the longer the raw deflate of the piece.
+     */
+    private static byte[] contentDeflatingTo(int encodedLength) {
+        return IntStream.rangeClosed(0, PIECE_SIZE)
+                .mapToObj(randomBytes -> {
+                    var content = new byte[PIECE_SIZE];
+                    new Random(randomBytes).nextBytes(content);
+                    Arrays.fill(content, randomBytes, PIECE_SIZE, (byte) 0);
+                    return content;
+                })
+                .filter(content -> deflatedLength(content) == encodedLength)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static int deflatedLength(byte[] content) {
+        var deflater = new Deflater(DeflatePieceCodec.DEFAULT_LEVEL, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            var encoded = new byte[content.length * 2 + 64];
+            return deflater.deflate(encoded);
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+import pl.jackowiak.trustlessfileserver.domain.ports.out.FileServerRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo.SHA_256;
+
+class DiskFileServerRepositoryTest {
+
+    private static final List<byte[]> DUMMY_BYTES = List.of(
+            "Number 1".getBytes(),
+            "Number 2".getBytes(),
+            "Number 3".getBytes(),
+            "Number 4".getBytes(),
+            "Number 5".getBytes()
+    );
+    private static final long SEGMENT_BYTES = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldServeStoredFileAfterRestartWithoutReadingItAgain() throws IOException {
+        // GIVEN
+        var file = Files.write(directory.resolve("file.bin"), "Number 1Number 2Number 3Number 4Number 5".getBytes());
+        var source = new FileSource(file, 8);
+        MerkleHash rootHash;
+        try (var repository = new DiskFileServerRepository(directory.resolve("data"), SEGMENT_BYTES)) {
+            var sut = new Facade(repository);
+            var pieceHashes = new ArrayList<PieceHash>();
+            DUMMY_BYTES.forEach(bytes -> pieceHashes.add(sut.persistPiece(new PersistPiece(bytes, "SHA-256", "BASE_64", source))));
+            rootHash = sut.storeAsMerkleTree(pieceHashes, source).root().hash();
+        }
+
+        // WHEN
+        try (var repository = new DiskFileServerRepository(directory.resolve("data"), SEGMENT_BYTES)) {
+            var sut = new Facade(repository);
+            var storedMerkleTree = sut.findStoredMerkleTree(source);
+            var proof = sut.getProofForPiece(rootHash, 2);
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(storedMerkleTree).hasValueSatisfying(merkleTree -> assertThat(merkleTree.root().hash()).isEqualTo(rootHash));
+            soft.assertThat(proof.get().content().getContent()).isEqualTo(DUMMY_BYTES.get(2));
+            soft.assertThat(proof.get().proofs()).hasSize(3);
+            soft.assertAll();
+        }
+    }
+
+    @Test
+    void shouldDropTornTailAndKeepAppendingAfterIt() throws IOException {
+        // GIVEN
+        var data = directory.resolve("data");
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+            repository.persistPieces(new PersistPiece(DUMMY_BYTES.get(0), "SHA-256", "BASE_64"));
+        }
+        try (var segment = FileChannel.open(data.resolve("segment-000000.log"), APPEND)) {
+            segment.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 7}));
+        }
+
+        // WHEN
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+            repository.persistPieces(new PersistPiece(DUMMY_BYTES.get(1), "SHA-256", "BASE_64"));
+        }
+        try (var sut = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHash(DUMMY_BYTES.get(0)))).isPresent();
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHash(DUMMY_BYTES.get(1))))
+                    .hasValueSatisfying(content -> assertThat(content.getContent()).isEqualTo(DUMMY_BYTES.get(1)));
+            soft.assertAll();
+        }
+    }
+
+    @Test
+    void shouldLocatePieceContentInSegmentForZeroCopyReads() throws IOException {
+        // GIVEN
+        var file = Files.write(directory.resolve("file.bin"), "Number 1Number 2Number 3Number 4Number 5".getBytes());
+        var source = new FileSource(file, 8);
+        try (var repository = new DiskFileServerRepository(directory.resolve("data"), SEGMENT_BYTES)) {
+            var sut = new Facade(repository);
+            var pieceHashes = new ArrayList<PieceHash>();
+            DUMMY_BYTES.forEach(bytes -> pieceHashes.add(sut.persistPiece(new PersistPiece(bytes, "SHA-256", "BASE_64", source))));
+            var rootHash = sut.storeAsMerkleTree(pieceHashes, source).root().hash();
+
+            // WHEN
+            var rawPiece = sut.getRawPiece(rootHash, 3);
+            var rawFile = sut.getRawFile(rootHash);
+            var location = rawPiece.get().content().location();
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(location).isPresent();
+            soft.assertThat(readLocation(location.orElseThrow())).isEqualTo(DUMMY_BYTES.get(3));
+            soft.assertThat(rawPiece.get().proofs()).isEqualTo(sut.getProofForPiece(rootHash, 3).get().proofs());
+            soft.assertThat(rawFile.get().length()).isEqualTo(Files.size(file));
+            soft.assertAll();
+        }
+    }
+
+    @Test
+    void shouldKeepFileDeletedAndItsOwnPiecesDroppedAfterRestart() throws IOException {
+        // GIVEN
+        var data = directory.resolve("data");
+        var pieceHashes = DUMMY_BYTES.stream().map(DiskFileServerRepositoryTest::pieceHash).toList();
+        MerkleHash deletedRoot;
+        MerkleHash keptRoot;
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+            var sut = new Facade(repository);
+            DUMMY_BYTES.forEach(bytes -> sut.persistPiece(new PersistPiece(bytes, "SHA-256", "BASE_64")));
+            deletedRoot = sut.storeAsMerkleTree(pieceHashes.subList(0, 3), 8).root().hash();
+            keptRoot = sut.storeAsMerkleTree(pieceHashes.subList(2, 5), 8).root().hash();
+            sut.deleteMerkleTree(deletedRoot);
+        }
+
+        // WHEN
+        try (var sut = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(sut.getAvailableFiles()).containsOnlyKeys(keptRoot);
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHashes.get(0))).isEmpty();
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHashes.get(2)))
+                    .hasValueSatisfying(content -> assertThat(content.getContent()).isEqualTo(DUMMY_BYTES.get(2)));
+            soft.assertThat(sut.getDedupStatistics().total().storedBytes()).isEqualTo(24);
+            soft.assertAll();
+        }
+    }
+
+    @Test
+    void shouldNotKeepPiecesOfReleasedUploadAfterReplay() throws IOException {
+        // GIVEN
+        var data = directory.resolve("data");
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+            var released = repository.persistPieces(new PersistPiece(DUMMY_BYTES.get(0), "SHA-256", "BASE_64"));
+            repository.persistPieces(new PersistPiece(DUMMY_BYTES.get(1), "SHA-256", "BASE_64"));
+            repository.releasePieces(List.of(released));
+        }
+        Files.delete(data.resolve("checkpoint.bin"));
+
+        // WHEN
+        try (var sut = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHash(DUMMY_BYTES.get(0)))).isEmpty();
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHash(DUMMY_BYTES.get(1)))).isPresent();
+            soft.assertAll();
+        }
+    }
+
+    @Test
+    void shouldLoadCheckpointAndReplayOnlyRecordsAppendedAfterIt() throws IOException {
+        // GIVEN
+        var data = directory.resolve("data");
+        var pieceHashes = DUMMY_BYTES.stream().map(DiskFileServerRepositoryTest::pieceHash).toList();
+        MerkleHash deletedRoot;
+        MerkleHash keptRoot;
+        MerkleHash tailRoot;
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+            deletedRoot = storeFile(repository, DUMMY_BYTES.subList(0, 3));
+            keptRoot = storeFile(repository, DUMMY_BYTES.subList(2, 4));
+        }
+        var checkpoint = Files.readAllBytes(data.resolve("checkpoint.bin"));
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+            tailRoot = storeFile(repository, DUMMY_BYTES.subList(4, 5));
+            repository.deleteMerkleTree(deletedRoot);
+        }
+        // checkpoint of the first run, as left by a crash of the second one
+        Files.write(data.resolve("checkpoint.bin"), checkpoint);
+
+        // WHEN
+        try (var sut = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(sut.getAvailableFiles()).containsOnlyKeys(keptRoot, tailRoot);
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHashes.get(0))).isEmpty();
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHashes.get(2)))
+                    .hasValueSatisfying(content -> assertThat(content.getContent()).isEqualTo(DUMMY_BYTES.get(2)));
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHashes.get(4)))
+                    .hasValueSatisfying(content -> assertThat(content.getContent()).isEqualTo(DUMMY_BYTES.get(4)));
+            soft.assertThat(new Facade(sut).getProofForPiece(keptRoot, 1).get().proofs()).hasSize(1);
+            soft.assertAll();
+        }
+    }
+
+    @Test
+    void shouldReplayWholeLogWhenCheckpointIsCorrupted() throws IOException {
+        // GIVEN
+        var data = directory.resolve("data");
+        MerkleHash rootHash;
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+            rootHash = storeFile(repository, DUMMY_BYTES);
+        }
+        var checkpoint = Files.readAllBytes(data.resolve("checkpoint.bin"));
+        checkpoint[checkpoint.length / 2] ^= 1;
+        Files.write(data.resolve("checkpoint.bin"), checkpoint);
+
+        // WHEN
+        try (var sut = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(sut.getAvailableFiles()).containsOnlyKeys(rootHash);
+            soft.assertThat(sut.getPieceContentByPieceHash(pieceHash(DUMMY_BYTES.get(3))))
+                    .hasValueSatisfying(content -> assertThat(content.getContent()).isEqualTo(DUMMY_BYTES.get(3)));
+            soft.assertAll();
+        }
+    }
+
+    @Test
+    void shouldRefuseSegmentOfUnknownFormatVersion() throws IOException {
+        // GIVEN
+        var data = directory.resolve("data");
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+            repository.persistPieces(new PersistPiece(DUMMY_BYTES.get(0), "SHA-256", "BASE_64"));
+        }
+        Files.delete(data.resolve("checkpoint.bin"));
+        try (var segment = FileChannel.open(data.resolve("segment-000000.log"), WRITE)) {
+            segment.write(ByteBuffer.wrap(new byte[]{9}), 0);
+        }
+
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> new DiskFileServerRepository(data, SEGMENT_BYTES))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("format version <9>");
+    }
+
+    @Test
+    void shouldServeCompressedPiecesWithUnchangedProofsAfterRestart() throws IOException {
+        // GIVEN
+        var data = directory.resolve("data");
+        var compressible = "Number 1 ".repeat(100).getBytes();
+        var pieces = List.of(compressible, DUMMY_BYTES.get(1), DUMMY_BYTES.get(2), DUMMY_BYTES.get(3));
+        var pieceHashes = pieces.stream().map(DiskFileServerRepositoryTest::pieceHash).toList();
+        var uncompressed = new InMemoryFileServerRepository();
+        var expectedProof = new Facade(uncompressed).getProofForPiece(storeFile(uncompressed, pieces), 0);
+        MerkleHash rootHash;
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES, PieceCodecs.of(new DeflatePieceCodec(DeflatePieceCodec.DEFAULT_LEVEL)))) {
+            rootHash = storeFile(repository, pieces);
+        }
+
+        // WHEN
+        try (var repository = new DiskFileServerRepository(data, SEGMENT_BYTES)) {
+            var sut = new Facade(repository);
+            var proof = sut.getProofForPiece(rootHash, 0);
+
+            //THEN
+            var deduplication = repository.getDedupStatistics().total();
+            var soft = new SoftAssertions();
+            soft.assertThat(proof.get().content().getContent()).isEqualTo(compressible);
+            soft.assertThat(proof.get().proofs()).isEqualTo(expectedProof.get().proofs());
+            soft.assertThat(repository.getPieceContentByPieceHash(pieceHashes.get(1)))
+                    .hasValueSatisfying(content -> assertThat(content.getContent()).isEqualTo(DUMMY_BYTES.get(1)));
+            soft.assertThat(repository.getPieceLocation(rootHash, 0)).isEmpty();
+            soft.assertThat(repository.getPieceLocation(rootHash, 1)).isPresent();
+            soft.assertThat(deduplication.uniqueBytes()).isEqualTo(compressible.length + 24);
+            soft.assertThat(deduplication.compressionRatio()).isGreaterThan(5);
+            soft.assertAll();
+        }
+    }
+
+    private static byte[] readLocation(PieceLocation location) throws IOException {
+        try (var segment = FileChannel.open(location.file())) {
+            var buffer = ByteBuffer.allocate(location.length());
+            segment.read(buffer, location.position());
+            return buffer.array();
+        }
+    }
+
+    private static MerkleHash storeFile(FileServerRepository repository, List<byte[]> pieces) {
+        var sut = new Facade(repository);
+        var pieceHashes = new ArrayList<PieceHash>();
+        pieces.forEach(bytes -> pieceHashes.add(sut.persistPiece(new PersistPiece(bytes, "SHA-256", "BASE_64"))));
+        return sut.storeAsMerkleTree(pieceHashes).root().hash();
+    }
+
+    private static PieceHash pieceHash(byte[] bytes) {
+        return new PieceHash(new MerkleHash(bytes, SHA_256));
+    }
+}
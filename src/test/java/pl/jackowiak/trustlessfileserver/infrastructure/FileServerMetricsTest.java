@@ -0,0 +1,48 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.ProofCache;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.RepositoryStatistics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class FileServerMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldScanRepositoryOnceForAllGaugesOfScrape() {
+        // GIVEN
+        var scans = new AtomicInteger();
+        var repository = new InMemoryFileServerRepository() {
+            @Override
+            public RepositoryStatistics getStatistics() {
+                scans.incrementAndGet();
+                return super.getStatistics();
+            }
+        };
+        var facade = new Facade(repository);
+        facade.storeAsMerkleTree(List.of(facade.persistPiece(new PersistPiece("Number 1".getBytes(), "SHA-256", "BASE_64"))));
+        new FileServerMetrics(repository, new ProofCache(0)).bindTo(registry);
+
+        // WHEN
+        var files = registry.get("trustless.files").gauge().value();
+        var pieces = registry.get("trustless.pieces").gauge().value();
+        var treeHeap = registry.get("trustless.heap").tag("store", "trees").gauge().value();
+        var pieceHeap = registry.get("trustless.heap").tag("store", "pieces").gauge().value();
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(files).isEqualTo(1);
+        soft.assertThat(pieces).isEqualTo(1);
+        soft.assertThat(treeHeap).isPositive();
+        soft.assertThat(pieceHeap).isPositive();
+        soft.assertThat(scans).hasValue(1);
+        soft.assertAll();
+    }
+}
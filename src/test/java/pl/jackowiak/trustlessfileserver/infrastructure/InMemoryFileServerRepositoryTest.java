@@ -0,0 +1,50 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class InMemoryFileServerRepositoryTest {
+
+    private static final List<byte[]> PIECES = List.of(
+            "Number 1 ".repeat(100).getBytes(),
+            "Number 2".getBytes(),
+            "Number 3".getBytes()
+    );
+
+    @Test
+    void shouldServeCompressedPiecesWithProofsOfUncompressedRepository() {
+        // GIVEN
+        var uncompressed = new InMemoryFileServerRepository();
+        var expectedRootHash = storeFile(uncompressed, PIECES);
+        var sut = new InMemoryFileServerRepository(new DeflatePieceCodec(DeflatePieceCodec.DEFAULT_LEVEL));
+
+        // WHEN
+        var rootHash = storeFile(sut, PIECES);
+
+        //THEN
+        var facade = new Facade(sut);
+        var expectedProof = new Facade(uncompressed).getProofForPiece(expectedRootHash, 0).get();
+        var soft = new SoftAssertions();
+        soft.assertThat(rootHash).isEqualTo(expectedRootHash);
+        soft.assertThat(facade.getProofForPiece(rootHash, 0).get().content().getContent()).isEqualTo(PIECES.get(0));
+        soft.assertThat(facade.getProofForPiece(rootHash, 0).get().proofs()).isEqualTo(expectedProof.proofs());
+        soft.assertThat(facade.getProofForPiece(rootHash, 2).get().content().getContent()).isEqualTo(PIECES.get(2));
+        soft.assertThat(sut.getDedupStatistics().total().compressionRatio()).isGreaterThan(5);
+        soft.assertThat(sut.getStatistics().pieceHeapBytes()).isLessThan(uncompressed.getStatistics().pieceHeapBytes());
+        soft.assertAll();
+    }
+
+    private static MerkleHash storeFile(InMemoryFileServerRepository repository, List<byte[]> pieces) {
+        var sut = new Facade(repository);
+        var pieceHashes = new ArrayList<PieceHash>();
+        pieces.forEach(bytes -> pieceHashes.add(sut.persistPiece(new PersistPiece(bytes, "SHA-256", "BASE_64"))));
+        return sut.storeAsMerkleTree(pieceHashes).root().hash();
+    }
+}
@@ -0,0 +1,143 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.FileSource;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleTreeBuilder;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static pl.jackowiak.trustlessfileserver.domain.model.FailureMessages.MERKLE_TREE_SOURCE_BACKED;
+
+class MappedFileServerRepositoryTest {
+
+    private static final int PIECE_SIZE = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldServePiecesOfMappedFileByIndexAndHash() throws IOException {
+        // GIVEN
+        var source = source("file.bin", "0123456789");
+        var sut = new MappedFileServerRepository();
+
+        // WHEN
+        var rootHash = storeFile(sut, source);
+
+        //THEN
+        var facade = new Facade(sut);
+        var soft = new SoftAssertions();
+        soft.assertThat(sut.getAvailableFiles().get(rootHash).pieces()).isEqualTo(3);
+        soft.assertThat(sut.getPieceContent(rootHash, 1).get().getContent()).isEqualTo("4567".getBytes());
+        soft.assertThat(sut.getPieceContentByPieceHash(pieceHash("4567")).get().getContent()).isEqualTo("4567".getBytes());
+        soft.assertThat(sut.getPieceContent(rootHash, 3)).isEmpty();
+        soft.assertThat(sut.getPieceLocation(rootHash, 2)).contains(new PieceLocation(source.path().toAbsolutePath().normalize(), 8, 2));
+        soft.assertThat(facade.getProofForPiece(rootHash, 2).get().content().getContent()).isEqualTo("89".getBytes());
+        soft.assertThat(sut.getStatistics().pieceHeapBytes()).isZero();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldServeSameFileWithSameRootOnceMappedAgainAfterRestart() throws IOException {
+        // GIVEN
+        var source = source("file.bin", "0123456789");
+        var rootHash = storeFile(new MappedFileServerRepository(), source);
+        var sut = new MappedFileServerRepository();
+
+        // WHEN
+        var restartedRootHash = storeFile(sut, source);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(restartedRootHash).isEqualTo(rootHash);
+        soft.assertThat(sut.getPieceContent(rootHash, 2).get().getContent()).isEqualTo("89".getBytes());
+        soft.assertThat(sut.getPieceContentByPieceHash(pieceHash("0123")).get().getContent()).isEqualTo("0123".getBytes());
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldKeepServingSharedPieceByHashWhenOneOfItsFilesDeleted() throws IOException {
+        // GIVEN
+        var sut = new MappedFileServerRepository();
+        var firstRootHash = storeFile(sut, source("first.bin", "AAAABBBB"));
+        var secondRootHash = storeFile(sut, source("second.bin", "CCCCAAAA"));
+
+        // WHEN
+        sut.deleteMerkleTree(firstRootHash);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(sut.getPieceContentByPieceHash(pieceHash("AAAA")).get().getContent()).isEqualTo("AAAA".getBytes());
+        soft.assertThat(sut.getPieceContentByPieceHash(pieceHash("BBBB"))).isEmpty();
+        soft.assertThat(sut.deleteMerkleTree(secondRootHash)).isTrue();
+        soft.assertThat(sut.getPieceContentByPieceHash(pieceHash("AAAA"))).isEmpty();
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldKeepNoPieceIndexUntilPieceLookedUpByHash() throws IOException {
+        // GIVEN
+        var sut = new MappedFileServerRepository();
+        var rootHash = storeFile(sut, source("file.bin", "0123456789"));
+        var servedTreeHeapBytes = sut.getStatistics().treeHeapBytes();
+        sut.getPieceContent(rootHash, 1);
+
+        // WHEN
+        var piece = sut.getPieceContentByPieceHash(pieceHash("4567"));
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(servedTreeHeapBytes).isEqualTo(sut.getMerkleTreeByHash(rootHash).get().levels().sizeInBytes());
+        soft.assertThat(piece.get().getContent()).isEqualTo("4567".getBytes());
+        soft.assertThat(sut.getStatistics().treeHeapBytes()).isGreaterThan(servedTreeHeapBytes);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldRejectAppendingToMappedFile() throws IOException {
+        // GIVEN
+        var sut = new MappedFileServerRepository();
+        var rootHash = storeFile(sut, source("file.bin", "01234567"));
+        var facade = new Facade(sut);
+        var appendedPieceHash = facade.persistPiece(new PersistPiece("89ab".getBytes(), "SHA-256", "BASE_64"));
+
+        // WHEN
+        //THEN
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> facade.appendToMerkleTree(rootHash, List.of(appendedPieceHash)))
+                .withMessage(MERKLE_TREE_SOURCE_BACKED.formatted(rootHash.getHexString()));
+        assertThat(sut.getAvailableFiles()).containsOnlyKeys(rootHash);
+    }
+
+    private FileSource source(String name, String content) throws IOException {
+        return new FileSource(Files.write(directory.resolve(name), content.getBytes()), PIECE_SIZE);
+    }
+
+    private static MerkleHash storeFile(MappedFileServerRepository repository, FileSource source) throws IOException {
+        var sut = new Facade(repository);
+        var content = Files.readAllBytes(source.path());
+        var merkleTreeBuilder = new MerkleTreeBuilder(source.pieceSize());
+        for (var offset = 0; offset < content.length; offset += source.pieceSize()) {
+            var piece = Arrays.copyOfRange(content, offset, Math.min(content.length, offset + source.pieceSize()));
+            merkleTreeBuilder.add(sut.persistPiece(new PersistPiece(piece, "SHA-256", "BASE_64", source)));
+        }
+        return sut.storeAsMerkleTree(merkleTreeBuilder, source).root().hash();
+    }
+
+    private static PieceHash pieceHash(String content) {
+        return new PieceHash(new PersistPiece(content.getBytes(), "SHA-256", "BASE_64").getMerkleHash());
+    }
+}
@@ -0,0 +1,86 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceLocation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldSliceFileIntoPiecesWithShortLastPiece() throws IOException {
+        // GIVEN
+        var file = Files.write(directory.resolve("file.bin"), "0123456789".getBytes());
+
+        // WHEN
+        var sut = MappedFile.map(file, 4);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(sut.pieceCount()).isEqualTo(3);
+        soft.assertThat(sut.size()).isEqualTo(10);
+        soft.assertThat(bytes(sut.piece(0))).isEqualTo("0123".getBytes());
+        soft.assertThat(bytes(sut.piece(1))).isEqualTo("4567".getBytes());
+        soft.assertThat(bytes(sut.piece(2))).isEqualTo("89".getBytes());
+        soft.assertThat(sut.piece(1).isReadOnly()).isTrue();
+        soft.assertThat(sut.location(1)).isEqualTo(new PieceLocation(file, 4, 4));
+        soft.assertThat(sut.location(2)).isEqualTo(new PieceLocation(file, 8, 2));
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldKeepPieceViewsIndependentOfEachOther() throws IOException {
+        // GIVEN
+        var file = Files.write(directory.resolve("file.bin"), "0123456789".getBytes());
+        var sut = MappedFile.map(file, 4);
+        var piece = sut.piece(1);
+
+        // WHEN
+        piece.get(new byte[2]);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(piece.remaining()).isEqualTo(2);
+        soft.assertThat(sut.piece(1).remaining()).isEqualTo(4);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldThrowWhenPieceIndexOutOfFile() throws IOException {
+        // GIVEN
+        var file = Files.write(directory.resolve("file.bin"), "0123456789".getBytes());
+        var sut = MappedFile.map(file, 4);
+
+        // WHEN
+        //THEN
+        assertThatThrownBy(() -> sut.piece(3)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> sut.location(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void shouldThrowIAEWhenPieceSizeNotPositive() throws IOException {
+        // GIVEN
+        var file = Files.write(directory.resolve("file.bin"), "0123456789".getBytes());
+
+        // WHEN
+        //THEN
+        assertThatIllegalArgumentException().isThrownBy(() -> MappedFile.map(file, 0));
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        var bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,71 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo.SHA_256;
+
+class MeteredFileServerRepositoryTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldTimeLookupsFindingNothingAsFailures() {
+        // GIVEN
+        var sut = new MeteredFileServerRepository(new InMemoryFileServerRepository(), registry);
+        var pieceHash = sut.persistPieces(new PersistPiece("Number 1".getBytes(), "SHA-256", "BASE_64"));
+        var rootHash = new Facade(sut).storeAsMerkleTree(List.of(pieceHash)).root().hash();
+
+        // WHEN
+        sut.getPieceContentByPieceHash(pieceHash);
+        sut.getPieceContentByPieceHash(new PieceHash(new MerkleHash("Unknown".getBytes(), SHA_256)));
+        sut.getPieceContent(rootHash, 0);
+        sut.getPieceContent(rootHash, 1);
+        sut.getMerkleTreeByHash(rootHash);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(count("piece-by-hash", "success")).isEqualTo(1);
+        soft.assertThat(count("piece-by-hash", "failure")).isEqualTo(1);
+        soft.assertThat(count("piece-content", "success")).isEqualTo(1);
+        soft.assertThat(count("piece-content", "failure")).isEqualTo(1);
+        soft.assertThat(count("merkle-tree", "success")).isEqualTo(1);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldDelegatePieceLocationToDecoratedRepository() throws IOException {
+        // GIVEN
+        try (var repository = new DiskFileServerRepository(directory, 1 << 20)) {
+            var sut = new MeteredFileServerRepository(repository, registry);
+            var pieceHash = sut.persistPieces(new PersistPiece("Number 1".getBytes(), "SHA-256", "BASE_64"));
+            var rootHash = new Facade(sut).storeAsMerkleTree(List.of(pieceHash)).root().hash();
+
+            // WHEN
+            var location = sut.getPieceLocation(rootHash, 0);
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(location).isEqualTo(repository.getPieceLocation(rootHash, 0)).isPresent();
+            soft.assertThat(count("piece-location", "success")).isEqualTo(1);
+            soft.assertAll();
+        }
+    }
+
+    private long count(String operation, String outcome) {
+        return registry.get("trustless.repository.lookup").tag("operation", operation).tag("outcome", outcome).timer().count();
+    }
+}
@@ -0,0 +1,30 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+class MeteredPieceCodecTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldTimeEveryDecodingIncludingFailedOnes() {
+        // GIVEN
+        var sut = new MeteredPieceCodec(new DeflatePieceCodec(DeflatePieceCodec.DEFAULT_LEVEL), registry);
+        var content = "Number 1 ".repeat(100).getBytes();
+        var encoded = sut.encode(ByteBuffer.wrap(content)).orElseThrow();
+
+        // WHEN
+        var decoded = sut.decode(ByteBuffer.wrap(encoded), content.length);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(decoded.array()).isEqualTo(content);
+        soft.assertThatThrownBy(() -> sut.decode(ByteBuffer.wrap(encoded), content.length + 1)).isInstanceOf(IllegalStateException.class);
+        soft.assertThat(registry.get("trustless.piece.decode").tag("codec", "deflate").timer().count()).isEqualTo(2);
+        soft.assertAll();
+    }
+}
@@ -0,0 +1,54 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.MerkleHash;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static pl.jackowiak.trustlessfileserver.domain.model.HashingAlgo.SHA_256;
+
+class MeteredServerFilesTest {
+
+    private static final List<byte[]> DUMMY_BYTES = List.of(
+            "Number 1".getBytes(),
+            "Number 2".getBytes(),
+            "Number 3".getBytes()
+    );
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldTimeServedProofsByOperationAndOutcome() {
+        // GIVEN
+        var facade = new Facade(new InMemoryFileServerRepository());
+        var pieceHashes = new ArrayList<PieceHash>();
+        DUMMY_BYTES.forEach(bytes -> pieceHashes.add(facade.persistPiece(new PersistPiece(bytes, "SHA-256", "BASE_64"))));
+        var rootHash = facade.storeAsMerkleTree(pieceHashes).root().hash();
+        var sut = new MeteredServerFiles(facade, registry);
+
+        // WHEN
+        var proof = sut.getProofForPiece(rootHash, 1);
+        sut.getProofForPiece(rootHash, 7);
+        sut.getProofForPiece(new MerkleHash("Unknown".getBytes(), SHA_256), 0);
+        sut.getProofForPieceRange(rootHash, 0, 2);
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(proof.get().content().getContent()).isEqualTo(DUMMY_BYTES.get(1));
+        soft.assertThat(count("piece", "success")).isEqualTo(1);
+        soft.assertThat(count("piece", "failure")).isEqualTo(2);
+        soft.assertThat(count("range", "success")).isEqualTo(1);
+        soft.assertThat(count("raw-piece", "success")).isZero();
+        soft.assertAll();
+    }
+
+    private long count(String operation, String outcome) {
+        return registry.get("trustless.proof").tag("operation", operation).tag("outcome", outcome).timer().count();
+    }
+}
@@ -0,0 +1,38 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class MeteredStoreFileTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldCountIngestedBytesAndTimePiecesAndTrees() {
+        // GIVEN
+        var sut = new MeteredStoreFile(new Facade(new InMemoryFileServerRepository()), registry);
+        var pieceHashes = new ArrayList<PieceHash>();
+
+        // WHEN
+        pieceHashes.add(sut.persistPiece(new PersistPiece("Number 1".getBytes(), "SHA-256", "BASE_64")));
+        pieceHashes.add(sut.persistPiece(new PersistPiece("Number 2".getBytes(), "SHA-256", "BASE_64")));
+        var rootHash = sut.storeAsMerkleTree(pieceHashes, 8).root().hash();
+        var appendedPiece = sut.persistPiece(new PersistPiece("Number 3".getBytes(), "SHA-256", "BASE_64"));
+        sut.appendToMerkleTree(rootHash, List.of(appendedPiece));
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(registry.get("trustless.ingest.piece").timer().count()).isEqualTo(3);
+        soft.assertThat(registry.get("trustless.ingest.bytes").counter().count()).isEqualTo(24);
+        soft.assertThat(registry.get("trustless.tree.build").tag("operation", "store").timer().count()).isEqualTo(1);
+        soft.assertThat(registry.get("trustless.tree.build").tag("operation", "append").timer().count()).isEqualTo(1);
+        soft.assertAll();
+    }
+}
@@ -0,0 +1,48 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PieceCodecsTest {
+
+    @Test
+    void shouldResolveEachCodecNameToOneDecoratedInstance() {
+        // GIVEN
+        var decorated = new ArrayList<PieceCodec>();
+        var sut = new PieceCodecs(PieceCodec.NONE, codec -> {
+            decorated.add(codec);
+            return codec;
+        });
+
+        // WHEN
+        var first = sut.forName("deflate");
+        var second = sut.forName("deflate");
+        var none = sut.forName("none");
+
+        //THEN
+        var soft = new SoftAssertions();
+        soft.assertThat(second).isSameAs(first);
+        soft.assertThat(none).isSameAs(PieceCodec.NONE);
+        soft.assertThat(decorated).containsExactly(first);
+        soft.assertAll();
+    }
+
+    @Test
+    void shouldResolveConfiguredCodecNameToConfiguredInstance() {
+        // GIVEN
+        var configured = new DeflatePieceCodec(DeflatePieceCodec.DEFAULT_LEVEL);
+        var sut = PieceCodecs.of(configured);
+
+        // WHEN
+        var resolved = sut.forName(configured.name());
+
+        //THEN
+        assertThatThrownBy(() -> sut.forName("zstd")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(resolved).isSameAs(configured);
+    }
+}
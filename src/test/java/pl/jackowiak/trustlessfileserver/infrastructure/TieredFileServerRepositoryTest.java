@@ -0,0 +1,82 @@
+package pl.jackowiak.trustlessfileserver.infrastructure;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.jackowiak.trustlessfileserver.domain.Facade;
+import pl.jackowiak.trustlessfileserver.domain.model.PersistPiece;
+import pl.jackowiak.trustlessfileserver.domain.model.PieceHash;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+class TieredFileServerRepositoryTest {
+
+    private static final long SEGMENT_BYTES = 1 << 20;
+    private static final int PIECE_SIZE = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldServePieceFromHeapOnceReadFromDisk() throws IOException {
+        // GIVEN
+        var pieces = pieces(5);
+        try (var repository = new TieredFileServerRepository(new DiskFileServerRepository(directory, SEGMENT_BYTES), 1 << 20, PIECE_SIZE, Runnable::run)) {
+            var sut = new Facade(repository);
+            var rootHash = sut.storeAsMerkleTree(persist(sut, pieces), PIECE_SIZE).root().hash();
+
+            // WHEN
+            var fromDisk = sut.getProofForPiece(rootHash, 2);
+            var fromHeap = sut.getProofForPiece(rootHash, 2);
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(fromDisk.get().content().getContent()).isEqualTo(pieces.get(2));
+            soft.assertThat(fromHeap.get().content().getContent()).isEqualTo(pieces.get(2));
+            soft.assertThat(repository.tierStatistics().misses()).isEqualTo(1);
+            soft.assertThat(repository.tierStatistics().hits()).isEqualTo(1);
+            soft.assertThat(repository.tierStatistics().entries()).isEqualTo(1);
+            soft.assertAll();
+        }
+    }
+
+    @Test
+    void shouldKeepMostAccessedPiecesOnHeapWhenPassOverFileExceedsBudget() throws IOException {
+        // GIVEN
+        var maxHeapBytes = 4096;
+        var pieces = pieces(40);
+        try (var repository = new TieredFileServerRepository(new DiskFileServerRepository(directory, SEGMENT_BYTES), maxHeapBytes, PIECE_SIZE, Runnable::run)) {
+            var sut = new Facade(repository);
+            var rootHash = sut.storeAsMerkleTree(persist(sut, pieces), PIECE_SIZE).root().hash();
+            for (var access = 0; access < 10; access++) {
+                IntStream.range(0, 5).forEach(index -> sut.getProofForPiece(rootHash, index));
+            }
+
+            // WHEN
+            IntStream.range(0, pieces.size()).forEach(index -> sut.getProofForPiece(rootHash, index));
+            var heapHits = repository.tierStatistics().hits();
+            IntStream.range(0, 5).forEach(index -> sut.getProofForPiece(rootHash, index));
+
+            //THEN
+            var soft = new SoftAssertions();
+            soft.assertThat(repository.tierStatistics().hits() - heapHits).isEqualTo(5);
+            soft.assertThat(repository.tierStatistics().evictions()).isPositive();
+            soft.assertThat(repository.tierStatistics().sizeInBytes()).isLessThanOrEqualTo(maxHeapBytes);
+            soft.assertAll();
+        }
+    }
+
+    private static List<byte[]> pieces(int count) {
+        return IntStream.range(0, count).mapToObj(index -> "Piece %02d".formatted(index).getBytes()).toList();
+    }
+
+    private static List<PieceHash> persist(Facade sut, List<byte[]> pieces) {
+        var pieceHashes = new ArrayList<PieceHash>();
+        pieces.forEach(bytes -> pieceHashes.add(sut.persistPiece(new PersistPiece(bytes, "SHA-256", "BASE_64"))));
+        return pieceHashes;
+    }
+}